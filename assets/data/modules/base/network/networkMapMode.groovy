@@ -87,44 +87,40 @@ renderHook 'network-renderer', { delta, batch, shapeDrawer, renderingSupport ->
 	final int maxX = (int)( visibleCells.x + visibleCells.width )
 	final int maxY = (int)( visibleCells.y + visibleCells.height )
 	
-	for(int x=minX; x<maxX; x++)
-		for(int y=minY; y<maxY; y++) {
+	state.map.forEachCell(minX, minY, maxX, maxY) { int x, int y ->
+		
+		final entity = state.map.getEntityUnchecked(x,y)
+		
+		final networkNode = entity.getComponent( componentType )
+		if(!networkNode)
+			return
+		
+		def vertices = renderingSupport.getCellVertices( x, y, null )
+		def color = Color.YELLOW
+		
+		final float middleX0 = ( vertices[0].x + vertices[1].x + vertices[2].x + vertices[3].x ) / 4.0
+		final float middleY0 = ( vertices[0].y + vertices[1].y + vertices[2].y + vertices[3].y ) / 4.0
+		
+		for(def connection : networkNode.connections) {
 			
-			if(!state.map.isValidCell(x,y))
+			if(!connection.hasComponent( componentType ))
 				continue
 			
-			final entity = state.map.getEntity(x,y)
-			
-			final networkNode = entity.getComponent( componentType )
-			if(!networkNode)
+			final connectionCell = isCellMapper.get(connection)
+			if(!connectionCell)
 				continue
 			
-			def vertices = renderingSupport.getCellVertices( x, y, null )
-			def color = Color.YELLOW
+			final int cx = connectionCell.cellX
+			final int cy = connectionCell.cellY
 			
-			final float middleX0 = ( vertices[0].x + vertices[1].x + vertices[2].x + vertices[3].x ) / 4.0
-			final float middleY0 = ( vertices[0].y + vertices[1].y + vertices[2].y + vertices[3].y ) / 4.0
+			vertices = renderingSupport.getCellVertices( cx, cy, null )
+			final float middleX1 = ( vertices[0].x + vertices[1].x + vertices[2].x + vertices[3].x ) / 4.0
+			final float middleY1 = ( vertices[0].y + vertices[1].y + vertices[2].y + vertices[3].y ) / 4.0
+			
+			shapeDrawer.line middleX0, middleY0, middleX1, middleY1, color
 			
-			for(def connection : networkNode.connections) {
-				
-				if(!connection.hasComponent( componentType ))
-					continue
-				
-				final connectionCell = isCellMapper.get(connection)
-				if(!connectionCell)
-					continue
-				
-				final int cx = connectionCell.cellX
-				final int cy = connectionCell.cellY
-				
-				vertices = renderingSupport.getCellVertices( cx, cy, null )
-				final float middleX1 = ( vertices[0].x + vertices[1].x + vertices[2].x + vertices[3].x ) / 4.0
-				final float middleY1 = ( vertices[0].y + vertices[1].y + vertices[2].y + vertices[3].y ) / 4.0
-				
-				shapeDrawer.line middleX0, middleY0, middleX1, middleY1, color
-				
-			}
 		}
+	}
 }
 
 mapMode 'networks', {
@@ -3,13 +3,12 @@ isCellMapper = ComponentMapper.getFor(IsMapCell)
 hasTerrainTypeMapper = ComponentMapper.getFor(HasTerrainType)
 
 onActivate { ->
-	for(int x=0; x<state.map.width; x++)
-		for(int y=0; y<state.map.height; y++) {
-			final entity = state.map.getEntity(x,y)
-			if(!entity)
-				continue
-			entity.add state.engine.createComponent(NeedsReplacementTerrainTile)
-		}
+	state.map.forEachCell { int x, int y ->
+		final entity = state.map.getEntityUnchecked(x,y)
+		if(!entity)
+			return
+		entity.add state.engine.createComponent(NeedsReplacementTerrainTile)
+	}
 }
 
 iteratingSystem 'terrainCharacteristicsUpdatingSystem', Family.all(IsMapCell, NeedsReplacementTerrainTile).exclude(UpdatedCellCharacteristics).get(), { entity, deltaTime ->
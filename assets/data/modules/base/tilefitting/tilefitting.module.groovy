@@ -46,9 +46,12 @@ class NeedsMapCellTiles implements Component, Poolable {
 }
 
 class PendingMapCellTiles implements Component, Poolable {
-	ListenableFuture<List<HasMapCellTiles.MapCellTile>> future
+	//
+	// Identifies the fitting-job this cell is waiting on.
+	// A job may only apply its tiles to an entity that's still waiting on that same job.
+	Object ticket
 	void reset() {
-		future = null
+		ticket = null
 	}
 }
 
@@ -64,6 +67,11 @@ needsTilesMapper = ComponentMapper.getFor(NeedsMapCellTiles)
 pendingTilesMapper = ComponentMapper.getFor(PendingMapCellTiles)
 hasTilesMapper = ComponentMapper.getFor(HasMapCellTiles)
 
+//
+// Tile-fitting is done in batches, one per map-chunk, off the main thread.
+// Results are applied a few at a time, so as not to stall the frame.
+fittingPipeline = cellJobPipeline 'mapCellFittingPipeline'
+
 //
 //
 //
@@ -176,15 +184,26 @@ iteratingSystem 'dirtyMapCellCharacteristicsProcessingSystem', Family.all(IsMapC
 
 //
 // Submit any tile-fitting requests.
-iteratingSystem 'mapCellFittingTaskSubmissionSystem', Family.all(NeedsMapCellTiles).exclude(PendingMapCellTiles).get(), { entity, deltaTime ->
+//
+// If the fitting-pipeline is backed up, leave the request where it is
+// and try again next frame.
+cellJobSubmittingSystem 'mapCellFittingTaskSubmissionSystem', fittingPipeline, Family.all(IsMapCell, NeedsMapCellTiles).exclude(PendingMapCellTiles).get(), { entity, deltaTime ->
 	
 	final needsTiles = needsTilesMapper.get(entity)
+	final cell = isCellMapper.get(entity)
+	final int cx = cell.cellX, cy = cell.cellY
 	
 	final pendingCells = []
 	pendingCells.addAll needsTiles.pending
 	
-	final pending = entity.addAndReturn( state.engine.createComponent(PendingMapCellTiles) )
-	pending.future = submitResultTask {
+	//
+	// The entity may be recycled for some other cell (or some other map) before
+	// this job completes -- so we only apply our tiles if this entity is still
+	// waiting on this very job.
+	final ticket = new Object()
+	final isWaitingOnThisJob = { pendingTilesMapper.get(entity)?.ticket.is(ticket) }
+	
+	final submitted = fittingPipeline.submit(cx, cy, {
 		->
 		final result = []
 		pendingCells.each { p ->
@@ -197,27 +216,47 @@ iteratingSystem 'mapCellFittingTaskSubmissionSystem', Family.all(NeedsMapCellTil
 		
 		result.sort { t1,t2 -> Integer.compare(t1.tile.zOrder, t2.tile.zOrder) }
 		result
-	}
-	
-	entity.remove NeedsMapCellTiles
-	
-}
-
-//
-// When a tile-fitting request is complete, ensure the HasMapCellTiles
-// component is updated.
-iteratingSystem 'mapCellFittingTaskCompletionSystem', Family.all(PendingMapCellTiles).get(), { entity, deltaTime ->
+	}, { result ->
+		//
+		// When a tile-fitting request is complete, ensure the HasMapCellTiles
+		// component is updated.
+		if(!isWaitingOnThisJob())
+			return
+		
+		def mapTiles = hasTilesMapper.get(entity)
+		if(!mapTiles)
+			mapTiles = entity.addAndReturn( state.engine.createComponent(HasMapCellTiles) )
+		
+		if(result)
+			mapTiles.tiles.addAll result
+		
+		//
+		// Let the renderer know this cell's tiles have changed.
+		state.map.markCellsChanged cx, cy, cx, cy
+		
+		entity.remove PendingMapCellTiles
+	}, {
+		->
+		//
+		// If the fitting-pipeline goes away (e.g., this module is reloaded) before
+		// this request is complete, put the request back where we found it.
+		if(!isWaitingOnThisJob())
+			return
+		
+		entity.remove PendingMapCellTiles
+		
+		def needs = needsTilesMapper.get(entity)
+		if(!needs)
+			needs = entity.addAndReturn( state.engine.createComponent(NeedsMapCellTiles) )
+		needs.pending.addAll pendingCells
+	})
 	
-	final pending = pendingTilesMapper.get(entity)
-	if(!pending.future.done)
+	if(!submitted)
 		return
 	
-	def mapTiles = hasTilesMapper.get(entity)
-	if(!mapTiles)
-		mapTiles = entity.addAndReturn( state.engine.createComponent(HasMapCellTiles) )
-	
-	mapTiles.tiles.addAll pending.future.get()
-	
-	entity.remove PendingMapCellTiles
+	final pendingTiles = state.engine.createComponent(PendingMapCellTiles)
+	pendingTiles.ticket = ticket
+	entity.add pendingTiles
+	entity.remove NeedsMapCellTiles
 	
 }
\ No newline at end of file
@@ -82,36 +82,28 @@ class NeedsNewWaterTile implements Component, Poolable {
 //
 onActivate {
 	->
-	for(int vx=0; vx<=state.map.width; vx++)
-		for(int vy=0; vy<=state.map.height; vy++)
-			if(state.map.getVertexAltitude(vx,vy) <= sealevel) {
-				
-				def isBorderVertex = false
-				if(tileset.ext.water?.shoresOnFlatGround)
-					//
-					// test all neighboring vertices to see if this vertex counts as a "border" vertex
-					for(int dx=-1; dx<=+1; dx++)
-						for(int dy=-1; dy<=+1; dy++){
-							final int nx = vx + dx
-							final int ny = vy + dy
-							if(!state.map.isValidVertex(nx,ny))
-								continue
-							
-							if(state.map.getVertexAltitude(nx,ny) > sealevel) {
-								isBorderVertex = true
-								break
-							}
-						}
-				
-				if(isBorderVertex)
-					continue
-				
-				final entity = state.map.getVertexEntity(vx,vy)
-				
-				final hasWater = entity.addAndReturn( state.engine.createComponent( IsWateryVertex ) )
-				hasWater.level = 1.0
-				
+	state.map.forEachVertex { int vx, int vy ->
+		if(state.map.getVertexAltitudeUnchecked(vx,vy) > sealevel)
+			return
+		
+		def isBorderVertex = false
+		if(tileset.ext.water?.shoresOnFlatGround)
+			//
+			// test all neighboring vertices to see if this vertex counts as a "border" vertex
+			state.map.forEachVertex(vx-1, vy-1, vx+2, vy+2) { int nx, int ny ->
+				if(state.map.getVertexAltitudeUnchecked(nx,ny) > sealevel)
+					isBorderVertex = true
 			}
+		
+		if(isBorderVertex)
+			return
+		
+		final entity = state.map.getVertexEntity(vx,vy)
+		
+		final hasWater = entity.addAndReturn( state.engine.createComponent( IsWateryVertex ) )
+		hasWater.level = 1.0
+		
+	}
 }
 
 //
@@ -123,6 +123,18 @@ atlas = 'KennyIsometric.atlas'
 // define rule-helpers in an included script and use them in the includer.
 //
 
+//
+// Most tile-rules can be declared, rather than scripted:
+//   ...
+//   requires flat: true
+//   requires ext: [terrain: 'grass', water: false, road: [NORTH, SOUTH]]
+//   ...
+//
+// Declared requirements are compiled when the tile-set is loaded, and are much
+// cheaper to evaluate than [rule { ... }] closures. Closures (and rule-helpers)
+// remain available for anything requirements can't express.
+//
+
 //
 // Here we define a rule-helper that we don't intend to use, but serves to illustrate the syntax.
 // This rule-helper will be available in subsequent Tile rules as:
@@ -0,0 +1,40 @@
+//
+// Positions cached terrain-tiles (see TerrainChunkCache).
+//
+// Each vertex carries only its tile's cell, that cell's 4 corner-altitudes,
+// and its offset from the tile's origin. The cell's on-screen position is
+// computed here.
+//
+attribute vec2 a_cell;
+attribute vec4 a_altitudes;
+attribute vec2 a_offset;
+attribute vec2 a_texCoord0;
+
+uniform mat4 u_projTrans;
+
+//
+// Viewport-size of half a cell (x = width, y = height)
+uniform vec2 u_halfCellSize;
+//
+// Viewport-height per unit of altitude
+uniform float u_altitudeScale;
+//
+// Each corner's viewport-offset from the cell's origin (before altitude),
+// in the same order as a_altitudes
+uniform vec4 u_cornerX;
+uniform vec4 u_cornerY;
+
+varying vec4 v_color;
+varying vec2 v_texCoords;
+
+void main() {
+	vec2 origin = vec2((a_cell.x + a_cell.y) * u_halfCellSize.x, (a_cell.y - a_cell.x) * u_halfCellSize.y);
+	
+	vec4 cornerY = u_cornerY + a_altitudes * u_altitudeScale;
+	float minX = min(min(u_cornerX.x, u_cornerX.y), min(u_cornerX.z, u_cornerX.w));
+	float minY = min(min(cornerY.x, cornerY.y), min(cornerY.z, cornerY.w));
+	
+	v_color = vec4(1.0);
+	v_texCoords = a_texCoord0;
+	gl_Position = u_projTrans * vec4(origin + vec2(minX, minY) + a_offset, 0.0, 1.0);
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package org.snowjak.city.benchmark;
+
+import java.io.File;
+
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+/**
+ * Launches the {@link MapRendererBenchmark} (or, with {@code --tile-fitting},
+ * the {@link TileFittingBenchmark}; or, with {@code --map-layout}, the
+ * {@link CityMapLayoutBenchmark}; or, with {@code --entity-load}, the
+ * {@link EntityLoadBenchmark}) on the headless backend.
+ * <p>
+ * Arguments:
+ * </p>
+ *
+ * <pre>
+ * --baseline &lt;file&gt;    compare results against this baseline file
+ * --write-baseline       write results to the baseline file instead
+ * --sizes 256,1024       map-sizes to benchmark
+ * --warmup 120           frames to discard before measuring
+ * --frames 240           frames to measure
+ * --tolerance 0.25       allowed CPU-time/allocation regression (as a fraction)
+ * --check-allocations    only check that the per-tile render path allocates nothing
+ * --tile-fitting         benchmark tile-fitting instead
+ *                        (--warmup/--frames then count passes over the fitted cells)
+ * --map-layout           benchmark CityMap's storage against its old layout instead
+ *                        (--warmup/--frames then count passes over the whole map)
+ * --entity-load          benchmark loading/tearing down a map's Entities instead
+ *                        (--warmup/--frames then count loads)
+ * </pre>
+ * <p>
+ * e.g.: {@code gradlew benchmark:run --args="--baseline ../benchmark/baseline.properties --write-baseline"}
+ * </p>
+ */
+public class BenchmarkLauncher {
+	
+	public static void main(String[] args) {
+		
+		int[] sizes = { 256, 1024 };
+		int warmupFrames = 120, frames = 240;
+		File baseline = null;
+		boolean writeBaseline = false;
+		float tolerance = 0.25f;
+		boolean tileFitting = false;
+		boolean allocationsOnly = false;
+		boolean mapLayout = false;
+		boolean entityLoad = false;
+		
+		for (int i = 0; i < args.length; i++)
+			switch (args[i]) {
+			case "--baseline":
+				baseline = new File(args[++i]);
+				break;
+			case "--write-baseline":
+				writeBaseline = true;
+				break;
+			case "--sizes":
+				final String[] sizeArgs = args[++i].split(",");
+				sizes = new int[sizeArgs.length];
+				for (int s = 0; s < sizeArgs.length; s++)
+					sizes[s] = Integer.parseInt(sizeArgs[s].trim());
+				break;
+			case "--warmup":
+				warmupFrames = Integer.parseInt(args[++i]);
+				break;
+			case "--frames":
+				frames = Integer.parseInt(args[++i]);
+				break;
+			case "--tolerance":
+				tolerance = Float.parseFloat(args[++i]);
+				break;
+			case "--check-allocations":
+				allocationsOnly = true;
+				break;
+			case "--tile-fitting":
+				tileFitting = true;
+				break;
+			case "--map-layout":
+				mapLayout = true;
+				break;
+			case "--entity-load":
+				entityLoad = true;
+				break;
+			default:
+				throw new IllegalArgumentException("Unrecognized argument: " + args[i]);
+			}
+		
+		if (writeBaseline && baseline == null)
+			throw new IllegalArgumentException("--write-baseline requires --baseline <file>");
+		
+		if (mapLayout) {
+			new HeadlessApplication(new CityMapLayoutBenchmark(sizes, warmupFrames, Math.max(1, frames)),
+					new HeadlessApplicationConfiguration());
+			return;
+		}
+		
+		if (entityLoad) {
+			new HeadlessApplication(new EntityLoadBenchmark(sizes, warmupFrames, Math.max(1, frames)),
+					new HeadlessApplicationConfiguration());
+			return;
+		}
+		
+		if (tileFitting) {
+			new HeadlessApplication(new TileFittingBenchmark(warmupFrames, Math.max(1, frames)),
+					new HeadlessApplicationConfiguration());
+			return;
+		}
+		
+		new HeadlessApplication(
+				new MapRendererBenchmark(sizes, warmupFrames, Math.max(1, frames), baseline, writeBaseline, tolerance,
+						allocationsOnly),
+				new HeadlessApplicationConfiguration());
+	}
+}
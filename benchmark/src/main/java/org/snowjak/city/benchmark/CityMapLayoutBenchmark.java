@@ -0,0 +1,311 @@
+/**
+ *
+ */
+package org.snowjak.city.benchmark;
+
+import org.snowjak.city.map.CityMap;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+
+/**
+ * Compares {@link CityMap}'s storage -- flat, chunked arrays -- against the
+ * layout it replaced: one {@code int[width+1][height+1]} of vertex-altitudes
+ * and two {@code Entity[][]} grids, indexed {@code [x][y]}.
+ * <p>
+ * For each map-size, both layouts are filled identically, and then swept
+ * row-by-row (as the renderer and most modules read them), reading every
+ * vertex-altitude and every cell-entity. Reports the time taken per read (for
+ * CityMap, through both its checked and unchecked accessors) and the heap
+ * retained by each layout.
+ * </p>
+ * <p>
+ * The old layout is re-implemented here in plain Java, so its figures are, if
+ * anything, flattering to it: the original was a Groovy class, and paid for
+ * dynamic dispatch on every access.
+ * </p>
+ * <p>
+ * Should the two layouts ever disagree, the application exits with a non-zero
+ * status.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class CityMapLayoutBenchmark extends ApplicationAdapter {
+	
+	private static final String TAG = "benchmark";
+	
+	/**
+	 * Distinct cell-entities to share among all cells.
+	 */
+	private static final int ENTITIES = 16;
+	
+	private final int[] sizes;
+	private final int warmupPasses, passes;
+	
+	private int exitStatus = 0;
+	
+	/**
+	 *
+	 * @param sizes
+	 *            map-sizes (in cells per side) to benchmark
+	 * @param warmupPasses
+	 *            sweeps over the whole map to run (and discard) before measuring
+	 * @param passes
+	 *            sweeps over the whole map to measure
+	 */
+	public CityMapLayoutBenchmark(int[] sizes, int warmupPasses, int passes) {
+		
+		this.sizes = sizes;
+		this.warmupPasses = warmupPasses;
+		this.passes = passes;
+	}
+	
+	@Override
+	public void create() {
+		
+		try {
+			run();
+		} catch (Throwable t) {
+			Gdx.app.error(TAG, "Benchmark failed!", t);
+			exitStatus = 2;
+		}
+		
+		Gdx.app.exit();
+	}
+	
+	@Override
+	public void dispose() {
+		
+		System.exit(exitStatus);
+	}
+	
+	private void run() {
+		
+		final Entity[] entities = new Entity[ENTITIES];
+		for (int i = 0; i < entities.length; i++)
+			entities[i] = new Entity();
+		
+		Gdx.app.log(TAG, String.format("%6s %-20s %12s %12s %14s", "size", "layout", "ns/altitude", "ns/entity",
+				"retained MB"));
+		
+		for (int size : sizes) {
+			
+			long before = getUsedMemory();
+			final NestedArrayLayout nested = new NestedArrayLayout(size, size);
+			fill(nested, entities);
+			final long nestedBytes = getUsedMemory() - before;
+			
+			before = getUsedMemory();
+			final CityMap map = new CityMap(size, size);
+			fill(map, entities);
+			map.compact();
+			final long mapBytes = getUsedMemory() - before;
+			
+			if (sweepAltitudes(nested) != sweepAltitudes(map, false)
+					|| sweepEntities(nested) != sweepEntities(map, false)) {
+				Gdx.app.error(TAG, String.format("Layouts disagree (size %d)!", size));
+				exitStatus = 1;
+			}
+			
+			for (int i = 0; i < warmupPasses; i++) {
+				sweepAltitudes(nested);
+				sweepEntities(nested);
+				sweepAltitudes(map, false);
+				sweepEntities(map, false);
+				sweepAltitudes(map, true);
+				sweepEntities(map, true);
+			}
+			
+			final double vertices = (double) (size + 1) * (size + 1) * passes, cells = (double) size * size * passes;
+			
+			long start = System.nanoTime();
+			for (int i = 0; i < passes; i++)
+				sweepAltitudes(nested);
+			final double nestedAltitude = (System.nanoTime() - start) / vertices;
+			
+			start = System.nanoTime();
+			for (int i = 0; i < passes; i++)
+				sweepEntities(nested);
+			final double nestedEntity = (System.nanoTime() - start) / cells;
+			
+			start = System.nanoTime();
+			for (int i = 0; i < passes; i++)
+				sweepAltitudes(map, false);
+			final double mapAltitude = (System.nanoTime() - start) / vertices;
+			
+			start = System.nanoTime();
+			for (int i = 0; i < passes; i++)
+				sweepEntities(map, false);
+			final double mapEntity = (System.nanoTime() - start) / cells;
+			
+			start = System.nanoTime();
+			for (int i = 0; i < passes; i++)
+				sweepAltitudes(map, true);
+			final double mapAltitudeUnchecked = (System.nanoTime() - start) / vertices;
+			
+			start = System.nanoTime();
+			for (int i = 0; i < passes; i++)
+				sweepEntities(map, true);
+			final double mapEntityUnchecked = (System.nanoTime() - start) / cells;
+			
+			Gdx.app.log(TAG, String.format("%6d %-20s %12.2f %12.2f %14.1f", size, "int[][]/Entity[][]",
+					nestedAltitude, nestedEntity, nestedBytes / 1048576.0));
+			Gdx.app.log(TAG, String.format("%6d %-20s %12.2f %12.2f %14.1f", size, "CityMap (checked)", mapAltitude,
+					mapEntity, mapBytes / 1048576.0));
+			Gdx.app.log(TAG, String.format("%6d %-20s %12.2f %12.2f %14s", size, "CityMap (unchecked)",
+					mapAltitudeUnchecked, mapEntityUnchecked, ""));
+		}
+	}
+	
+	/**
+	 * Rolling hills, as in {@link MapRendererBenchmark}, with cells' entities
+	 * assigned in a repeating pattern.
+	 */
+	private static void fill(NestedArrayLayout layout, Entity[] entities) {
+		
+		for (int y = 0; y <= layout.getHeight(); y++)
+			for (int x = 0; x <= layout.getWidth(); x++)
+				layout.setVertexAltitude(x, y, getAltitude(x, y));
+		
+		for (int y = 0; y < layout.getHeight(); y++)
+			for (int x = 0; x < layout.getWidth(); x++)
+				layout.setEntity(x, y, entities[Math.floorMod(x * 7 + y * 3, entities.length)]);
+	}
+	
+	private static void fill(CityMap map, Entity[] entities) {
+		
+		final int[] altitudes = new int[map.getWidth() + 1];
+		for (int y = 0; y <= map.getHeight(); y++) {
+			for (int x = 0; x <= map.getWidth(); x++)
+				altitudes[x] = getAltitude(x, y);
+			map.setVertexAltitudeRow(y, altitudes);
+		}
+		
+		for (int y = 0; y < map.getHeight(); y++)
+			for (int x = 0; x < map.getWidth(); x++)
+				map.setEntity(x, y, entities[Math.floorMod(x * 7 + y * 3, entities.length)]);
+	}
+	
+	private static int getAltitude(int x, int y) {
+		
+		return (int) Math.round(4 + 3 * Math.sin(x / 9.0) * Math.cos(y / 13.0));
+	}
+	
+	/**
+	 * @return the sum of every vertex-altitude
+	 */
+	private static long sweepAltitudes(NestedArrayLayout layout) {
+		
+		long sum = 0;
+		for (int y = 0; y <= layout.getHeight(); y++)
+			for (int x = 0; x <= layout.getWidth(); x++)
+				sum += layout.getVertexAltitude(x, y);
+		return sum;
+	}
+	
+	/**
+	 * @return the sum of every vertex-altitude
+	 */
+	private static long sweepAltitudes(CityMap map, boolean unchecked) {
+		
+		long sum = 0;
+		for (int y = 0; y <= map.getHeight(); y++)
+			for (int x = 0; x <= map.getWidth(); x++)
+				sum += (unchecked) ? map.getVertexAltitudeUnchecked(x, y) : map.getVertexAltitude(x, y);
+		return sum;
+	}
+	
+	/**
+	 * @return a sum over every cell-entity's identity-hash
+	 */
+	private static long sweepEntities(NestedArrayLayout layout) {
+		
+		long sum = 0;
+		for (int y = 0; y < layout.getHeight(); y++)
+			for (int x = 0; x < layout.getWidth(); x++)
+				sum += System.identityHashCode(layout.getEntity(x, y));
+		return sum;
+	}
+	
+	/**
+	 * @return a sum over every cell-entity's identity-hash
+	 */
+	private static long sweepEntities(CityMap map, boolean unchecked) {
+		
+		long sum = 0;
+		for (int y = 0; y < map.getHeight(); y++)
+			for (int x = 0; x < map.getWidth(); x++)
+				sum += System.identityHashCode((unchecked) ? map.getEntityUnchecked(x, y) : map.getEntity(x, y));
+		return sum;
+	}
+	
+	/**
+	 * @return heap in use, after collecting as much garbage as we can
+	 */
+	private static long getUsedMemory() {
+		
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	/**
+	 * {@link CityMap}'s original storage-layout, with its bounds-checked
+	 * accessors.
+	 */
+	private static class NestedArrayLayout {
+		
+		private final int[][] vertexAltitudes;
+		private final Entity[][] cellEntities, vertexEntities;
+		
+		NestedArrayLayout(int width, int height) {
+			
+			vertexAltitudes = new int[width + 1][height + 1];
+			cellEntities = new Entity[width][height];
+			vertexEntities = new Entity[width + 1][height + 1];
+		}
+		
+		int getWidth() {
+			
+			return cellEntities.length;
+		}
+		
+		int getHeight() {
+			
+			return cellEntities[0].length;
+		}
+		
+		int getVertexAltitude(int vertexX, int vertexY) {
+			
+			if (vertexX < 0 || vertexY < 0 || vertexX >= vertexAltitudes.length
+					|| vertexY >= vertexAltitudes[vertexX].length)
+				throw new ArrayIndexOutOfBoundsException(
+						String.format("Given vertex index [%d,%d] is out of bounds.", vertexX, vertexY));
+			
+			return vertexAltitudes[vertexX][vertexY];
+		}
+		
+		void setVertexAltitude(int vertexX, int vertexY, int altitude) {
+			
+			vertexAltitudes[vertexX][vertexY] = altitude;
+		}
+		
+		Entity getEntity(int cellX, int cellY) {
+			
+			if (cellX < 0 || cellY < 0 || cellX >= cellEntities.length || cellY >= cellEntities[cellX].length)
+				throw new ArrayIndexOutOfBoundsException(
+						String.format("Given cell index [%d,%d] is out of bounds.", cellX, cellY));
+			
+			return cellEntities[cellX][cellY];
+		}
+		
+		void setEntity(int cellX, int cellY, Entity entity) {
+			
+			cellEntities[cellX][cellY] = entity;
+		}
+	}
+}
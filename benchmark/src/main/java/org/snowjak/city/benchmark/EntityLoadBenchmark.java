@@ -0,0 +1,183 @@
+/**
+ *
+ */
+package org.snowjak.city.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.snowjak.city.GameState;
+import org.snowjak.city.map.CityMap;
+import org.snowjak.city.service.GameAssetService;
+import org.snowjak.city.service.GameService;
+import org.snowjak.city.service.I18NService;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+
+/**
+ * Measures how long it takes to load a map's Entities into the
+ * entity-processing Engine -- and to tear them down again -- through
+ * {@link GameService#addCityMapLocationEntities(CityMap)} and
+ * {@link GameService#removeCityMapLocationEntities(CityMap)}.
+ * <p>
+ * For each map-size, two Engines are compared: one with the fixed-size pools
+ * every game used to get, and one whose pools are sized to the map (as
+ * {@link GameService#initializeBaseEntityEngine()} now sizes them). Each is
+ * loaded and torn down repeatedly, as when starting one new game after
+ * another. Reports the time taken per load and per tear-down, the bytes
+ * allocated (on this thread) per load, and the time spent in garbage
+ * collection per load.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class EntityLoadBenchmark extends ApplicationAdapter {
+	
+	private static final String TAG = "benchmark";
+	
+	private final int[] sizes;
+	private final int warmupLoads, loads;
+	
+	private int exitStatus = 0;
+	
+	/**
+	 *
+	 * @param sizes
+	 *            map-sizes (in cells per side) to benchmark
+	 * @param warmupLoads
+	 *            loads (and tear-downs) to run (and discard) before measuring
+	 * @param loads
+	 *            loads (and tear-downs) to measure
+	 */
+	public EntityLoadBenchmark(int[] sizes, int warmupLoads, int loads) {
+		
+		this.sizes = sizes;
+		this.warmupLoads = warmupLoads;
+		this.loads = loads;
+	}
+	
+	@Override
+	public void create() {
+		
+		try {
+			run();
+		} catch (Throwable t) {
+			Gdx.app.error(TAG, "Benchmark failed!", t);
+			exitStatus = 2;
+		}
+		
+		Gdx.app.exit();
+	}
+	
+	@Override
+	public void dispose() {
+		
+		System.exit(exitStatus);
+	}
+	
+	private void run() {
+		
+		final GameAssetService assetService = new GameAssetService();
+		final I18NService i18nService = new I18NService(assetService);
+		
+		Gdx.app.log(TAG, String.format("%6s %-12s %12s %12s %12s %14s %12s", "size", "pools", "pool size",
+				"load ms", "remove ms", "MB/load", "gc ms/load"));
+		
+		for (int size : sizes) {
+			measure(size, false, new GameService(assetService, i18nService));
+			measure(size, true, new GameService(assetService, i18nService));
+		}
+		
+		assetService.dispose();
+	}
+	
+	/**
+	 * Load and tear down a {@code size}x{@code size} map's Entities, through
+	 * the given GameService, and report how long that took.
+	 *
+	 * @param sized
+	 *            if {@code true}, let the GameService size its Engine's pools to
+	 *            the map; else, keep its default pools
+	 */
+	private void measure(int size, boolean sized, GameService service) {
+		
+		final GameState state = service.getState();
+		final CityMap map = new CityMap(size, size);
+		
+		//
+		// The Engine's pools are sized to whatever map is current when it's
+		// initialized.
+		if (sized)
+			state.setMap(map);
+		service.initializeBaseEntityEngine();
+		state.setMap(map);
+		
+		for (int i = 0; i < warmupLoads; i++) {
+			service.addCityMapLocationEntities(map);
+			service.removeCityMapLocationEntities(map);
+		}
+		
+		long loadNanos = 0, removeNanos = 0, allocated = 0;
+		final long gcBefore = getCollectionMillis();
+		
+		for (int i = 0; i < loads; i++) {
+			final long allocatedBefore = getAllocatedBytes();
+			
+			long start = System.nanoTime();
+			service.addCityMapLocationEntities(map);
+			loadNanos += System.nanoTime() - start;
+			
+			allocated += (allocatedBefore < 0) ? 0 : getAllocatedBytes() - allocatedBefore;
+			
+			start = System.nanoTime();
+			service.removeCityMapLocationEntities(map);
+			removeNanos += System.nanoTime() - start;
+		}
+		
+		final long gcMillis = getCollectionMillis() - gcBefore;
+		
+		if (state.getEngine().getEntities().size() > 0) {
+			Gdx.app.error(TAG, String.format("%d Entities left behind after tear-down (size %d)!",
+					state.getEngine().getEntities().size(), size));
+			exitStatus = 1;
+		}
+		
+		Gdx.app.log(TAG, String.format("%6d %-12s %12d %12.1f %12.1f %14.1f %12.1f", size,
+				(sized) ? "map-sized" : "fixed", GameService.getEnginePoolSize((sized) ? map : null),
+				loadNanos / 1e6 / loads, removeNanos / 1e6 / loads, allocated / 1048576.0 / loads,
+				(double) gcMillis / loads));
+		
+		state.setMap(null);
+	}
+	
+	/**
+	 * @return total time spent in garbage-collection so far, in milliseconds
+	 */
+	private static long getCollectionMillis() {
+		
+		long millis = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+			millis += Math.max(0, bean.getCollectionTime());
+		return millis;
+	}
+	
+	/**
+	 * @return bytes allocated by this thread so far, or {@code -1} if this JVM
+	 *         can't tell us
+	 */
+	private static long getAllocatedBytes() {
+		
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		
+		final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+		if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled())
+			return -1;
+		
+		return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,568 @@
+/**
+ *
+ */
+package org.snowjak.city.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.snowjak.city.GameState;
+import org.snowjak.city.ecs.components.HasMapCellTiles;
+import org.snowjak.city.ecs.components.HasMapCellTiles.MapCellTile;
+import org.snowjak.city.map.CityMap;
+import org.snowjak.city.map.renderer.MapRenderer;
+import org.snowjak.city.map.renderer.RenderingSupport;
+import org.snowjak.city.map.renderer.hooks.AbstractRenderingHook;
+import org.snowjak.city.map.tiles.Tile;
+import org.snowjak.city.service.GameAssetService;
+import org.snowjak.city.service.I18NService;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+
+import space.earlygrey.shapedrawer.ShapeDrawer;
+
+/**
+ * Renders a generated {@link CityMap} through the {@link MapRenderer}, at
+ * several map-sizes and zoom-levels, and reports -- per frame -- the CPU-time
+ * spent in {@link MapRenderer#render(float)}, the bytes allocated, and the
+ * draw-calls and quads submitted to GL.
+ * <p>
+ * To show what {@link org.snowjak.city.map.tiles.TileAtlasPacker tile-atlas
+ * packing} saves, the draw-calls are also counted (at zoom-level 1) with every
+ * tile-sprite on a texture of its own, as they are before packing.
+ * </p>
+ * <p>
+ * GL itself is replaced by a {@link RecordingGL20}, so only the CPU-side cost
+ * of rendering is measured.
+ * </p>
+ * <p>
+ * Results may be compared against -- or written to -- a baseline file (see
+ * {@link BenchmarkLauncher}). Any figure that regresses past its tolerance
+ * causes the application to exit with a non-zero status.
+ * </p>
+ * <p>
+ * Separately, every visible cell's tiles are rendered one at a time through
+ * {@link MapRenderer#renderTile(int, int, Tile, Color, int)} -- the per-tile
+ * path, bypassing the terrain-caches -- which must allocate nothing at all.
+ * Any allocation there also causes a non-zero exit status, baseline or no.
+ * This check may also be run on its own (see {@link BenchmarkLauncher}'s
+ * {@code --check-allocations}), as the {@code benchmark:checkAllocations}
+ * task does.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class MapRendererBenchmark extends ApplicationAdapter {
+	
+	private static final String TAG = "benchmark";
+	
+	/**
+	 * Zoom-levels to benchmark (see {@link OrthographicCamera#zoom}).
+	 */
+	public static final float[] ZOOMS = { 0.5f, 1f, 2f, 4f };
+	
+	/**
+	 * Screen-size (in pixels) to benchmark.
+	 */
+	private static final int SCREEN_WIDTH = 1920, SCREEN_HEIGHT = 1080;
+	
+	/**
+	 * Allocations may exceed their baseline by this many bytes per frame, on top
+	 * of the relative tolerance, before they count as a regression.
+	 */
+	private static final long ALLOCATION_SLACK = 1024;
+	
+	private static final String CPU = "cpu_ns", ALLOCATION = "alloc_bytes", DRAW_CALLS = "draw_calls",
+			QUADS = "quads", UNPACKED_DRAW_CALLS = "unpacked_draw_calls";
+	
+	/**
+	 * How many distinct tile-sprites to draw the map with.
+	 */
+	private static final int TILES = 4;
+	
+	/**
+	 * Zoom-level at which to compare packed and unpacked tile-sprites.
+	 */
+	private static final float PACKING_ZOOM = 1f;
+	
+	/**
+	 * Zoom-level at which to check the per-tile path.
+	 */
+	private static final float PER_TILE_ZOOM = 1f;
+	
+	private final int[] sizes;
+	private final int warmupFrames, frames;
+	private final File baseline;
+	private final boolean writeBaseline;
+	private final float tolerance;
+	private final boolean allocationsOnly;
+	
+	private final Properties results = new Properties();
+	private int exitStatus = 0;
+	
+	/**
+	 *
+	 * @param sizes
+	 *            map-sizes (in cells per side) to benchmark
+	 * @param warmupFrames
+	 *            frames to render (and discard) before measuring each
+	 *            size/zoom-level
+	 * @param frames
+	 *            frames to measure for each size/zoom-level
+	 * @param baseline
+	 *            baseline file to compare against (or write to), or
+	 *            {@code null}
+	 * @param writeBaseline
+	 *            write results to {@code baseline} instead of comparing against
+	 *            it
+	 * @param tolerance
+	 *            CPU-time and allocations may exceed their baseline by this
+	 *            fraction before they count as a regression
+	 * @param allocationsOnly
+	 *            only check that the per-tile path allocates nothing (and ignore
+	 *            {@code baseline})
+	 */
+	public MapRendererBenchmark(int[] sizes, int warmupFrames, int frames, File baseline, boolean writeBaseline,
+			float tolerance, boolean allocationsOnly) {
+		
+		this.sizes = sizes;
+		this.warmupFrames = warmupFrames;
+		this.frames = frames;
+		this.baseline = baseline;
+		this.writeBaseline = writeBaseline;
+		this.tolerance = tolerance;
+		this.allocationsOnly = allocationsOnly;
+	}
+	
+	@Override
+	public void create() {
+		
+		try {
+			run();
+			
+			if (baseline != null && !allocationsOnly) {
+				if (writeBaseline)
+					writeBaseline();
+				else
+					compareToBaseline();
+			}
+		
+		} catch (Throwable t) {
+			Gdx.app.error(TAG, "Benchmark failed!", t);
+			exitStatus = 2;
+		}
+		
+		Gdx.app.exit();
+	}
+	
+	@Override
+	public void dispose() {
+		
+		System.exit(exitStatus);
+	}
+	
+	private void run() {
+		
+		final RecordingGL20 recorder = new RecordingGL20();
+		Gdx.gl = Gdx.gl20 = recorder.getGL();
+		
+		final GameAssetService assetService = new GameAssetService();
+		final GameState state = new GameState(assetService, new I18NService(assetService));
+		final MapRenderer renderer = new MapRenderer(state);
+		
+		final PerTileRenderingHook perTileHook = new PerTileRenderingHook(state);
+		state.getRenderingHookRegistry().addRenderingHook(perTileHook);
+		state.getMapModes().get(MapRenderer.DEFAULT_MAP_MODE_ID).getRenderingHooks().add(perTileHook.getId());
+		
+		final Texture[] textures = createTextures(true), unpackedTextures = createTextures(false);
+		final Entity[] entities = createEntities(textures), unpackedEntities = createEntities(unpackedTextures);
+		
+		final OrthographicCamera camera = new OrthographicCamera(
+				SCREEN_WIDTH / MapRenderer.SETTINGS.worldGridUnitSize,
+				SCREEN_HEIGHT / MapRenderer.SETTINGS.worldGridUnitSize);
+		final Vector2 center = new Vector2();
+		
+		Gdx.app.log(TAG, String.format("%6s %6s %14s %14s %12s %12s", "size", "zoom", "cpu ns/frame",
+				"bytes/frame", "draws/frame", "quads/frame"));
+		
+		for (int size : sizes) {
+			state.setMap(createMap(size, entities));
+			
+			renderer.mapToViewport(center.set(size / 2f, size / 2f));
+			camera.position.set(center.x, center.y, 0);
+			
+			if (!allocationsOnly)
+				for (float zoom : ZOOMS) {
+					camera.zoom = zoom;
+					camera.update();
+					renderer.setView(camera);
+					
+					for (int i = 0; i < warmupFrames; i++)
+						renderer.render(1f / 60f);
+					
+					recorder.reset();
+					final long allocatedBefore = getAllocatedBytes();
+					final long start = System.nanoTime();
+					
+					for (int i = 0; i < frames; i++)
+						renderer.render(1f / 60f);
+					
+					final long cpu = (System.nanoTime() - start) / frames;
+					final long allocated = (allocatedBefore < 0) ? -1
+							: (getAllocatedBytes() - allocatedBefore) / frames;
+					final long drawCalls = recorder.getDrawCalls() / frames, quads = recorder.getQuads() / frames;
+					
+					record(size, zoom, CPU, cpu);
+					if (allocated >= 0)
+						record(size, zoom, ALLOCATION, allocated);
+					record(size, zoom, DRAW_CALLS, drawCalls);
+					record(size, zoom, QUADS, quads);
+					
+					Gdx.app.log(TAG, String.format("%6d %6.2f %14d %14d %12d %12d", size, zoom, cpu, allocated,
+							drawCalls, quads));
+				}
+			
+			checkPerTileAllocations(size, renderer, camera, perTileHook);
+			
+			if (!allocationsOnly)
+				countUnpackedDrawCalls(size, state, renderer, camera, recorder, unpackedEntities);
+			
+			state.setMap(null);
+		}
+		
+		renderer.dispose();
+		for (Texture texture : textures)
+			texture.dispose();
+		for (Texture texture : unpackedTextures)
+			texture.dispose();
+		assetService.dispose();
+	}
+	
+	/**
+	 * Render the current map's visible cells through the per-tile path, and
+	 * fail if that allocates anything.
+	 */
+	private void checkPerTileAllocations(int size, MapRenderer renderer, OrthographicCamera camera,
+			PerTileRenderingHook perTileHook) {
+		
+		if (getAllocatedBytes() < 0) {
+			Gdx.app.log(TAG, "Cannot measure allocations on this JVM -- skipping the per-tile allocation check.");
+			return;
+		}
+		
+		camera.zoom = PER_TILE_ZOOM;
+		camera.update();
+		renderer.setView(camera);
+		
+		perTileHook.enabled = true;
+		
+		for (int i = 0; i < warmupFrames; i++)
+			renderer.render(1f / 60f);
+		
+		perTileHook.allocated = 0;
+		for (int i = 0; i < frames; i++)
+			renderer.render(1f / 60f);
+		
+		perTileHook.enabled = false;
+		
+		final long allocated = perTileHook.allocated / frames;
+		if (allocated > 0) {
+			Gdx.app.error(TAG, String.format(
+					"Per-tile path allocated %d bytes/frame (size %d, zoom %.2f) -- expected 0", allocated, size,
+					PER_TILE_ZOOM));
+			exitStatus = 1;
+		} else
+			Gdx.app.log(TAG, String.format("Per-tile path allocated nothing (size %d, zoom %.2f).", size,
+					PER_TILE_ZOOM));
+	}
+	
+	/**
+	 * Render the map again, with every tile-sprite on its own texture, and report
+	 * its draw-calls alongside those of the packed map.
+	 */
+	private void countUnpackedDrawCalls(int size, GameState state, MapRenderer renderer, OrthographicCamera camera,
+			RecordingGL20 recorder, Entity[] unpackedEntities) {
+		
+		state.setMap(createMap(size, unpackedEntities));
+		
+		camera.zoom = PACKING_ZOOM;
+		camera.update();
+		renderer.setView(camera);
+		
+		for (int i = 0; i < warmupFrames; i++)
+			renderer.render(1f / 60f);
+		
+		recorder.reset();
+		for (int i = 0; i < frames; i++)
+			renderer.render(1f / 60f);
+		
+		final long unpacked = recorder.getDrawCalls() / frames;
+		record(size, PACKING_ZOOM, UNPACKED_DRAW_CALLS, unpacked);
+		
+		Gdx.app.log(TAG, String.format("Tile-atlas packing: %d draws/frame unpacked, %s packed (size %d, zoom %.2f).",
+				unpacked, results.getProperty(getKey(size, PACKING_ZOOM, DRAW_CALLS)), size, PACKING_ZOOM));
+	}
+	
+	private void record(int size, float zoom, String metric, long value) {
+		
+		results.setProperty(getKey(size, zoom, metric), Long.toString(value));
+	}
+	
+	private static String getKey(int size, float zoom, String metric) {
+		
+		return size + "." + zoom + "." + metric;
+	}
+	
+	/**
+	 * @return the total bytes allocated, so far, by the current thread, or
+	 *         {@code -1} if this JVM cannot tell
+	 */
+	private static long getAllocatedBytes() {
+		
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		
+		final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+		if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled())
+			return -1;
+		
+		return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	/**
+	 * Renders every visible cell's tiles one at a time, through
+	 * {@link MapRenderer#renderTile(int, int, Tile, Color, int)}, and totals the
+	 * bytes allocated while doing so. Does nothing unless {@link #enabled}.
+	 */
+	private static class PerTileRenderingHook extends AbstractRenderingHook {
+		
+		private static final ComponentMapper<HasMapCellTiles> HAS_TILES = ComponentMapper
+				.getFor(HasMapCellTiles.class);
+		
+		private final GameState state;
+		
+		/**
+		 * What {@link MapRendererBenchmark#getAllocatedBytes()} itself allocates,
+		 * per call.
+		 */
+		private final long overhead;
+		
+		boolean enabled = false;
+		long allocated = 0;
+		
+		PerTileRenderingHook(GameState state) {
+			
+			super("benchmark-per-tile");
+			this.state = state;
+			
+			final long first = getAllocatedBytes(), second = getAllocatedBytes();
+			this.overhead = Math.max(0, second - first);
+		}
+		
+		@Override
+		public boolean isEnabled() {
+			
+			return enabled;
+		}
+		
+		@Override
+		public void render(float delta, Batch batch, ShapeDrawer shapeDrawer, RenderingSupport support) {
+			
+			final MapRenderer renderer = (MapRenderer) support;
+			final CityMap map = state.getMap();
+			final Rectangle visible = support.getVisibleMapCells();
+			
+			final int minX = Math.max(0, (int) visible.x), minY = Math.max(0, (int) visible.y);
+			final int maxX = Math.min(map.getWidth() - 1, (int) (visible.x + visible.width)),
+					maxY = Math.min(map.getHeight() - 1, (int) (visible.y + visible.height));
+			
+			final long before = getAllocatedBytes();
+			
+			for (int cellY = maxY; cellY >= minY; cellY--)
+				for (int cellX = minX; cellX <= maxX; cellX++) {
+					final Entity entity = map.getEntityUnchecked(cellX, cellY);
+					final HasMapCellTiles hasTiles = (entity == null) ? null : HAS_TILES.get(entity);
+					if (hasTiles == null)
+						continue;
+					
+					for (int i = 0; i < hasTiles.getTiles().size(); i++) {
+						final MapCellTile cellTile = hasTiles.getTiles().get(i);
+						final Integer altitudeOverride = cellTile.getAltitudeOverride();
+						renderer.renderTile(cellX, cellY, cellTile.getTile(), null,
+								(altitudeOverride == null) ? -1 : altitudeOverride);
+					}
+				}
+			
+			allocated += Math.max(0, getAllocatedBytes() - before - overhead);
+		}
+	}
+	
+	/**
+	 * Textures for the {@link #TILES} tile-sprites: either a single texture
+	 * holding them all (as after packing), or one texture apiece.
+	 */
+	private static Texture[] createTextures(boolean packed) {
+		
+		final Texture[] textures = new Texture[packed ? 1 : TILES];
+		for (int i = 0; i < textures.length; i++)
+			textures[i] = createTexture();
+		return textures;
+	}
+	
+	/**
+	 * A single texture, holding a few differently-colored tile-sprites.
+	 */
+	private static Texture createTexture() {
+		
+		final Pixmap pixmap = new Pixmap(TILES * 128, 128, Format.RGBA8888);
+		final Color[] colors = { Color.FOREST, Color.OLIVE, Color.TAN, Color.GRAY };
+		for (int i = 0; i < colors.length; i++) {
+			pixmap.setColor(colors[i]);
+			pixmap.fillRectangle(i * 128, 0, 128, 96);
+		}
+		
+		final Texture texture = new Texture(pixmap);
+		pixmap.dispose();
+		return texture;
+	}
+	
+	/**
+	 * A handful of entities to share among all cells: one per opaque tile, and one
+	 * with a transparent tile on top. Tile {@code i} takes its sprite from
+	 * {@code textures[i % textures.length]}.
+	 */
+	private static Entity[] createEntities(Texture[] textures) {
+		
+		final Tile[] tiles = new Tile[TILES];
+		for (int i = 0; i < tiles.length; i++) {
+			final Tile tile = new Tile();
+			tile.setId("benchmark-" + i);
+			tile.setWidth(128);
+			tile.setHeight(96);
+			tile.setGridWidth(128);
+			tile.setGridHeight(64);
+			tile.setSurfaceOffset(32);
+			tile.setAltitudeOffset(32);
+			tile.setTransparent(i == tiles.length - 1);
+			tile.setSprite(new TextureRegion(textures[i % textures.length], i * 128, 0, 128, 96));
+			tiles[i] = tile;
+		}
+		
+		final Entity[] entities = new Entity[tiles.length];
+		for (int i = 0; i < entities.length; i++) {
+			final HasMapCellTiles hasTiles = new HasMapCellTiles();
+			hasTiles.getTiles().add(newCellTile(tiles[i % (tiles.length - 1)]));
+			if (i == entities.length - 1)
+				hasTiles.getTiles().add(newCellTile(tiles[tiles.length - 1]));
+			
+			entities[i] = new Entity();
+			entities[i].add(hasTiles);
+		}
+		
+		return entities;
+	}
+	
+	private static MapCellTile newCellTile(Tile tile) {
+		
+		final MapCellTile cellTile = new MapCellTile();
+		cellTile.setTile(tile);
+		return cellTile;
+	}
+	
+	/**
+	 * A square map of rolling hills, each cell sharing one of the given entities.
+	 */
+	private static CityMap createMap(int size, Entity[] entities) {
+		
+		final CityMap map = new CityMap(size, size);
+		
+		final int[] altitudes = new int[size + 1];
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++)
+				altitudes[x] = (int) Math.round(4 + 3 * Math.sin(x / 9.0) * Math.cos(y / 13.0));
+			map.setVertexAltitudeRow(y, altitudes);
+		}
+		
+		for (int y = 0; y < size; y++)
+			for (int x = 0; x < size; x++)
+				map.setEntity(x, y, entities[Math.floorMod(x * 7 + y * 3, entities.length)]);
+		
+		return map;
+	}
+	
+	private void writeBaseline() throws IOException {
+		
+		final File parent = baseline.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+		
+		try (OutputStream out = new FileOutputStream(baseline)) {
+			results.store(out, "MapRenderer benchmark baseline -- per-frame figures, by <size>.<zoom>.<metric>");
+		}
+		
+		Gdx.app.log(TAG, "Wrote baseline to \"" + baseline.getPath() + "\".");
+	}
+	
+	private void compareToBaseline() throws IOException {
+		
+		if (!baseline.isFile()) {
+			Gdx.app.log(TAG, "No baseline at \"" + baseline.getPath() + "\" -- nothing to compare against.");
+			return;
+		}
+		
+		final Properties expected = new Properties();
+		try (InputStream in = new FileInputStream(baseline)) {
+			expected.load(in);
+		}
+		
+		int regressions = 0;
+		for (String key : new TreeSet<>(results.stringPropertyNames())) {
+			final String expectedValue = expected.getProperty(key);
+			if (expectedValue == null)
+				continue;
+			
+			final long was = Long.parseLong(expectedValue.trim()), is = Long.parseLong(results.getProperty(key));
+			
+			final long limit;
+			if (key.endsWith(CPU))
+				limit = (long) (was * (1f + tolerance));
+			else if (key.endsWith(ALLOCATION))
+				limit = (long) (was * (1f + tolerance)) + ALLOCATION_SLACK;
+			else
+				limit = was;
+			
+			if (is > limit) {
+				Gdx.app.error(TAG, String.format("Regression: %s = %d (baseline %d, limit %d)", key, is, was, limit));
+				regressions++;
+			}
+		}
+		
+		if (regressions > 0) {
+			Gdx.app.error(TAG, regressions + " figure(s) regressed against \"" + baseline.getPath() + "\".");
+			exitStatus = 1;
+		} else
+			Gdx.app.log(TAG, "No regressions against \"" + baseline.getPath() + "\".");
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package org.snowjak.city.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.graphics.GL20;
+
+/**
+ * A {@link GL20} that draws nothing, but counts every draw-call submitted to it
+ * (and how many quads those draw-calls add up to).
+ * <p>
+ * The headless backend has no GL context. This stands in for one just well
+ * enough that {@link com.badlogic.gdx.graphics.glutils.ShaderProgram
+ * ShaderProgram}s "compile", {@link com.badlogic.gdx.graphics.glutils.FrameBuffer
+ * FrameBuffer}s are "complete", and everything else is a no-op.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class RecordingGL20 implements InvocationHandler {
+	
+	private long drawCalls = 0, indices = 0;
+	
+	private final GL20 gl;
+	
+	public RecordingGL20() {
+		
+		this.gl = (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[] { GL20.class }, this);
+	}
+	
+	/**
+	 * @return the {@link GL20} instance that records to this
+	 */
+	public GL20 getGL() {
+		
+		return gl;
+	}
+	
+	/**
+	 * @return draw-calls submitted since the last {@link #reset()}
+	 */
+	public long getDrawCalls() {
+		
+		return drawCalls;
+	}
+	
+	/**
+	 * @return quads (i.e., pairs of triangles) drawn since the last
+	 *         {@link #reset()}
+	 */
+	public long getQuads() {
+		
+		return indices / 6;
+	}
+	
+	public void reset() {
+		
+		drawCalls = 0;
+		indices = 0;
+	}
+	
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		
+		switch (method.getName()) {
+		case "glDrawElements":
+		case "glDrawArrays":
+			//
+			// glDrawElements(mode, count, ...) / glDrawArrays(mode, first, count)
+			drawCalls++;
+			indices += (Integer) args[method.getName().equals("glDrawElements") ? 1 : 2];
+			return null;
+		
+		case "glCreateShader":
+		case "glCreateProgram":
+			return 1;
+		
+		case "glGetShaderiv":
+		case "glGetProgramiv":
+			final int parameter = (Integer) args[1];
+			final boolean success = parameter == GL20.GL_COMPILE_STATUS || parameter == GL20.GL_LINK_STATUS;
+			((IntBuffer) args[2]).put(0, success ? 1 : 0);
+			return null;
+		
+		case "glCheckFramebufferStatus":
+			return GL20.GL_FRAMEBUFFER_COMPLETE;
+		
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "equals":
+			return proxy == args[0];
+		case "toString":
+			return RecordingGL20.class.getSimpleName();
+		}
+		
+		final Class<?> type = method.getReturnType();
+		if (type == int.class)
+			return 0;
+		if (type == float.class)
+			return 0f;
+		if (type == boolean.class)
+			return false;
+		if (type == String.class)
+			return "";
+		return null;
+	}
+}
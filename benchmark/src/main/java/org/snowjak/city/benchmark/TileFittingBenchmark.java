@@ -0,0 +1,301 @@
+/**
+ *
+ */
+package org.snowjak.city.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import org.snowjak.city.map.tiles.Tile;
+import org.snowjak.city.map.tiles.TileCorner;
+import org.snowjak.city.map.tiles.TileEdge;
+import org.snowjak.city.map.tiles.TileFittingCache;
+import org.snowjak.city.map.tiles.TileSet;
+import org.snowjak.city.map.tiles.TileSetIndex;
+import org.snowjak.city.map.tiles.TileSetResourceLoader;
+import org.snowjak.city.service.GameAssetService;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+
+import groovy.util.Expando;
+
+/**
+ * Fits tiles from the {@code KennyIsometric} tile-set to a batch of
+ * cell-characteristics, both by scanning every tile (as
+ * {@link TileSet#getTilesFor(int[][], Expando)} used to) and through the
+ * {@link TileSetIndex} (and, on top of that, the {@link TileFittingCache}),
+ * and reports the time taken per cell by each.
+ * <p>
+ * The cell-characteristics are shaped like those the base modules produce:
+ * {@code terrain} ({@code 'grass'} or {@code 'pavement'}), {@code water} (a
+ * list of submerged {@link TileCorner}s) and {@code road} (a list of connected
+ * {@link TileEdge}s, or {@code null}).
+ * </p>
+ * <p>
+ * Both are also run from several threads at once, to make sure that
+ * concurrent fitting agrees with serial fitting -- and to see how well fitting
+ * scales across cores.
+ * </p>
+ * <p>
+ * Should the index ever disagree with the scan, or a parallel run with the
+ * serial run, the application exits with a non-zero status.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class TileFittingBenchmark extends ApplicationAdapter {
+	
+	private static final String TAG = "benchmark";
+	
+	public static final String TILESET = "data/tilesets/KennyIsometric/KennyIsometric.tileset.groovy";
+	
+	/**
+	 * Distinct cells to fit.
+	 */
+	private static final int QUERIES = 4096;
+	
+	private final int warmupPasses, passes;
+	
+	private int exitStatus = 0;
+	
+	/**
+	 *
+	 * @param warmupPasses
+	 *            passes over every cell to run (and discard) before measuring
+	 * @param passes
+	 *            passes over every cell to measure
+	 */
+	public TileFittingBenchmark(int warmupPasses, int passes) {
+		
+		this.warmupPasses = warmupPasses;
+		this.passes = passes;
+	}
+	
+	@Override
+	public void create() {
+		
+		try {
+			run();
+		} catch (Throwable t) {
+			Gdx.app.error(TAG, "Benchmark failed!", t);
+			exitStatus = 2;
+		}
+		
+		Gdx.app.exit();
+	}
+	
+	@Override
+	public void dispose() {
+		
+		System.exit(exitStatus);
+	}
+	
+	private void run() throws Exception {
+		
+		final RecordingGL20 recorder = new RecordingGL20();
+		Gdx.gl = Gdx.gl20 = recorder.getGL();
+		
+		final GameAssetService assetService = new GameAssetService();
+		assetService.setLoader(TileSet.class, new TileSetResourceLoader(assetService));
+		assetService.load(TILESET, TileSet.class);
+		assetService.finishLoading();
+		
+		final TileSet tileset = assetService.get(TILESET, TileSet.class);
+		
+		long start = System.nanoTime();
+		final TileSetIndex index = new TileSetIndex(tileset.getTiles());
+		final long indexingTime = System.nanoTime() - start;
+		
+		Gdx.app.log(TAG, String.format("%s: %d tiles, indexed in %.1f ms", TILESET, index.getTiles().size(),
+				indexingTime / 1e6));
+		
+		final TileFittingCache cache = new TileFittingCache(index);
+		
+		final Random rnd = new Random(20211016L);
+		final int[][][] heights = new int[QUERIES][][];
+		final Expando[] characteristics = new Expando[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			heights[i] = getHeights(rnd);
+			characteristics[i] = getCharacteristics(rnd);
+		}
+		
+		//
+		// The index (and the cache) must agree with the linear scan on every cell.
+		final List<List<Tile>> expected = new ArrayList<>(QUERIES);
+		int mismatches = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			expected.add(scan(tileset, heights[i], characteristics[i]));
+			final List<Tile> actual = index.getAcceptable(heights[i], characteristics[i]);
+			if (!expected.get(i).equals(actual)
+					|| !expected.get(i).equals(cache.getAcceptable(heights[i], characteristics[i]))) {
+				mismatches++;
+				if (mismatches <= 10)
+					Gdx.app.error(TAG, String.format("Mismatch for %s / %s: expected %d tiles, got %d",
+							toString(heights[i]), characteristics[i].getProperties(), expected.get(i).size(),
+							actual.size()));
+			}
+		}
+		
+		//
+		// Fitting from several threads at once must agree with fitting serially.
+		// Each thread starts at a different cell, so that different threads are
+		// evaluating the same rules at the same time.
+		final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final AtomicInteger parallelMismatches = new AtomicInteger();
+		
+		runInParallel(executor, threads, (thread) -> {
+			for (int pass = 0; pass < Math.max(1, warmupPasses); pass++)
+				for (int q = 0; q < QUERIES; q++) {
+					final int i = (q + thread * QUERIES / threads) % QUERIES;
+					if (!expected.get(i).equals(scan(tileset, heights[i], characteristics[i]))
+							|| !expected.get(i).equals(index.getAcceptable(heights[i], characteristics[i]))
+							|| !expected.get(i).equals(cache.getAcceptable(heights[i], characteristics[i])))
+						parallelMismatches.incrementAndGet();
+				}
+		});
+		
+		for (int pass = 0; pass < warmupPasses; pass++)
+			for (int i = 0; i < QUERIES; i++) {
+				scan(tileset, heights[i], characteristics[i]);
+				index.getAcceptable(heights[i], characteristics[i]);
+				cache.getAcceptable(heights[i], characteristics[i]);
+			}
+		
+		long accepted = 0;
+		
+		start = System.nanoTime();
+		for (int pass = 0; pass < passes; pass++)
+			for (int i = 0; i < QUERIES; i++)
+				accepted += scan(tileset, heights[i], characteristics[i]).size();
+		final long scanTime = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		for (int pass = 0; pass < passes; pass++)
+			for (int i = 0; i < QUERIES; i++)
+				accepted -= index.getAcceptable(heights[i], characteristics[i]).size();
+		final long indexTime = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		for (int pass = 0; pass < passes; pass++)
+			for (int i = 0; i < QUERIES; i++)
+				accepted += cache.getAcceptable(heights[i], characteristics[i]).size();
+		final long cacheTime = System.nanoTime() - start;
+		accepted -= (long) passes * expected.stream().mapToInt(List::size).sum();
+		
+		start = System.nanoTime();
+		runInParallel(executor, threads, (thread) -> {
+			for (int pass = 0; pass < passes; pass++)
+				for (int i = 0; i < QUERIES; i++)
+					scan(tileset, heights[i], characteristics[i]);
+		});
+		final long parallelScanTime = System.nanoTime() - start;
+		
+		executor.shutdown();
+		
+		final double scanPerCell = (double) scanTime / (passes * QUERIES),
+				indexPerCell = (double) indexTime / (passes * QUERIES),
+				cachePerCell = (double) cacheTime / (passes * QUERIES),
+				parallelScanPerCell = (double) parallelScanTime / ((long) threads * passes * QUERIES);
+		Gdx.app.log(TAG, String.format("linear scan: %,.0f ns/cell", scanPerCell));
+		Gdx.app.log(TAG, String.format("indexed:     %,.0f ns/cell (%.1fx)", indexPerCell, scanPerCell / indexPerCell));
+		Gdx.app.log(TAG, String.format("cached:      %,.0f ns/cell (%.1fx)", cachePerCell, scanPerCell / cachePerCell));
+		Gdx.app.log(TAG, cache.toString());
+		Gdx.app.log(TAG, String.format("linear scan, %d threads: %,.0f ns/cell (%.1fx)", threads, parallelScanPerCell,
+				scanPerCell / parallelScanPerCell));
+		
+		if (mismatches > 0 || accepted != 0) {
+			Gdx.app.error(TAG, "Index disagreed with linear scan on " + mismatches + " of " + QUERIES + " cells!");
+			exitStatus = 1;
+		}
+		
+		if (parallelMismatches.get() > 0) {
+			Gdx.app.error(TAG, "Parallel fitting disagreed with serial fitting " + parallelMismatches.get() + " times!");
+			exitStatus = 1;
+		}
+		
+		assetService.dispose();
+	}
+	
+	/**
+	 * Run the given task on each of {@code threads} threads at once, and wait for
+	 * them all to finish.
+	 */
+	private static void runInParallel(ExecutorService executor, int threads, IntConsumer task) throws Exception {
+		
+		final List<Future<?>> futures = new ArrayList<>(threads);
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			futures.add(executor.submit(() -> task.accept(thread)));
+		}
+		
+		for (Future<?> future : futures)
+			future.get();
+	}
+	
+	/**
+	 * Fit tiles the way {@link TileSet#getTilesFor(int[][], Expando)} did before
+	 * it was indexed.
+	 */
+	private static List<Tile> scan(TileSet tileset, int[][] heights, Expando ext) {
+		
+		final List<Tile> result = new ArrayList<>();
+		for (Tile tile : tileset.getTiles())
+			if (tile.isAcceptable(heights, ext))
+				result.add(tile);
+		return result;
+	}
+	
+	/**
+	 * Mostly flat cells, some gentle slopes, and the occasional cliff -- all at
+	 * varying base-altitudes.
+	 */
+	private static int[][] getHeights(Random rnd) {
+		
+		final int base = rnd.nextInt(32);
+		final float kind = rnd.nextFloat();
+		final int relief = (kind < 0.6f) ? 0 : (kind < 0.95f) ? 1 : (kind < 0.98f) ? 2 : 6;
+		
+		final int[][] heights = new int[2][2];
+		for (TileCorner corner : TileCorner.values())
+			heights[corner.getOffsetX()][corner.getOffsetY()] = base + ((relief == 0) ? 0 : rnd.nextInt(relief + 1));
+		return heights;
+	}
+	
+	private static Expando getCharacteristics(Random rnd) {
+		
+		final Expando ext = new Expando();
+		ext.setProperty("terrain", (rnd.nextFloat() < 0.8f) ? "grass" : "pavement");
+		
+		final List<TileCorner> water = new ArrayList<>();
+		if (rnd.nextFloat() < 0.25f)
+			for (TileCorner corner : TileCorner.values())
+				if (rnd.nextBoolean())
+					water.add(corner);
+		ext.setProperty("water", water);
+		
+		if (rnd.nextFloat() < 0.15f) {
+			final List<TileEdge> road = new ArrayList<>();
+			for (TileEdge edge : TileEdge.values())
+				if (rnd.nextBoolean())
+					road.add(edge);
+			ext.setProperty("road", road);
+		} else
+			ext.setProperty("road", null);
+		
+		return ext;
+	}
+	
+	private static String toString(int[][] heights) {
+		
+		return "[" + heights[0][0] + "," + heights[0][1] + "," + heights[1][0] + "," + heights[1][1] + "]";
+	}
+}
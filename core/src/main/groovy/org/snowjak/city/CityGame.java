@@ -1,6 +1,7 @@
 package org.snowjak.city;
 
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -66,6 +67,12 @@ public class CityGame extends Game {
 	 */
 	public static final String RESOURCE_SHARED_CLASSES_DIRECTORY_NAME = "SharedClasses";
 	
+	/**
+	 * Directory (under {@link com.badlogic.gdx.Files#local(String) local}
+	 * storage) holding cached data, which may be discarded at any time.
+	 */
+	public static final String LOCAL_ROOT_CACHE = "cache/";
+	
 	//
 	//
 	//
@@ -76,6 +83,21 @@ public class CityGame extends Game {
 	public static final ListeningExecutorService EXECUTOR = MoreExecutors.listeningDecorator(MoreExecutors
 			.getExitingExecutorService((ThreadPoolExecutor) Executors.newCachedThreadPool(), Duration.ofSeconds(5)));
 	
+	/**
+	 * How many threads {@link #WORKERS} runs: one per core, leaving one core for
+	 * the main thread.
+	 */
+	public static final int WORKER_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	
+	/**
+	 * Shared, bounded pool for CPU-bound batch-jobs (see
+	 * {@link org.snowjak.city.ecs.systems.CellJobPipeline CellJobPipeline}). Unlike
+	 * {@link #EXECUTOR}, this never runs more than {@link #WORKER_COUNT} jobs at
+	 * once; any others wait their turn.
+	 */
+	public static final ExecutorService WORKERS = MoreExecutors.getExitingExecutorService(
+			(ThreadPoolExecutor) Executors.newFixedThreadPool(WORKER_COUNT), Duration.ofSeconds(5));
+	
 	//
 	//
 	//
@@ -10,6 +10,7 @@ import org.snowjak.city.input.hotkeys.HotkeyRegistry
 import org.snowjak.city.map.CityMap
 import org.snowjak.city.map.renderer.MapMode
 import org.snowjak.city.map.renderer.MapRenderer
+import org.snowjak.city.map.renderer.RenderingHookProfiler
 import org.snowjak.city.map.renderer.RenderingHookRegistry
 import org.snowjak.city.map.renderer.MapRenderer.MapRendererSettings
 import org.snowjak.city.module.Module
@@ -98,15 +99,28 @@ public class GameState {
 	MapMode activeMapMode
 	
 	/**
-	 * Entity-processing {@link Engine}
+	 * Entity-processing {@link Engine}. Replaced -- by one whose pools are sized
+	 * to the current {@link #map} -- whenever the Engine is reset for a new game.
 	 */
-	final Engine engine = new PooledEngine(64, 512, 8, 64)
+	Engine engine = new PooledEngine(64, 512, 8, 64)
+	
+	/**
+	 * While a game is being played, the thread that updates the {@link #engine} --
+	 * and so the only thread that may modify it. {@code null} otherwise (e.g.,
+	 * while loading-tasks are running).
+	 */
+	volatile Thread engineThread
 	
 	/**
 	 * Endpoint for registering/un-registering your rendering-hooks
 	 */
 	final RenderingHookRegistry renderingHookRegistry = new RenderingHookRegistry()
 	
+	/**
+	 * Records how much each rendering-hook costs, per frame (when enabled)
+	 */
+	final RenderingHookProfiler renderingHookProfiler = new RenderingHookProfiler()
+	
 	/**
 	 * Renderer for registered button-activated tools
 	 */
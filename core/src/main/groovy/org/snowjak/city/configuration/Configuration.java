@@ -9,6 +9,7 @@ import org.snowjak.city.console.Console;
 import org.snowjak.city.console.loggers.ConsoleLoggerFactory;
 import org.snowjak.city.map.generator.MapGenerator;
 import org.snowjak.city.map.generator.MapGeneratorLoader;
+import org.snowjak.city.map.tiles.TileAtlasPacker;
 import org.snowjak.city.map.tiles.TileSet;
 import org.snowjak.city.module.Module;
 import org.snowjak.city.module.ModuleExceptionRegistry.FailureDomain;
@@ -53,7 +54,8 @@ public class Configuration {
 	}
 	
 	@Initiate(priority = InitPriority.HIGHEST_PRIORITY)
-	public void configureAssetLoaders(final GameService gameService, final GameAssetService assetService) {
+	public void configureAssetLoaders(final GameService gameService, final GameAssetService assetService,
+			final TileAtlasPacker tileAtlasPacker) {
 		
 		final MapGeneratorLoader mapGeneratorLoader = new MapGeneratorLoader();
 		assetService.setLoader(MapGenerator.class, mapGeneratorLoader);
@@ -68,6 +70,11 @@ public class Configuration {
 		});
 		
 		initiateScriptScanning(gameService, assetService, GameAssetService.FILE_HANDLE_RESOLVER);
+		
+		//
+		// Once all tile-sets are loaded, pack their tiles together.
+		assetService.addOnLoadAction(tileAtlasPacker::packAll);
+		gameService.getState().getDisposables().add(tileAtlasPacker);
 	}
 	
 	private void initiateScriptScanning(final GameService gameService, final GameAssetService assetService,
@@ -21,6 +21,7 @@ class ConsoleModel extends Binding {
 		
 		addProtectedVariable 'assets', assetService
 		addProtectedVariable 'game', gameService
+		addProtectedVariable 'profiler', gameService.state.renderingHookProfiler
 	}
 	
 	public void addProtectedVariable(String name, Object value) {
@@ -0,0 +1,318 @@
+/**
+ *
+ */
+package org.snowjak.city.ecs.systems;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.snowjak.city.CityGame;
+import org.snowjak.city.map.CityMap;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.EntitySystem;
+
+/**
+ * Runs per-cell background jobs in batches -- one batch per map-chunk (see
+ * {@link CityMap#CHUNK_SIZE}) -- on the bounded {@link CityGame#WORKERS} pool,
+ * and hands their results back to the main thread.
+ * <p>
+ * Every cycle, this system:
+ * <ol>
+ * <li>dispatches queued batches, so long as no more than twice
+ * {@link CityGame#WORKER_COUNT} batches are in flight; then</li>
+ * <li>applies completed results on the main thread, one cell at a time, until
+ * its time-budget for this cycle is spent.</li>
+ * </ol>
+ * </p>
+ * <p>
+ * Once the {@link #getBacklog() backlog} -- cells queued, in flight, or awaiting
+ * their results' application -- reaches its limit, this pipeline
+ * {@link #isSaturated() is saturated} and refuses new jobs until it catches up.
+ * (See {@link CellJobSubmittingSystem}, which stops submitting as soon as this
+ * happens.)
+ * </p>
+ * <p>
+ * When this system is removed from its {@link Engine}, every job not yet applied
+ * is cancelled, and its {@code abandon} callback is executed instead -- so that
+ * the submitter can arrange for that cell to be re-submitted later.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ * @param <R>
+ *            result-type of each job
+ */
+public class CellJobPipeline<R> extends EntitySystem {
+	
+	/**
+	 * Default limit on the backlog, in cells.
+	 */
+	public static final int DEFAULT_MAX_BACKLOG = 16384;
+	
+	/**
+	 * Default time-budget for applying results, in seconds per cycle.
+	 */
+	public static final float DEFAULT_APPLY_BUDGET = 0.004f;
+	
+	private static final int MAX_IN_FLIGHT_BATCHES = 2 * CityGame.WORKER_COUNT;
+	
+	private final int maxBacklog;
+	private final long applyBudgetNanos;
+	private final Consumer<Throwable> failureHandler;
+	
+	/**
+	 * Batches not yet dispatched, by chunk, in the order they were first queued.
+	 * Accessed only from the main thread.
+	 */
+	private final Map<Integer, List<CellJob<R>>> queued = new LinkedHashMap<>();
+	private int queuedCells = 0;
+	
+	private final AtomicInteger inFlightBatches = new AtomicInteger(), inFlightCells = new AtomicInteger();
+	private final ConcurrentLinkedQueue<CellJob<R>> completed = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger completedCells = new AtomicInteger();
+	
+	/**
+	 * Every job submitted but not yet applied or abandoned. Accessed only from the
+	 * main thread.
+	 */
+	private final Set<CellJob<R>> outstanding = new LinkedHashSet<>();
+	
+	/**
+	 *
+	 * @param maxBacklog
+	 *            refuse new jobs while this many cells are queued, in flight, or
+	 *            awaiting application
+	 * @param applyBudget
+	 *            time to spend applying results every cycle, in seconds (at least
+	 *            1 result is always applied, if available)
+	 * @param failureHandler
+	 *            receives any exception thrown by a job or by the application of
+	 *            its result
+	 */
+	public CellJobPipeline(int maxBacklog, float applyBudget, Consumer<Throwable> failureHandler) {
+		
+		super();
+		this.maxBacklog = maxBacklog;
+		this.applyBudgetNanos = (long) (applyBudget * 1e9);
+		this.failureHandler = failureHandler;
+	}
+	
+	/**
+	 * Queue a job for the given cell, with no {@code abandon} callback. Must be
+	 * called from the main thread.
+	 *
+	 * @param cellX
+	 * @param cellY
+	 * @param job
+	 * @param apply
+	 * @return {@code false} if this pipeline {@link #isSaturated() is saturated}
+	 * @see #submit(int, int, Callable, Consumer, Runnable)
+	 */
+	public boolean submit(int cellX, int cellY, Callable<R> job, Consumer<R> apply) {
+		
+		return submit(cellX, cellY, job, apply, null);
+	}
+	
+	/**
+	 * Queue a job for the given cell. Must be called from the main thread.
+	 *
+	 * @param cellX
+	 * @param cellY
+	 * @param job
+	 *            executed on a worker thread
+	 * @param apply
+	 *            executed on the main thread, with the job's result (or
+	 *            {@code null} if the job failed)
+	 * @param abandon
+	 *            executed on the main thread, instead of {@code apply}, if this
+	 *            system is removed from its {@link Engine} before the job's
+	 *            result is applied (may be {@code null})
+	 * @return {@code false} if this pipeline {@link #isSaturated() is saturated},
+	 *         in which case the job is not queued and should be re-submitted
+	 *         later
+	 */
+	public boolean submit(int cellX, int cellY, Callable<R> job, Consumer<R> apply, Runnable abandon) {
+		
+		if (isSaturated())
+			return false;
+		
+		final CellJob<R> cell = new CellJob<>(job, apply, abandon);
+		
+		final Integer chunk = ((cellY >> CityMap.CHUNK_SHIFT) << 16) | (cellX >> CityMap.CHUNK_SHIFT);
+		queued.computeIfAbsent(chunk, c -> new ArrayList<>()).add(cell);
+		queuedCells++;
+		outstanding.add(cell);
+		
+		return true;
+	}
+	
+	/**
+	 * @return {@code true} if this pipeline is refusing new jobs until its
+	 *         backlog clears
+	 */
+	public boolean isSaturated() {
+		
+		return getBacklog() >= maxBacklog;
+	}
+	
+	/**
+	 * @return cells queued, in flight, or awaiting their results' application
+	 */
+	public int getBacklog() {
+		
+		return queuedCells + inFlightCells.get() + completedCells.get();
+	}
+	
+	/**
+	 * @return cells queued, but not yet dispatched
+	 */
+	public int getQueuedCells() {
+		
+		return queuedCells;
+	}
+	
+	/**
+	 * @return cells dispatched, but not yet completed
+	 */
+	public int getInFlightCells() {
+		
+		return inFlightCells.get();
+	}
+	
+	/**
+	 * @return cells completed, but whose results are not yet applied
+	 */
+	public int getCompletedCells() {
+		
+		return completedCells.get();
+	}
+	
+	@Override
+	public void update(float deltaTime) {
+		
+		dispatch();
+		apply();
+	}
+	
+	@Override
+	public void removedFromEngine(Engine engine) {
+		
+		super.removedFromEngine(engine);
+		
+		//
+		// Nothing will apply these jobs' results now -- so cancel them all, and give
+		// their submitters a chance to re-submit them elsewhere.
+		//
+		// Jobs already in flight will still run to the end of their batch, but their
+		// workers will skip any cancelled cells.
+		//
+		queued.clear();
+		queuedCells = 0;
+		
+		for (CellJob<R> cell : outstanding) {
+			cell.cancelled = true;
+			
+			if (cell.abandon != null)
+				try {
+					cell.abandon.run();
+				} catch (Throwable t) {
+					failureHandler.accept(t);
+				}
+		}
+		outstanding.clear();
+		
+		while (completed.poll() != null)
+			completedCells.decrementAndGet();
+	}
+	
+	private void dispatch() {
+		
+		final Iterator<List<CellJob<R>>> batches = queued.values().iterator();
+		while (batches.hasNext() && inFlightBatches.get() < MAX_IN_FLIGHT_BATCHES) {
+			
+			final List<CellJob<R>> batch = batches.next();
+			batches.remove();
+			
+			queuedCells -= batch.size();
+			inFlightCells.addAndGet(batch.size());
+			inFlightBatches.incrementAndGet();
+			
+			CityGame.WORKERS.execute(() -> {
+				try {
+					for (CellJob<R> cell : batch) {
+						if (!cell.cancelled)
+							try {
+								cell.result = cell.job.call();
+							} catch (Throwable t) {
+								cell.failure = t;
+							}
+						
+						//
+						// Publish each cell as soon as it's done, rather than waiting
+						// for the whole batch.
+						inFlightCells.decrementAndGet();
+						completedCells.incrementAndGet();
+						completed.add(cell);
+					}
+				} finally {
+					inFlightBatches.decrementAndGet();
+				}
+			});
+		}
+	}
+	
+	private void apply() {
+		
+		final long deadline = System.nanoTime() + applyBudgetNanos;
+		
+		do {
+			final CellJob<R> cell = completed.poll();
+			if (cell == null)
+				break;
+			
+			completedCells.decrementAndGet();
+			
+			if (cell.cancelled)
+				continue;
+			outstanding.remove(cell);
+			
+			if (cell.failure != null)
+				failureHandler.accept(cell.failure);
+			
+			try {
+				cell.apply.accept(cell.result);
+			} catch (Throwable t) {
+				failureHandler.accept(t);
+			}
+			
+		} while (System.nanoTime() < deadline);
+	}
+	
+	private static class CellJob<R> {
+		
+		final Callable<R> job;
+		final Consumer<R> apply;
+		final Runnable abandon;
+		
+		volatile boolean cancelled = false;
+		R result;
+		Throwable failure;
+		
+		CellJob(Callable<R> job, Consumer<R> apply, Runnable abandon) {
+			
+			this.job = job;
+			this.apply = apply;
+			this.abandon = abandon;
+		}
+	}
+}
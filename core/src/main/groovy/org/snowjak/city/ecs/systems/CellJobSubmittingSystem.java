@@ -0,0 +1,69 @@
+/**
+ *
+ */
+package org.snowjak.city.ecs.systems;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.ashley.utils.ImmutableArray;
+
+/**
+ * A variant of {@link IteratingSystem} that feeds a {@link CellJobPipeline}.
+ * <p>
+ * Every cycle, this system processes Entities only until its pipeline
+ * {@link CellJobPipeline#isSaturated() is saturated}. While the pipeline stays
+ * saturated, this system does not process any Entities at all.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public abstract class CellJobSubmittingSystem extends IteratingSystem {
+	
+	private final CellJobPipeline<?> pipeline;
+	
+	/**
+	 * Construct a new CellJobSubmittingSystem that operates on the given
+	 * {@link Family}, at a priority of 0.
+	 *
+	 * @param pipeline
+	 * @param family
+	 */
+	public CellJobSubmittingSystem(CellJobPipeline<?> pipeline, Family family) {
+		
+		this(pipeline, family, 0);
+	}
+	
+	/**
+	 * Construct a new CellJobSubmittingSystem that operates on the given
+	 * {@link Family}, with the configured priority.
+	 *
+	 * @param pipeline
+	 * @param family
+	 * @param priority
+	 *            lower value = higher priority
+	 */
+	public CellJobSubmittingSystem(CellJobPipeline<?> pipeline, Family family, int priority) {
+		
+		super(family, priority);
+		this.pipeline = pipeline;
+	}
+	
+	@Override
+	public boolean checkProcessing() {
+		
+		if (pipeline.isSaturated())
+			return false;
+		
+		return super.checkProcessing();
+	}
+	
+	@Override
+	public void update(float deltaTime) {
+		
+		final ImmutableArray<Entity> entities = getEntities();
+		for (int i = 0; i < entities.size() && !pipeline.isSaturated(); i++)
+			processEntity(entities.get(i), deltaTime);
+	}
+}
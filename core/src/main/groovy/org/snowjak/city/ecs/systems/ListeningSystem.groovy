@@ -21,6 +21,15 @@ abstract class ListeningSystem extends EntitySystem implements EntityListener {
 	
 	private final LinkedHashSet<Entity> newlyAdded = new LinkedHashSet<>(), newlyDropped = new LinkedHashSet<>()
 	
+	/**
+	 * While {@code false}, Entities entering or leaving this system's
+	 * {@link Family} are ignored -- i.e., they will never be passed to
+	 * {@link #added(Entity, float) added()} or {@link #dropped(Entity, float)
+	 * dropped()}. Useful during bulk-operations that do this system's work
+	 * themselves.
+	 */
+	boolean listening = true
+	
 	public ListeningSystem(Family family, int priority = 0) {
 		super(priority)
 		
@@ -82,12 +91,16 @@ abstract class ListeningSystem extends EntitySystem implements EntityListener {
 	@Override
 	public void entityAdded(Entity entity) {
 		
-		newlyAdded << entity
+		if(listening)
+			newlyAdded << entity
 	}
 	
 	@Override
 	public void entityRemoved(Entity entity) {
 		
-		newlyDropped << entity
+		if(listening)
+			newlyDropped << entity
+		else
+			newlyAdded.remove entity
 	}
 }
@@ -0,0 +1,93 @@
+/**
+ *
+ */
+package org.snowjak.city.ecs.systems.impl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.snowjak.city.GameState;
+import org.snowjak.city.ecs.components.IsMapVertex;
+import org.snowjak.city.map.CityMap;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+
+/**
+ * Vertex-Entities are materialized on demand (see
+ * {@link CityMap#getVertexEntity(int, int)}), and are kept only while they
+ * carry something besides their {@link IsMapVertex}.
+ * <p>
+ * Vertex-Entities that may have become bare -- because they were just
+ * materialized, or because one of their components was just removed -- are
+ * {@link #releaseWhenBare(Entity) reported} to this system. At the end of
+ * every Engine update (this system runs after all others), each reported
+ * Entity that is (still) bare is released from the map and removed from the
+ * Engine.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class BareMapVertexReleasingSystem extends EntitySystem {
+	
+	private final ComponentMapper<IsMapVertex> isVertexMapper = ComponentMapper.getFor(IsMapVertex.class);
+	
+	private final GameState gameState;
+	
+	/**
+	 * Entities that may have become bare since the last update.
+	 */
+	private final Set<Entity> candidates = new HashSet<>();
+	
+	public BareMapVertexReleasingSystem(GameState gameState) {
+		
+		super(Integer.MAX_VALUE);
+		
+		this.gameState = gameState;
+	}
+	
+	/**
+	 * Release the given vertex-Entity at the end of the next update, if by then
+	 * it carries nothing but its {@link IsMapVertex}.
+	 * 
+	 * @param entity
+	 */
+	public void releaseWhenBare(Entity entity) {
+		
+		candidates.add(entity);
+	}
+	
+	@Override
+	public void update(float deltaTime) {
+		
+		if (candidates.isEmpty())
+			return;
+		
+		final CityMap map = gameState.getMap();
+		
+		if (map != null)
+			for (Entity entity : candidates) {
+				if (entity.isScheduledForRemoval() || entity.getComponents().size() > 1)
+					continue;
+				
+				final IsMapVertex vertex = isVertexMapper.get(entity);
+				if (vertex == null)
+					continue;
+				
+				if (map.releaseVertexEntity((int) vertex.getVertexX(), (int) vertex.getVertexY(), entity))
+					getEngine().removeEntity(entity);
+			}
+		
+		candidates.clear();
+	}
+	
+	@Override
+	public void removedFromEngine(Engine engine) {
+		
+		super.removedFromEngine(engine);
+		candidates.clear();
+	}
+}
@@ -3,7 +3,14 @@
  */
 package org.snowjak.city.map
 
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.function.IntConsumer
+import java.util.stream.IntStream
+
 import org.snowjak.city.map.tiles.TileCorner
+import org.snowjak.city.util.BiIntConsumer
 
 import com.badlogic.ashley.core.Entity
 
@@ -20,20 +27,207 @@ import com.badlogic.ashley.core.Entity
  *
  */
 public class CityMap {
-	private int[][] vertexAltitudes
-	private Entity[][] cellEntities, vertexEntities
+	
+	/**
+	 * Map-storage is divided into square chunks, {@code CHUNK_SIZE} cells (or
+	 * vertices) on a side.
+	 */
+	public static final int CHUNK_SHIFT = 6, CHUNK_SIZE = 1 << CHUNK_SHIFT
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1
+	
+	private final int width, height
+	private final int vertexWidth, vertexHeight
+	
+	/**
+	 * Chunks cover the vertex-grid (and so also the cell-grid, which is one
+	 * smaller in each direction). Chunk [x,y] lives at {@code [y * chunksX + x]}.
+	 * A {@code null} chunk has never been written to, and so has altitude 0
+	 * everywhere and no associated Entities.
+	 */
+	private final int chunksX, chunksY
+	private final CityMapChunk[] chunks
+	
+	/**
+	 * Every change to this map is stamped with the next value of this counter.
+	 * Each chunk remembers the stamp of its latest change.
+	 */
+	private final AtomicLong version = new AtomicLong()
+	private final AtomicLongArray chunkVersions
+	
+	private final List<DirtyRegion> dirtyRegions = new CopyOnWriteArrayList<>()
+	
+	/**
+	 * Vertex-Entities are "virtual" -- they're only materialized (by this
+	 * factory) when they're first {@link #getVertexEntity(int, int) requested}.
+	 */
+	private VertexEntityFactory vertexEntityFactory
 	
 	/**
 	 * Construct a new map of the given dimensions in tiles. The number of vertices will be +1 in each direction.
+	 * <p>
+	 * No storage is allocated for any part of the map until that part is first
+	 * written to.
+	 * </p>
 	 * 
 	 * @param width
 	 * @param height
 	 */
 	public CityMap(int width, int height) {
 		
-		vertexAltitudes = new int[width+1][height+1]
-		cellEntities = new Entity[width][height]
-		vertexEntities = new Entity[width+1][height+1]
+		if (width < 1 || height < 1)
+			throw new IllegalArgumentException(String.format("Cannot create a map of size [%d,%d].", width, height))
+		
+		this.width = width
+		this.height = height
+		this.vertexWidth = width + 1
+		this.vertexHeight = height + 1
+		
+		chunksX = (vertexWidth + CHUNK_MASK) >> CHUNK_SHIFT
+		chunksY = (vertexHeight + CHUNK_MASK) >> CHUNK_SHIFT
+		chunks = new CityMapChunk[chunksX * chunksY]
+		chunkVersions = new AtomicLongArray(chunksX * chunksY)
+	}
+	
+	private CityMapChunk getChunk(int x, int y) {
+		
+		chunks[(y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT)]
+	}
+	
+	private CityMapChunk getChunkForWrite(int x, int y) {
+		
+		final int index = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT)
+		def chunk = chunks[index]
+		if (chunk == null) {
+			chunk = new CityMapChunk()
+			chunks[index] = chunk
+		}
+		chunk
+	}
+	
+	private static int getChunkLocalIndex(int x, int y) {
+		
+		((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)
+	}
+	
+	/**
+	 * @return the number of storage-chunks spanning this map's width
+	 */
+	public int getChunksX() {
+		chunksX
+	}
+	
+	/**
+	 * @return the number of storage-chunks spanning this map's height
+	 */
+	public int getChunksY() {
+		chunksY
+	}
+	
+	/**
+	 * Get this map's current version. This increases every time any part of the
+	 * map is changed.
+	 *
+	 * @return
+	 */
+	public long getVersion() {
+		version.get()
+	}
+	
+	/**
+	 * Get the given chunk's current version. This increases every time any
+	 * cell in that chunk is changed -- including when any of the cell's
+	 * corner-vertices changes altitude.
+	 *
+	 * @param chunkX
+	 * @param chunkY
+	 * @return
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if ({@code chunkX}) or ({@code chunkY}) fall outside the map
+	 */
+	public long getChunkVersion(int chunkX, int chunkY) {
+		
+		if (chunkX < 0 || chunkY < 0 || chunkX >= chunksX || chunkY >= chunksY)
+			throw new ArrayIndexOutOfBoundsException(
+			String.format("Given chunk index [%d,%d] is out of bounds.", chunkX, chunkY))
+		
+		chunkVersions.get(chunkY * chunksX + chunkX)
+	}
+	
+	/**
+	 * Begin tracking the region of this map that changes from this point on.
+	 *
+	 * @return a new {@link DirtyRegion}, initially clean
+	 */
+	public DirtyRegion trackDirtyRegion() {
+		
+		final region = new DirtyRegion()
+		dirtyRegions << region
+		region
+	}
+	
+	/**
+	 * Stop updating the given {@link DirtyRegion}.
+	 *
+	 * @param region
+	 */
+	public void untrackDirtyRegion(DirtyRegion region) {
+		
+		dirtyRegions.remove region
+	}
+	
+	/**
+	 * Record that the given (inclusive) range of cells has changed, bumping the
+	 * affected chunks' versions and expanding every tracked
+	 * {@link DirtyRegion}.
+	 * <p>
+	 * This map calls this itself whenever its altitudes or Entity-associations
+	 * change. Call it yourself when a cell changes in some other way that
+	 * consumers should notice (e.g., when its assigned tiles change).
+	 * </p>
+	 *
+	 * @param minCellX
+	 * @param minCellY
+	 * @param maxCellX
+	 * @param maxCellY
+	 */
+	public void markCellsChanged(int minCellX, int minCellY, int maxCellX, int maxCellY) {
+		
+		minCellX = Math.max(minCellX, 0)
+		minCellY = Math.max(minCellY, 0)
+		maxCellX = Math.min(maxCellX, width - 1)
+		maxCellY = Math.min(maxCellY, height - 1)
+		if (minCellX > maxCellX || minCellY > maxCellY)
+			return
+		
+		final long stamp = version.incrementAndGet()
+		for (int cy = (minCellY >> CHUNK_SHIFT); cy <= (maxCellY >> CHUNK_SHIFT); cy++)
+			for (int cx = (minCellX >> CHUNK_SHIFT); cx <= (maxCellX >> CHUNK_SHIFT); cx++)
+				chunkVersions.set cy * chunksX + cx, stamp
+		
+		for (DirtyRegion region : dirtyRegions)
+			region.include minCellX, minCellY, maxCellX, maxCellY
+	}
+	
+	/**
+	 * Release whatever storage this map no longer needs: chunks whose
+	 * altitudes have all become equal are collapsed to a single value, and
+	 * chunks that are uniformly at altitude 0 with no associated Entities are
+	 * dropped entirely.
+	 * <p>
+	 * Useful after bulk-writes like map-generation.
+	 * </p>
+	 */
+	public void compact() {
+		
+		for (int i = 0; i < chunks.length; i++) {
+			final chunk = chunks[i]
+			if (chunk == null)
+				continue
+			
+			chunk.compact()
+			if (chunk.uniform && chunk.empty && chunk.getAltitude(0) == 0)
+				chunks[i] = null
+		}
 	}
 	
 	/**
@@ -55,7 +249,7 @@ public class CityMap {
 	 */
 	public boolean isValidVertex(int vertexX, int vertexY) {
 		( (vertexX >= 0) && (vertexY >= 0)
-				&& (vertexX < vertexEntities.length ) && (vertexY < vertexEntities[vertexX].length))
+				&& (vertexX < vertexWidth) && (vertexY < vertexHeight) )
 	}
 	
 	/**
@@ -93,12 +287,45 @@ public class CityMap {
 	 */
 	public int getVertexAltitude(int vertexX, int vertexY) {
 		
-		if (vertexX < 0 || vertexY < 0 || vertexX >= vertexAltitudes.length
-				|| vertexY >= vertexAltitudes[vertexY].length)
+		if(!isValidVertex(vertexX, vertexY))
 			throw new ArrayIndexOutOfBoundsException(
 			String.format("Given vertex index [%d,%d] is out of bounds.", vertexX, vertexY))
 		
-		vertexAltitudes[vertexX][vertexY]
+		getVertexAltitudeUnchecked(vertexX, vertexY)
+	}
+	
+	/**
+	 * Get the altitude associated with the given vertex, <strong>without</strong>
+	 * checking that the given vertex lies within the map.
+	 * <p>
+	 * Intended for tight loops (e.g., the map-renderer) which have already
+	 * clipped their ranges to this map's bounds. An out-of-range
+	 * {@code vertexX} may silently "wrap" onto a neighboring row.
+	 * </p>
+	 * 
+	 * @param vertexX
+	 * @param vertexY
+	 * @return
+	 */
+	public int getVertexAltitudeUnchecked(int vertexX, int vertexY) {
+		
+		final chunk = getChunk(vertexX, vertexY)
+		(chunk == null) ? 0 : chunk.getAltitude(getChunkLocalIndex(vertexX, vertexY))
+	}
+	
+	/**
+	 * Get the altitude associated with the given cell at the given corner,
+	 * <strong>without</strong> checking that the given cell lies within the map.
+	 * 
+	 * @param cellX
+	 * @param cellY
+	 * @param corner
+	 * @return
+	 * @see #getVertexAltitudeUnchecked(int, int)
+	 */
+	public int getCellAltitudeUnchecked(int cellX, int cellY, TileCorner corner) {
+		
+		getVertexAltitudeUnchecked(cellX + corner.offsetX, cellY + corner.offsetY)
 	}
 	
 	/**
@@ -114,7 +341,7 @@ public class CityMap {
 		if (corner == null)
 			throw new NullPointerException("Cannot set corner altitude for null corner.")
 		
-		setVertexAltitude cellY + corner.offsetX, cellY + corner.offsetY, altitude
+		setVertexAltitude cellX + corner.offsetX, cellY + corner.offsetY, altitude
 	}
 	
 	/**
@@ -131,12 +358,50 @@ public class CityMap {
 	 */
 	public void setVertexAltitude(int vertexX, int vertexY, int altitude) {
 		
-		if (vertexX < 0 || vertexY < 0 || vertexX >= vertexAltitudes.length
-				|| vertexY >= vertexAltitudes[vertexX].length)
+		if(!isValidVertex(vertexX, vertexY))
 			throw new ArrayIndexOutOfBoundsException(
 			String.format("Given vertex index [%d,%d] is out of bounds.", vertexX, vertexY))
 		
-		vertexAltitudes[vertexX][vertexY] = altitude
+		if (altitude == getVertexAltitudeUnchecked(vertexX, vertexY))
+			return
+		
+		getChunkForWrite(vertexX, vertexY).setAltitude(getChunkLocalIndex(vertexX, vertexY), altitude)
+		markCellsChanged vertexX - 1, vertexY - 1, vertexX, vertexY
+	}
+	
+	/**
+	 * Set the altitudes of an entire row of vertices at once.
+	 * <p>
+	 * Multiple threads may call this concurrently, so long as no two of them
+	 * write to rows within the same {@link #CHUNK_SIZE}-row band at the same time.
+	 * </p>
+	 *
+	 * @param vertexY
+	 * @param altitudes
+	 *            one altitude per vertex, from {@code vertexX = 0} onward
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if ({@code vertexY}) falls outside the map, or if
+	 *             {@code altitudes} does not cover the map's full width in
+	 *             vertices
+	 */
+	public void setVertexAltitudeRow(int vertexY, int[] altitudes) {
+		
+		if (vertexY < 0 || vertexY >= vertexHeight || altitudes.length < vertexWidth)
+			throw new ArrayIndexOutOfBoundsException(
+			String.format("Given vertex row %d (of length %d) is out of bounds.", vertexY, altitudes.length))
+		
+		boolean changed = false
+		for (int vertexX = 0; vertexX < vertexWidth; vertexX++) {
+			final int altitude = altitudes[vertexX]
+			if (altitude == getVertexAltitudeUnchecked(vertexX, vertexY))
+				continue
+			
+			getChunkForWrite(vertexX, vertexY).setAltitude(getChunkLocalIndex(vertexX, vertexY), altitude)
+			changed = true
+		}
+		
+		if (changed)
+			markCellsChanged 0, vertexY - 1, width - 1, vertexY
 	}
 	
 	/**
@@ -153,7 +418,22 @@ public class CityMap {
 		if(!isValidCell(cellX, cellY))
 			throw new ArrayIndexOutOfBoundsException(String.format("Given cell index [%d,%d] is out of bounds.", cellX, cellY))
 		
-		return cellEntities[cellX][cellY]
+		getEntityUnchecked(cellX, cellY)
+	}
+	
+	/**
+	 * Get the associated {@link Entity} at this location, <strong>without</strong>
+	 * checking that the given cell lies within the map.
+	 * 
+	 * @param cellX
+	 * @param cellY
+	 * @return
+	 * @see #getVertexAltitudeUnchecked(int, int)
+	 */
+	public Entity getEntityUnchecked(int cellX, int cellY) {
+		
+		final chunk = getChunk(cellX, cellY)
+		(chunk == null) ? null : chunk.getCellEntity(getChunkLocalIndex(cellX, cellY))
 	}
 	
 	/**
@@ -176,11 +456,35 @@ public class CityMap {
 		if(!isValidCell(cellX, cellY))
 			throw new ArrayIndexOutOfBoundsException(String.format("Given cell index [%d,%d] is out of bounds.", cellX, cellY))
 		
-		cellEntities[cellX][cellY] = entity
+		if (entity.is(getEntityUnchecked(cellX, cellY)))
+			return
+		
+		getChunkForWrite(cellX, cellY).setCellEntity(getChunkLocalIndex(cellX, cellY), entity)
+		markCellsChanged cellX, cellY, cellX, cellY
 	}
 	
 	/**
-	 * Get the {@link Entity} associated with the given vertex, or null if no Entity is associated.
+	 * Get the {@link Entity} associated with the given vertex.
+	 * <p>
+	 * If no Entity is yet associated with this vertex, one is materialized by
+	 * this map's {@link #setVertexEntityFactory(VertexEntityFactory)
+	 * VertexEntityFactory}. If this map has no such factory, returns null.
+	 * </p>
+	 * <p>
+	 * A materialized Entity stays associated with this vertex for as long as it
+	 * carries any component besides its
+	 * {@link org.snowjak.city.ecs.components.IsMapVertex IsMapVertex}. If you need to keep
+	 * hold of it, attach a component of your own before the Engine's current
+	 * update ends; once it carries nothing else, the Entity is released (at the
+	 * end of that update) and recycled. (If you only need to
+	 * look, use {@link #getVertexEntityUnchecked(int, int)}, which never
+	 * materializes anything.)
+	 * </p>
+	 * <p>
+	 * Materializing an Entity modifies the entity-processing Engine, so this must
+	 * only be called from the Engine's thread.
+	 * </p>
+	 * 
 	 * @param vertexX
 	 * @param vertexY
 	 * @return
@@ -194,7 +498,33 @@ public class CityMap {
 			throw new ArrayIndexOutOfBoundsException(
 			String.format("Given vertex index [%d,%d] is out of bounds.", vertexX, vertexY))
 		
-		return vertexEntities[vertexX][vertexY]
+		final existing = getVertexEntityUnchecked(vertexX, vertexY)
+		if(existing != null || vertexEntityFactory == null)
+			return existing
+		
+		//
+		// Materializing a vertex's Entity doesn't change anything visible about
+		// this map, so this needn't be marked as a change.
+		final entity = vertexEntityFactory.create(vertexX, vertexY)
+		getChunkForWrite(vertexX, vertexY).setVertexEntity(getChunkLocalIndex(vertexX, vertexY), entity)
+		entity
+	}
+	
+	/**
+	 * Get the {@link Entity} associated with the given vertex,
+	 * <strong>without</strong> checking that the given vertex lies within the
+	 * map. Never materializes a new Entity -- returns null if none is yet
+	 * associated.
+	 * 
+	 * @param vertexX
+	 * @param vertexY
+	 * @return
+	 * @see #getVertexAltitudeUnchecked(int, int)
+	 */
+	public Entity getVertexEntityUnchecked(int vertexX, int vertexY) {
+		
+		final chunk = getChunk(vertexX, vertexY)
+		(chunk == null) ? null : chunk.getVertexEntity(getChunkLocalIndex(vertexX, vertexY))
 	}
 	
 	/**
@@ -218,7 +548,144 @@ public class CityMap {
 			throw new ArrayIndexOutOfBoundsException(
 			String.format("Given vertex index [%d,%d] is out of bounds.", vertexX, vertexY))
 		
-		vertexEntities[vertexX][vertexY] = entity
+		if (entity.is(getVertexEntityUnchecked(vertexX, vertexY)))
+			return
+		
+		getChunkForWrite(vertexX, vertexY).setVertexEntity(getChunkLocalIndex(vertexX, vertexY), entity)
+		markCellsChanged vertexX - 1, vertexY - 1, vertexX, vertexY
+	}
+	
+	/**
+	 * Dissociate the given Entity from the given vertex (if it is still
+	 * associated there), so that the next {@link #getVertexEntity(int, int)
+	 * request} for that vertex will materialize a new Entity.
+	 * <p>
+	 * Unlike {@link #setVertexEntity(int, int, Entity)
+	 * setVertexEntity(vertexX, vertexY, null)}, this is not counted as a change
+	 * to this map.
+	 * </p>
+	 * 
+	 * @param vertexX
+	 * @param vertexY
+	 * @param entity
+	 * @return {@code true} if the Entity was associated with the given vertex
+	 */
+	public boolean releaseVertexEntity(int vertexX, int vertexY, Entity entity) {
+		
+		if(entity == null || !isValidVertex(vertexX, vertexY) || !entity.is(getVertexEntityUnchecked(vertexX, vertexY)))
+			return false
+		
+		getChunk(vertexX, vertexY).setVertexEntity(getChunkLocalIndex(vertexX, vertexY), null)
+		true
+	}
+	
+	public VertexEntityFactory getVertexEntityFactory() {
+		vertexEntityFactory
+	}
+	
+	/**
+	 * @param vertexEntityFactory
+	 *            materializes vertex-Entities on demand; if {@code null},
+	 *            vertex-Entities must be {@link #setVertexEntity(int, int, Entity)
+	 *            associated} explicitly
+	 */
+	public void setVertexEntityFactory(VertexEntityFactory vertexEntityFactory) {
+		this.vertexEntityFactory = vertexEntityFactory
+	}
+	
+	/**
+	 * Call the given action for every cell in the map.
+	 * 
+	 * @param parallel
+	 * @param action
+	 * @see #forEachCell(int, int, int, int, boolean, BiIntConsumer)
+	 */
+	public void forEachCell(boolean parallel = false, BiIntConsumer action) {
+		
+		forEachCell 0, 0, width, height, parallel, action
+	}
+	
+	/**
+	 * Call the given action for every cell in the given region -- from
+	 * {@code (fromX, fromY)} (inclusive) to {@code (toX, toY)} (exclusive).
+	 * <p>
+	 * The region is clipped to the map once, up-front, so the action may use
+	 * the "unchecked" accessors (e.g., {@link #getEntityUnchecked(int, int)}).
+	 * </p>
+	 * <p>
+	 * If {@code parallel}, the region is split along chunk-boundaries and each
+	 * chunk's cells are visited on a (possibly) different thread. The action
+	 * must then be thread-safe.
+	 * </p>
+	 * 
+	 * @param fromX
+	 * @param fromY
+	 * @param toX
+	 * @param toY
+	 * @param parallel
+	 * @param action
+	 */
+	public void forEachCell(int fromX, int fromY, int toX, int toY, boolean parallel = false, BiIntConsumer action) {
+		
+		forEachInRegion fromX, fromY, Math.min(toX, width), Math.min(toY, height), parallel, action
+	}
+	
+	/**
+	 * Call the given action for every vertex in the map.
+	 * 
+	 * @param parallel
+	 * @param action
+	 * @see #forEachVertex(int, int, int, int, boolean, BiIntConsumer)
+	 */
+	public void forEachVertex(boolean parallel = false, BiIntConsumer action) {
+		
+		forEachVertex 0, 0, vertexWidth, vertexHeight, parallel, action
+	}
+	
+	/**
+	 * Call the given action for every vertex in the given region -- from
+	 * {@code (fromX, fromY)} (inclusive) to {@code (toX, toY)} (exclusive).
+	 * 
+	 * @param fromX
+	 * @param fromY
+	 * @param toX
+	 * @param toY
+	 * @param parallel
+	 * @param action
+	 * @see #forEachCell(int, int, int, int, boolean, BiIntConsumer)
+	 */
+	public void forEachVertex(int fromX, int fromY, int toX, int toY, boolean parallel = false, BiIntConsumer action) {
+		
+		forEachInRegion fromX, fromY, Math.min(toX, vertexWidth), Math.min(toY, vertexHeight), parallel, action
+	}
+	
+	private void forEachInRegion(int fromX, int fromY, int toX, int toY, boolean parallel, BiIntConsumer action) {
+		
+		fromX = Math.max(fromX, 0)
+		fromY = Math.max(fromY, 0)
+		if (fromX >= toX || fromY >= toY)
+			return
+		
+		if (!parallel) {
+			for (int y = fromY; y < toY; y++)
+				for (int x = fromX; x < toX; x++)
+					action.accept x, y
+			return
+		}
+		
+		final int minChunkX = fromX >> CHUNK_SHIFT, minChunkY = fromY >> CHUNK_SHIFT
+		final int columns = ((toX - 1) >> CHUNK_SHIFT) - minChunkX + 1
+		final int rows = ((toY - 1) >> CHUNK_SHIFT) - minChunkY + 1
+		
+		IntStream.range(0, columns * rows).parallel().forEach({ int i ->
+			final int chunkX = minChunkX + i % columns, chunkY = minChunkY + i.intdiv(columns)
+			final int x0 = Math.max(fromX, chunkX << CHUNK_SHIFT), x1 = Math.min(toX, (chunkX + 1) << CHUNK_SHIFT)
+			final int y0 = Math.max(fromY, chunkY << CHUNK_SHIFT), y1 = Math.min(toY, (chunkY + 1) << CHUNK_SHIFT)
+			
+			for (int y = y0; y < y1; y++)
+				for (int x = x0; x < x1; x++)
+					action.accept x, y
+		} as IntConsumer)
 	}
 	
 	/**
@@ -226,7 +693,7 @@ public class CityMap {
 	 * @return
 	 */
 	public int getWidth() {
-		cellEntities.length
+		width
 	}
 	
 	/**
@@ -234,6 +701,6 @@ public class CityMap {
 	 * @return
 	 */
 	public int getHeight() {
-		cellEntities[0].length
+		height
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
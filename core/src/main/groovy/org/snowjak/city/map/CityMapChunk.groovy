@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package org.snowjak.city.map
+
+import com.badlogic.ashley.core.Entity
+
+/**
+ * One square chunk of {@link CityMap} storage, {@link CityMap#CHUNK_SIZE}
+ * elements on a side.
+ * <p>
+ * Every layer is allocated lazily. Until some vertex in this chunk is given an
+ * altitude different from its neighbors, the chunk is "uniform" and stores only
+ * that single altitude. Entity-slots are likewise not allocated until an Entity
+ * is first associated with some cell/vertex in this chunk.
+ * </p>
+ * <p>
+ * Chunks are not safe for concurrent writes; callers writing from multiple
+ * threads must make sure that no two threads write to the same chunk at once.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class CityMapChunk {
+	
+	private static final int AREA = CityMap.CHUNK_SIZE * CityMap.CHUNK_SIZE
+	
+	private int uniformAltitude
+	private int[] altitudes
+	private Entity[] cellEntities, vertexEntities
+	
+	public CityMapChunk(int uniformAltitude = 0) {
+		
+		this.uniformAltitude = uniformAltitude
+	}
+	
+	/**
+	 * @return {@code true} if every vertex in this chunk shares the same altitude
+	 */
+	public boolean isUniform() {
+		
+		altitudes == null
+	}
+	
+	/**
+	 * @return {@code true} if no Entity-slots have been allocated in this chunk
+	 */
+	public boolean isEmpty() {
+		
+		cellEntities == null && vertexEntities == null
+	}
+	
+	public int getAltitude(int index) {
+		
+		(altitudes == null) ? uniformAltitude : altitudes[index]
+	}
+	
+	public void setAltitude(int index, int altitude) {
+		
+		if (altitudes == null) {
+			if (altitude == uniformAltitude)
+				return
+			altitudes = new int[AREA]
+			Arrays.fill altitudes, uniformAltitude
+		}
+		
+		altitudes[index] = altitude
+	}
+	
+	public Entity getCellEntity(int index) {
+		
+		(cellEntities == null) ? null : cellEntities[index]
+	}
+	
+	public void setCellEntity(int index, Entity entity) {
+		
+		if (cellEntities == null) {
+			if (entity == null)
+				return
+			cellEntities = new Entity[AREA]
+		}
+		
+		cellEntities[index] = entity
+	}
+	
+	public Entity getVertexEntity(int index) {
+		
+		(vertexEntities == null) ? null : vertexEntities[index]
+	}
+	
+	public void setVertexEntity(int index, Entity entity) {
+		
+		if (vertexEntities == null) {
+			if (entity == null)
+				return
+			vertexEntities = new Entity[AREA]
+		}
+		
+		vertexEntities[index] = entity
+	}
+	
+	/**
+	 * Release whatever storage this chunk no longer needs -- i.e., collapse
+	 * its altitudes back to a single value if they have all become equal, and
+	 * drop Entity-slots that no longer hold any Entities.
+	 */
+	public void compact() {
+		
+		if (altitudes != null) {
+			final int first = altitudes[0]
+			boolean uniform = true
+			for (int i = 1; i < AREA && uniform; i++)
+				uniform = (altitudes[i] == first)
+			if (uniform) {
+				uniformAltitude = first
+				altitudes = null
+			}
+		}
+		
+		if (cellEntities != null && cellEntities.every { it == null })
+			cellEntities = null
+		if (vertexEntities != null && vertexEntities.every { it == null })
+			vertexEntities = null
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ *
+ */
+package org.snowjak.city.map
+
+import com.badlogic.gdx.math.Rectangle
+
+/**
+ * Accumulates the bounding-rectangle (in cell-coordinates) of all changes made
+ * to a {@link CityMap} since it was last {@link #poll(Rectangle) polled} or
+ * {@link #clear() cleared}.
+ * <p>
+ * Obtain one from {@link CityMap#trackDirtyRegion()}. Every consumer should use
+ * its own DirtyRegion, so that one consumer's polling doesn't hide changes from
+ * another. When you no longer need it, hand it back to
+ * {@link CityMap#untrackDirtyRegion(DirtyRegion)}.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class DirtyRegion {
+	
+	private boolean dirty = false
+	private int minX, minY, maxX, maxY
+	
+	/**
+	 * Expand this region to include the given (inclusive) range of cells.
+	 *
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 */
+	public synchronized void include(int minX, int minY, int maxX, int maxY) {
+		
+		if (!dirty) {
+			this.minX = minX
+			this.minY = minY
+			this.maxX = maxX
+			this.maxY = maxY
+			dirty = true
+			return
+		}
+		
+		this.minX = Math.min(this.minX, minX)
+		this.minY = Math.min(this.minY, minY)
+		this.maxX = Math.max(this.maxX, maxX)
+		this.maxY = Math.max(this.maxY, maxY)
+	}
+	
+	/**
+	 * @return {@code true} if any changes have been recorded since this region
+	 *         was last polled or cleared
+	 */
+	public synchronized boolean isDirty() {
+		
+		dirty
+	}
+	
+	/**
+	 * If this region is dirty, copy its bounds into the given Rectangle (as
+	 * cell-coordinates: {@code x,y} being the minimum cell, {@code width,height}
+	 * the number of cells spanned) and clear this region.
+	 *
+	 * @param bounds
+	 * @return {@code true} if this region was dirty, {@code false} if
+	 *         {@code bounds} was left untouched
+	 */
+	public synchronized boolean poll(Rectangle bounds) {
+		
+		if (!dirty)
+			return false
+		
+		bounds.set minX, minY, maxX - minX + 1, maxY - minY + 1
+		dirty = false
+		true
+	}
+	
+	/**
+	 * Discard all recorded changes.
+	 */
+	public synchronized void clear() {
+		
+		dirty = false
+	}
+}
@@ -0,0 +1,28 @@
+/**
+ *
+ */
+package org.snowjak.city.map;
+
+import com.badlogic.ashley.core.Entity;
+
+/**
+ * Materializes the {@link Entity} for a {@link CityMap} vertex, the first time
+ * that Entity is {@link CityMap#getVertexEntity(int, int) requested}.
+ *
+ * @author snowjak88
+ *
+ */
+@FunctionalInterface
+public interface VertexEntityFactory {
+	
+	/**
+	 * Create (and register, as appropriate) a new Entity for the given vertex.
+	 * Called only from whichever thread is allowed to modify the entity-processing
+	 * Engine.
+	 *
+	 * @param vertexX
+	 * @param vertexY
+	 * @return
+	 */
+	public Entity create(int vertexX, int vertexY);
+}
@@ -1,28 +1,50 @@
 /**
- * 
+ *
  */
 package org.snowjak.city.map.generator
 
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.function.DoubleConsumer
+import java.util.function.Supplier
 
 import org.snowjak.city.map.CityMap
 import org.snowjak.city.map.generator.support.MapGeneratorDsl
 
-import com.sudoplay.joise.module.Module
-
 /**
  * @author snowjak88
  *
  */
 class MapGenerator {
 	
+	/**
+	 * How many distinct progress-updates to report over the course of a single
+	 * {@link #generate(int, int, int, DoubleConsumer) generate()}.
+	 */
+	private static final int PROGRESS_STEPS = 100
+	
 	private MapGeneratorDsl gen;
+	private final Supplier<MapGeneratorDsl> copier
+	private String seed
 	
-	public MapGenerator(MapGeneratorDsl definition) {
+	/**
+	 * @param definition
+	 * @param copier
+	 *            optional; produces fresh copies of {@code definition} on demand,
+	 *            one for each worker-thread in
+	 *            {@link #generate(int, int, int, DoubleConsumer) parallel
+	 *            generation}. If {@code null}, generation always runs on a single
+	 *            thread.
+	 */
+	public MapGenerator(MapGeneratorDsl definition, Supplier<MapGeneratorDsl> copier = null) {
 		this.gen = definition;
+		this.copier = copier
 	}
 	
 	public void setSeed(String seed) {
+		this.seed = seed
 		this.gen.setSeed(seed);
 	}
 	
@@ -37,37 +59,202 @@ class MapGenerator {
 	/**
 	 * Run this generator, producing a new map with the given dimensions in tiles/cells.
 	 * <p>
-	 * Populates the map with vertex-altitudes and -flavors, and then executes 
+	 * Populates the map with vertex-altitudes and -flavors, and then executes
 	 * </p>
-	 * 
+	 * <p>
+	 * Runs with one worker-thread per available processor.
+	 * </p>
+	 *
 	 * @param width
 	 * @param height
-	 * @param progressUpdater optional progress-reporter. Called on every map-vertex with values in [0,1]
+	 * @param progressUpdater optional progress-reporter. Called periodically with values in [0,1]
 	 * @return
 	 */
 	public CityMap generate(int width, int height, DoubleConsumer progressUpdater = {p -> }) {
 		
+		generate width, height, Runtime.runtime.availableProcessors(), progressUpdater
+	}
+	
+	/**
+	 * Run this generator, producing a new map with the given dimensions in tiles/cells.
+	 * <p>
+	 * The map's vertex-rows are divided into bands (each band
+	 * {@link CityMap#CHUNK_SIZE} rows tall), which are distributed across up to
+	 * {@code parallelism} worker-threads. Each worker gets its own copy of this
+	 * generator's definition, so the resulting map is identical no matter
+	 * how many workers are used.
+	 * </p>
+	 *
+	 * @param width
+	 * @param height
+	 * @param parallelism
+	 *            maximum number of worker-threads to use. If {@code <= 1}, or if
+	 *            this generator cannot copy its definition, the map is generated
+	 *            on the calling thread.
+	 * @param progressUpdater optional progress-reporter. Called periodically with values in [0,1]
+	 * @return
+	 */
+	public CityMap generate(int width, int height, int parallelism, DoubleConsumer progressUpdater = {p -> }) {
+		
 		if(gen == null)
 			throw new NullPointerException()
 		
-		final Module altitudeProducer = gen.altitude
-		
 		final CityMap map = new CityMap(width, height)
 		
+		final int rows = height + 1
+		final int bands = (rows + CityMap.CHUNK_SIZE - 1).intdiv(CityMap.CHUNK_SIZE)
+		
+		//
+		// Generator-definitions that are not currently in use by any worker.
+		final Queue<MapGeneratorDsl> idleDefinitions = new ConcurrentLinkedQueue<>()
+		idleDefinitions << gen
+		
+		final AtomicInteger rowsDone = new AtomicInteger()
+		final AtomicInteger lastReportedStep = new AtomicInteger()
 		progressUpdater.accept 0
 		
-		for(int y in 0..height) {
-			for(int x in 0..width) {
+		final generateBand = { int band ->
+			
+			MapGeneratorDsl definition = idleDefinitions.poll()
+			if(definition == null)
+				definition = copyDefinition()
+			
+			try {
+				final double[] samples = new double[width + 1]
+				final int[] altitudes = new int[width + 1]
+				final int fromY = band * CityMap.CHUNK_SIZE
+				final int toY = Math.min(fromY + CityMap.CHUNK_SIZE, rows)
 				
-				def progress = ((double)x / (double)width + (double)y / (double)height) / 2.0
-				progressUpdater.accept progress
-				
-				def altitude = (int) altitudeProducer.get(x,y)
-				
-				map.setVertexAltitude x, y, altitude
+				for(int y = fromY; y < toY; y++) {
+					definition.sampleRegion 0, y, width + 1, 1, samples
+					for(int x = 0; x <= width; x++)
+						altitudes[x] = (int) samples[x]
+					
+					map.setVertexAltitudeRow y, altitudes
+					
+					final int step = (rowsDone.incrementAndGet() * PROGRESS_STEPS).intdiv(rows)
+					if(step > lastReportedStep.get())
+						synchronized(progressUpdater) {
+							if(step > lastReportedStep.get()) {
+								lastReportedStep.set step
+								progressUpdater.accept((double) step / (double) PROGRESS_STEPS)
+							}
+						}
+				}
+			} finally {
+				idleDefinitions << definition
+			}
+		}
+		
+		if(parallelism <= 1 || copier == null || bands < 2)
+			(0..<bands).each(generateBand)
+		else {
+			final pool = new ForkJoinPool(Math.min(parallelism, bands))
+			try {
+				pool.invoke new BandAction(0, bands, generateBand)
+			} finally {
+				pool.shutdown()
 			}
-		}
+		}
+		
+		map.compact()
 		
 		map
 	}
+	
+	/**
+	 * Sample this generator's altitude over a whole grid of points at once.
+	 * Not thread-safe.
+	 * 
+	 * @param x0
+	 * @param y0
+	 * @param stepX
+	 * @param stepY
+	 * @param columns
+	 * @param rows
+	 * @param out
+	 * @see MapGeneratorDsl#sampleRegion(double, double, double, double, int, int, double[])
+	 */
+	public void sampleRegion(double x0, double y0, double stepX, double stepY, int columns, int rows, double[] out) {
+		
+		gen.sampleRegion x0, y0, stepX, stepY, columns, rows, out
+	}
+	
+	/**
+	 * Sample this generator's altitude at every integer point within the given
+	 * region. Not thread-safe.
+	 * 
+	 * @param x0
+	 * @param y0
+	 * @param columns
+	 * @param rows
+	 * @param out
+	 * @see MapGeneratorDsl#sampleRegion(int, int, int, int, double[])
+	 */
+	public void sampleRegion(int x0, int y0, int columns, int rows, double[] out) {
+		
+		gen.sampleRegion x0, y0, columns, rows, out
+	}
+	
+	/**
+	 * Build an independent copy of this generator, seeded identically to the
+	 * original, which may be used on another thread (e.g., to render a preview)
+	 * without disturbing this generator.
+	 *
+	 * @return the copy, or {@code null} if this generator cannot copy its
+	 *         definition
+	 */
+	public MapGenerator copy() {
+		
+		if(copier == null)
+			return null
+		
+		final MapGenerator copy = new MapGenerator(copyDefinition(), copier)
+		copy.@seed = seed
+		copy
+	}
+	
+	/**
+	 * Build a fresh copy of this generator's definition, seeded identically to
+	 * the original.
+	 *
+	 * @return
+	 */
+	private MapGeneratorDsl copyDefinition() {
+		
+		final MapGeneratorDsl copy = copier.get()
+		if(seed != null)
+			copy.setSeed seed
+		copy
+	}
+	
+	/**
+	 * Recursively splits a range of bands in half until only a single band
+	 * remains, and then generates that band.
+	 */
+	private static class BandAction extends RecursiveAction {
+		
+		private static final long serialVersionUID = -1840337427355512093L
+		
+		private final int fromBand, toBand
+		private final Closure generateBand
+		
+		BandAction(int fromBand, int toBand, Closure generateBand) {
+			this.fromBand = fromBand
+			this.toBand = toBand
+			this.generateBand = generateBand
+		}
+		
+		@Override
+		protected void compute() {
+			
+			if(toBand - fromBand <= 1) {
+				generateBand fromBand
+				return
+			}
+			
+			final int middle = (fromBand + toBand) >>> 1
+			invokeAll new BandAction(fromBand, middle, generateBand), new BandAction(middle, toBand, generateBand)
+		}
+	}
 }
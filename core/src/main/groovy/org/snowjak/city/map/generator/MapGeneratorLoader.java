@@ -5,6 +5,7 @@ package org.snowjak.city.map.generator;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.function.Supplier;
 
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.customizers.ImportCustomizer;
@@ -40,6 +41,7 @@ public class MapGeneratorLoader extends AsynchronousAssetLoader<MapGenerator, Ma
 	final CompilerConfiguration config;
 	
 	private MapGeneratorDsl dsl;
+	private Supplier<MapGeneratorDsl> dslCopier;
 	
 	public MapGeneratorLoader() {
 		
@@ -65,12 +67,17 @@ public class MapGeneratorLoader extends AsynchronousAssetLoader<MapGenerator, Ma
 		if (!file.exists())
 			throw new RuntimeException(new FileNotFoundException());
 		
+		//
+		// Until the generator is given a seed, the script's rnd() is seeded afresh
+		// on every load -- but identically for this script and all its copies.
+		final long initialSeed = System.currentTimeMillis();
+		
 		final DelegatingScript script;
 		try {
 			final GroovyShell shell = new GroovyShell(this.getClass().getClassLoader(), new Binding(), config);
 			script = (DelegatingScript) shell.parse(file.file());
 			
-			dsl = new MapGeneratorDsl();
+			dsl = new MapGeneratorDsl(initialSeed);
 			script.setDelegate(dsl);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
@@ -92,13 +99,32 @@ public class MapGeneratorLoader extends AsynchronousAssetLoader<MapGenerator, Ma
 					"Map-generation script \"" + file.path() + "\" is incomplete: does not set \"altitude\".");
 		}
 		
+		//
+		// Parallel map-generation needs independent copies of this script's
+		// module-chain. We get those by re-running the already-compiled script
+		// against a fresh DSL.
+		//
+		final Class<? extends DelegatingScript> scriptClass = script.getClass();
+		final String path = file.path();
+		dslCopier = () -> {
+			try {
+				final DelegatingScript copy = scriptClass.getDeclaredConstructor().newInstance();
+				final MapGeneratorDsl copyDsl = new MapGeneratorDsl(initialSeed);
+				copy.setBinding(new Binding());
+				copy.setDelegate(copyDsl);
+				copy.run();
+				return copyDsl;
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException("Cannot copy map-generation script \"" + path + "\".", e);
+			}
+		};
 	}
 	
 	@Override
 	public MapGenerator loadSync(AssetManager manager, String fileName, FileHandle file,
 			MapGeneratorLoaderParameters parameter) {
 		
-		return new MapGenerator(dsl);
+		return new MapGenerator(dsl, dslCopier);
 	}
 	
 	@SuppressWarnings("rawtypes")
@@ -0,0 +1,246 @@
+/**
+ *
+ */
+package org.snowjak.city.map.generator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.snowjak.city.CityGame;
+import org.snowjak.city.service.LoggerService;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.Disposable;
+import com.github.czyzby.kiwi.log.Logger;
+
+/**
+ * Renders a low-resolution preview of a {@link MapGenerator}'s altitudes in the
+ * background.
+ * <p>
+ * The preview is at most {@link #getMaxSize() maxSize} pixels on a side, no
+ * matter how large the map is, so it never samples the map's full grid. It is
+ * rendered in several passes -- coarse first, then progressively finer -- and
+ * each pass is published (as a {@link Texture}, on the rendering thread) as
+ * soon as it's finished.
+ * </p>
+ * <p>
+ * Only one preview is rendered at a time. Requesting a new preview cancels
+ * whatever preview is already being rendered.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class MapGeneratorPreview implements Disposable {
+	
+	private static final Logger LOG = LoggerService.forClass(MapGeneratorPreview.class);
+	
+	/**
+	 * The first pass samples one point per block of this many pixels (on a
+	 * side). Each following pass halves the block-size, until the last pass
+	 * samples every pixel.
+	 */
+	private static final int COARSEST_BLOCK = 16;
+	
+	/**
+	 * Each pass is sampled this many rows at a time, checking for cancellation in
+	 * between.
+	 */
+	private static final int ROWS_PER_BATCH = 8;
+	
+	private static final Color LOWEST = new Color(0.16f, 0.28f, 0.12f, 1f), HIGHEST = new Color(0.82f, 0.86f, 0.62f, 1f);
+	
+	private final int maxSize;
+	private final Consumer<Texture> onUpdate;
+	
+	private final AtomicInteger currentJob = new AtomicInteger();
+	private Future<?> currentFuture;
+	
+	private Texture texture;
+	
+	/**
+	 * @param maxSize
+	 *            maximum width/height of the preview, in pixels
+	 * @param onUpdate
+	 *            called (on the rendering thread) whenever a new preview-pass is
+	 *            available. The given {@link Texture} remains valid until the
+	 *            next update, or until this preview is {@link #cancel()
+	 *            cancelled}.
+	 */
+	public MapGeneratorPreview(int maxSize, Consumer<Texture> onUpdate) {
+		
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Preview size must be positive.");
+		
+		this.maxSize = maxSize;
+		this.onUpdate = onUpdate;
+	}
+	
+	public int getMaxSize() {
+		
+		return maxSize;
+	}
+	
+	/**
+	 * Begin rendering a preview of the given generator, cancelling whatever
+	 * preview was already being rendered.
+	 * <p>
+	 * The preview is rendered using a {@link MapGenerator#copy() copy} of the
+	 * given generator, and so doesn't disturb the original. If the generator
+	 * cannot be copied, no preview is rendered.
+	 * </p>
+	 *
+	 * @param generator
+	 * @param seed
+	 * @param mapWidth
+	 *            in cells
+	 * @param mapHeight
+	 *            in cells
+	 */
+	public synchronized void update(MapGenerator generator, String seed, int mapWidth, int mapHeight) {
+		
+		cancelCurrent();
+		
+		if (generator == null || seed == null || mapWidth <= 0 || mapHeight <= 0)
+			return;
+		
+		final int job = currentJob.get();
+		currentFuture = CityGame.EXECUTOR.submit(() -> render(job, generator, seed, mapWidth, mapHeight));
+	}
+	
+	/**
+	 * Cancel whatever preview is being rendered, and release the current preview
+	 * {@link Texture}.
+	 */
+	public synchronized void cancel() {
+		
+		cancelCurrent();
+		
+		Gdx.app.postRunnable(() -> {
+			if (texture != null)
+				texture.dispose();
+			texture = null;
+		});
+	}
+	
+	private void cancelCurrent() {
+		
+		currentJob.incrementAndGet();
+		if (currentFuture != null)
+			currentFuture.cancel(true);
+		currentFuture = null;
+	}
+	
+	private boolean isCancelled(int job) {
+		
+		return job != currentJob.get() || Thread.currentThread().isInterrupted();
+	}
+	
+	private void render(int job, MapGenerator original, String seed, int mapWidth, int mapHeight) {
+		
+		try {
+			final MapGenerator generator = original.copy();
+			if (generator == null || isCancelled(job))
+				return;
+			generator.setSeed(seed);
+			
+			//
+			// The map has one more vertex than it has cells on each side.
+			final int vertexWidth = mapWidth + 1, vertexHeight = mapHeight + 1;
+			final double scale = Math.max(1.0, (double) Math.max(vertexWidth, vertexHeight) / (double) maxSize);
+			final int width = Math.max(1, (int) Math.ceil(vertexWidth / scale)),
+					height = Math.max(1, (int) Math.ceil(vertexHeight / scale));
+			
+			final int[] altitudes = new int[width * height];
+			
+			for (int block = COARSEST_BLOCK; block >= 1; block /= 2) {
+				
+				final int columns = (width + block - 1) / block, rows = (height + block - 1) / block;
+				final double step = scale * block;
+				final double[] samples = new double[columns * ROWS_PER_BATCH];
+				
+				for (int row = 0; row < rows; row += ROWS_PER_BATCH) {
+					if (isCancelled(job))
+						return;
+					
+					final int batchRows = Math.min(ROWS_PER_BATCH, rows - row);
+					generator.sampleRegion(0, row * step, step, step, columns, batchRows, samples);
+					
+					for (int r = 0; r < batchRows; r++) {
+						final int fromY = (row + r) * block, toY = Math.min(fromY + block, height);
+						for (int c = 0; c < columns; c++) {
+							final int fromX = c * block, toX = Math.min(fromX + block, width);
+							final int altitude = (int) samples[r * columns + c];
+							for (int y = fromY; y < toY; y++)
+								Arrays.fill(altitudes, y * width + fromX, y * width + toX, altitude);
+						}
+					}
+				}
+				
+				publish(job, paint(altitudes, width, height));
+			}
+			
+		} catch (Throwable t) {
+			if (!isCancelled(job))
+				LOG.error(t, "Cannot render map-generator preview.");
+		}
+	}
+	
+	private Pixmap paint(int[] altitudes, int width, int height) {
+		
+		int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+		for (int altitude : altitudes) {
+			min = Math.min(min, altitude);
+			max = Math.max(max, altitude);
+		}
+		final float range = (max > min) ? (float) (max - min) : 1f;
+		
+		final Pixmap pixmap = new Pixmap(width, height, Format.RGBA8888);
+		final ByteBuffer pixels = pixmap.getPixels();
+		pixels.position(0);
+		
+		for (int altitude : altitudes) {
+			final float t = (float) (altitude - min) / range;
+			pixels.put((byte) (255f * (LOWEST.r + (HIGHEST.r - LOWEST.r) * t)));
+			pixels.put((byte) (255f * (LOWEST.g + (HIGHEST.g - LOWEST.g) * t)));
+			pixels.put((byte) (255f * (LOWEST.b + (HIGHEST.b - LOWEST.b) * t)));
+			pixels.put((byte) 255);
+		}
+		
+		pixels.position(0);
+		return pixmap;
+	}
+	
+	private void publish(int job, Pixmap pixmap) {
+		
+		Gdx.app.postRunnable(() -> {
+			try {
+				if (job != currentJob.get())
+					return;
+				
+				if (texture != null)
+					texture.dispose();
+				texture = new Texture(pixmap);
+				
+				if (onUpdate != null)
+					onUpdate.accept(texture);
+				
+			} finally {
+				pixmap.dispose();
+			}
+		});
+	}
+	
+	@Override
+	public void dispose() {
+		
+		cancel();
+	}
+}
@@ -11,6 +11,7 @@ import org.snowjak.city.map.generator.support.joise.ModuleBlendConfigurator
 import org.snowjak.city.map.generator.support.joise.ModuleCellularConfigurator
 import org.snowjak.city.map.generator.support.joise.ModuleClampConfigurator
 import org.snowjak.city.map.generator.support.joise.ModuleCombinerConfigurator
+import org.snowjak.city.map.generator.support.joise.ModuleConfigurator
 import org.snowjak.city.map.generator.support.joise.ModuleCosConfigurator
 import org.snowjak.city.map.generator.support.joise.ModuleFloorConfigurator
 import org.snowjak.city.map.generator.support.joise.ModuleFnGradientConfigurator
@@ -24,6 +25,9 @@ import org.snowjak.city.map.generator.support.joise.ModuleSinConfigurator
 import org.snowjak.city.map.generator.support.joise.ModuleSphereConfigurator
 import org.snowjak.city.map.generator.support.joise.ModuleTiersConfigurator
 import org.snowjak.city.map.generator.support.joise.ModuleTranslateDomainConfigurator
+import org.snowjak.city.map.generator.support.joise.ScalarModule
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
 
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleAbs
@@ -40,19 +44,129 @@ import com.sudoplay.joise.module.ModuleSin
  */
 class MapGeneratorDsl {
 	
-	private static final Random RND = new Random(System.currentTimeMillis())
 	private static final String GLOBAL_SEED_NAME = "GLOBAL"
 	
+	/**
+	 * Until {@link #setSeed(String) a seed is configured}, starts from the seed
+	 * given at construction -- so that running the same script twice, against
+	 * DSLs constructed with the same seed, yields the same module-chain. That
+	 * lets {@link org.snowjak.city.map.generator.MapGenerator MapGenerator} build identical copies
+	 * of that chain for its worker-threads.
+	 */
+	private final Random rnd
+	
 	String title, description
 	Module altitude
 	
+	private final RegionKernelCompiler kernels = new RegionKernelCompiler()
+	private double[] sampleXs, sampleYs
+	
+	/**
+	 * @param initialSeed
+	 *            seeds {@link #rnd()} until {@link #setSeed(String) a seed is
+	 *            configured}
+	 */
+	public MapGeneratorDsl(long initialSeed) {
+		this.rnd = new Random(initialSeed)
+	}
+	
 	public void setSeed(String seed) {
-		RND.setSeed(seed.hashCode())
+		rnd.setSeed(seed.hashCode())
 		altitude.setSeed(GLOBAL_SEED_NAME, seed.hashCode())
 	}
 	
 	public double rnd() {
-		RND.nextDouble()
+		rnd.nextDouble()
+	}
+	
+	/**
+	 * Sample {@link #altitude} over a whole grid of points at once.
+	 * <p>
+	 * Point {@code (column, row)} is taken at
+	 * {@code (x0 + column * stepX, y0 + row * stepY)}, and written to
+	 * {@code out[row * columns + column]}.
+	 * </p>
+	 * <p>
+	 * Not thread-safe -- sampling reuses buffers that belong to this DSL.
+	 * </p>
+	 * 
+	 * @param x0
+	 * @param y0
+	 * @param stepX
+	 * @param stepY
+	 * @param columns
+	 * @param rows
+	 * @param out
+	 * @throws IllegalArgumentException
+	 *             if {@code out} is too small to hold {@code columns * rows}
+	 *             values
+	 */
+	public void sampleRegion(double x0, double y0, double stepX, double stepY, int columns, int rows, double[] out) {
+		
+		if(altitude == null)
+			throw new NullPointerException("Cannot sample region -- [altitude] is not set.")
+		
+		final int count = columns * rows
+		if(out.length < count)
+			throw new IllegalArgumentException(String.format("Cannot sample %dx%d region into array of length %d.", columns, rows, out.length))
+		
+		sampleXs = RegionKernel.ensureCapacity(sampleXs, count)
+		sampleYs = RegionKernel.ensureCapacity(sampleYs, count)
+		
+		int i = 0
+		for(int row = 0; row < rows; row++) {
+			final double y = y0 + row * stepY
+			for(int column = 0; column < columns; column++) {
+				sampleXs[i] = x0 + column * stepX
+				sampleYs[i] = y
+				i++
+			}
+		}
+		
+		kernels.compile(altitude).sample sampleXs, sampleYs, count, out
+	}
+	
+	/**
+	 * Sample {@link #altitude} at every integer point within the given region.
+	 * 
+	 * @param x0
+	 * @param y0
+	 * @param columns
+	 * @param rows
+	 * @param out
+	 * @see #sampleRegion(double, double, double, double, int, int, double[])
+	 */
+	public void sampleRegion(int x0, int y0, int columns, int rows, double[] out) {
+		
+		sampleRegion x0, y0, 1, 1, columns, rows, out
+	}
+	
+	/**
+	 * Build the given configurator's Module, registering it for
+	 * {@link #sampleRegion(double, double, double, double, int, int, double[]) region-sampling}.
+	 * 
+	 * @param config
+	 * @return
+	 */
+	private <T extends Module> T built(ModuleConfigurator<T> config) {
+		
+		final T module = config.build()
+		kernels.register module, { compiler -> config.kernel(module, compiler) }
+		module
+	}
+	
+	/**
+	 * Register the given Module for
+	 * {@link #sampleRegion(double, double, double, double, int, int, double[]) region-sampling}.
+	 * 
+	 * @param module
+	 * @param recipe
+	 * @return
+	 */
+	private Module built(Module module, Closure<RegionKernel> recipe) {
+		
+		kernels.register module, recipe
+		module
 	}
 	
 	/**
@@ -65,7 +179,7 @@ class MapGeneratorDsl {
 		def config = new ModuleBasisConfigurator()
 		script.delegate = config
 		config.with script
-		def result = config.build()
+		def result = built(config)
 		result.seedName = GLOBAL_SEED_NAME
 		result
 	}
@@ -81,7 +195,7 @@ class MapGeneratorDsl {
 		script.delegate = config
 		config.with script
 		config.seedName = GLOBAL_SEED_NAME
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -93,7 +207,7 @@ class MapGeneratorDsl {
 		def config = new ModuleFractalConfigurator()
 		script.delegate = config
 		config.with script
-		def result = config.build()
+		def result = built(config)
 		result.seedName = GLOBAL_SEED_NAME
 		result
 	}
@@ -107,7 +221,7 @@ class MapGeneratorDsl {
 		def config = new ModuleGradientConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -119,7 +233,7 @@ class MapGeneratorDsl {
 		def config = new ModuleSphereConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -130,7 +244,13 @@ class MapGeneratorDsl {
 	public Module abs(Module module) {
 		def absModule = new ModuleAbs()
 		absModule.source = module
-		absModule
+		built absModule, { compiler ->
+			compiler.operator({ ScalarModule[] slots ->
+				def operation = new ModuleAbs()
+				operation.source = slots[0]
+				operation
+			}, module)
+		}
 	}
 	
 	/**
@@ -142,7 +262,7 @@ class MapGeneratorDsl {
 		def config = new ModuleAbsConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -155,7 +275,13 @@ class MapGeneratorDsl {
 	public Module clamp(Module module, double low, double hi) {
 		def clampModule = new ModuleClamp(low, hi)
 		clampModule.source = module
-		clampModule
+		built clampModule, { compiler ->
+			compiler.operator({ ScalarModule[] slots ->
+				def operation = new ModuleClamp(low, hi)
+				operation.source = slots[0]
+				operation
+			}, module)
+		}
 	}
 	
 	/**
@@ -167,7 +293,7 @@ class MapGeneratorDsl {
 		def config = new ModuleClampConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -178,7 +304,13 @@ class MapGeneratorDsl {
 	public Module cos(Module module) {
 		def cosModule = new ModuleCos()
 		cosModule.source = module
-		cosModule
+		built cosModule, { compiler ->
+			compiler.operator({ ScalarModule[] slots ->
+				def operation = new ModuleCos()
+				operation.source = slots[0]
+				operation
+			}, module)
+		}
 	}
 	
 	/**
@@ -190,7 +322,7 @@ class MapGeneratorDsl {
 		def config = new ModuleCosConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -201,7 +333,13 @@ class MapGeneratorDsl {
 	public Module sin(Module module) {
 		def sinModule = new ModuleSin()
 		sinModule.source = module
-		sinModule
+		built sinModule, { compiler ->
+			compiler.operator({ ScalarModule[] slots ->
+				def operation = new ModuleSin()
+				operation.source = slots[0]
+				operation
+			}, module)
+		}
 	}
 	
 	/**
@@ -213,7 +351,7 @@ class MapGeneratorDsl {
 		def config = new ModuleSinConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -224,7 +362,13 @@ class MapGeneratorDsl {
 	public Module floor(Module module) {
 		def floorModule = new ModuleFloor()
 		floorModule.source = module
-		floorModule
+		built floorModule, { compiler ->
+			compiler.operator({ ScalarModule[] slots ->
+				def operation = new ModuleFloor()
+				operation.source = slots[0]
+				operation
+			}, module)
+		}
 	}
 	
 	/**
@@ -236,7 +380,7 @@ class MapGeneratorDsl {
 		def config = new ModuleFloorConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -247,7 +391,13 @@ class MapGeneratorDsl {
 	public Module invert(Module module) {
 		def invertModule = new ModuleInvert()
 		invertModule.source = module
-		invertModule
+		built invertModule, { compiler ->
+			compiler.operator({ ScalarModule[] slots ->
+				def operation = new ModuleInvert()
+				operation.source = slots[0]
+				operation
+			}, module)
+		}
 	}
 	
 	/**
@@ -259,7 +409,7 @@ class MapGeneratorDsl {
 		def config = new ModuleInvertConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -272,7 +422,14 @@ class MapGeneratorDsl {
 		def invertModule = new ModulePow()
 		invertModule.source = module
 		invertModule.power = pow
-		invertModule
+		built invertModule, { compiler ->
+			compiler.operator({ ScalarModule[] slots ->
+				def operation = new ModulePow()
+				operation.source = slots[0]
+				operation.power = pow
+				operation
+			}, module)
+		}
 	}
 	
 	/**
@@ -285,7 +442,14 @@ class MapGeneratorDsl {
 		def invertModule = new ModulePow()
 		invertModule.source = module
 		invertModule.power = pow
-		invertModule
+		built invertModule, { compiler ->
+			compiler.operator({ ScalarModule[] slots ->
+				def operation = new ModulePow()
+				operation.source = slots[0]
+				operation.power = slots[1]
+				operation
+			}, module, pow)
+		}
 	}
 	
 	/**
@@ -297,7 +461,7 @@ class MapGeneratorDsl {
 		def config = new ModulePowerConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -309,7 +473,7 @@ class MapGeneratorDsl {
 		def config = new ModuleAutoCorrectConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -321,7 +485,7 @@ class MapGeneratorDsl {
 		def config = new ModuleBiasConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -333,7 +497,7 @@ class MapGeneratorDsl {
 		def config = new ModuleBlendConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -345,7 +509,7 @@ class MapGeneratorDsl {
 		def config = new ModuleCombinerConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	/**
@@ -357,34 +521,34 @@ class MapGeneratorDsl {
 		def config = new ModuleFnGradientConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	public Module gain(@DelegatesTo(value=ModuleGainConfigurator, strategy=Closure.DELEGATE_ONLY) Closure script) {
 		def config = new ModuleGainConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	public Module translateDomain(@DelegatesTo(value=ModuleTranslateDomainConfigurator, strategy=Closure.DELEGATE_ONLY) Closure script) {
 		def config = new ModuleTranslateDomainConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	public Module scaleDomain(@DelegatesTo(value=ModuleScaleDomainConfigurator, strategy=Closure.DELEGATE_ONLY) Closure script) {
 		def config = new ModuleScaleDomainConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 	
 	public Module tiers(@DelegatesTo(value=ModuleTiersConfigurator, strategy=Closure.DELEGATE_ONLY) Closure script) {
 		def config = new ModuleTiersConfigurator()
 		script.delegate = config
 		config.with script
-		config.build()
+		built(config)
 	}
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+/**
+ *
+ */
+package org.snowjak.city.map.generator.support.joise
+
+import org.snowjak.city.CityGame
+import org.snowjak.city.service.LoggerService
+
+import com.badlogic.gdx.Gdx
+import com.badlogic.gdx.files.FileHandle
+import com.github.czyzby.kiwi.log.Logger
+
+/**
+ * Persistent, size-bounded cache of {@link CalibratedAutoCorrectModule}
+ * calibrations, so that repeated loads of the same map-generator (with the same
+ * seed) needn't re-sample their noise.
+ * <p>
+ * Entries are evicted least-recently-used first. The cache is kept in local
+ * storage (under {@link CityGame#LOCAL_ROOT_CACHE}), and re-written whenever a
+ * new calibration is added. If local storage is not available, the cache is
+ * kept in memory only.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+class AutoCorrectCalibrationCache {
+	
+	private static final Logger LOG = LoggerService.forClass(AutoCorrectCalibrationCache)
+	
+	public static final int MAX_ENTRIES = 256
+	private static final String FILE_NAME = "autocorrect-calibrations.txt"
+	
+	private static final LinkedHashMap<String, double[]> CALIBRATIONS = new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, double[]> eldest) {
+					size() > MAX_ENTRIES
+				}
+			}
+	
+	private static boolean loaded = false
+	
+	/**
+	 * Get the calibration stored under the given key, computing (and storing) it
+	 * if necessary. Concurrent requests for calibrations are serialized, so
+	 * copies of the same module being calibrated on several threads at once
+	 * compute their calibration only once.
+	 *
+	 * @param key
+	 * @param calibrator
+	 *            computes the calibration -- {@code [scale, offset]} -- if it is
+	 *            not already cached
+	 * @return
+	 */
+	public static double[] get(String key, Closure<double[]> calibrator) {
+		
+		synchronized(CALIBRATIONS) {
+			load()
+			
+			def calibration = CALIBRATIONS.get(key)
+			if(calibration != null)
+				return calibration
+			
+			calibration = calibrator.call()
+			CALIBRATIONS.put key, calibration
+			save()
+			
+			calibration
+		}
+	}
+	
+	private static FileHandle getFile() {
+		
+		(Gdx.files == null) ? null : Gdx.files.local(CityGame.LOCAL_ROOT_CACHE + FILE_NAME)
+	}
+	
+	private static void load() {
+		
+		if(loaded)
+			return
+		loaded = true
+		
+		final file = getFile()
+		if(file == null || !file.exists())
+			return
+		
+		try {
+			file.readString("UTF-8").eachLine { String line ->
+				final parts = line.split('=', 2)
+				if(parts.length < 2)
+					return
+				final values = parts[1].split(',')
+				if(values.length < 2)
+					return
+				CALIBRATIONS.put parts[0], [
+					Double.parseDouble(values[0]),
+					Double.parseDouble(values[1])
+				] as double[]
+			}
+		} catch(Throwable t) {
+			LOG.error t, "Cannot read auto-correct calibration cache -- discarding it."
+			CALIBRATIONS.clear()
+		}
+	}
+	
+	private static void save() {
+		
+		final file = getFile()
+		if(file == null)
+			return
+		
+		try {
+			//
+			// Entries are written least-recently-used first, so that re-loading
+			// the cache also restores its eviction-order.
+			final text = new StringBuilder()
+			CALIBRATIONS.each { key, calibration ->
+				text.append(key).append('=').append(calibration[0]).append(',').append(calibration[1]).append('\n')
+			}
+			file.writeString text.toString(), false, "UTF-8"
+		} catch(Throwable t) {
+			LOG.error t, "Cannot write auto-correct calibration cache."
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ *
+ */
+package org.snowjak.city.map.generator.support.joise
+
+import com.sudoplay.joise.ModuleMap
+import com.sudoplay.joise.module.Module
+import com.sudoplay.joise.module.ModuleAutoCorrect
+
+/**
+ * A {@link ModuleAutoCorrect} that calibrates itself lazily (i.e., after it has
+ * been seeded), and looks up its calibration in the
+ * {@link AutoCorrectCalibrationCache} before computing it.
+ * <p>
+ * A calibration is keyed by this module's parameters, its seed, and its
+ * source's whole module-graph -- every module in that graph, with all of its
+ * parameters (as written to its {@link Module#getModuleMap() ModuleMap}).
+ * Modules' own IDs are left out, as they differ from one run to the next.
+ * </p>
+ * <p>
+ * As with the original, calibration samples the source in 2 dimensions; the
+ * same calibration is then applied in every dimension.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+class CalibratedAutoCorrectModule extends ModuleAutoCorrect {
+	
+	/**
+	 * Calibration samples the source within [-DOMAIN, +DOMAIN] on each axis.
+	 */
+	private static final double DOMAIN = 2.0
+	private static final long SAMPLE_SEED = 10000L
+	
+	private Module source
+	private double low = 0, high = 1
+	private int samples = 1024
+	private double sampleScale = 1
+	private String seedName
+	private long seed
+	
+	private volatile boolean calibrated = false
+	private double scale, offset
+	
+	public void setSource(Module source) {
+		super.setSource source
+		this.source = source
+		calibrated = false
+	}
+	
+	public void setLow(double low) {
+		super.setLow low
+		this.low = low
+		calibrated = false
+	}
+	
+	public void setHigh(double high) {
+		super.setHigh high
+		this.high = high
+		calibrated = false
+	}
+	
+	public void setSamples(int samples) {
+		super.setSamples samples
+		this.samples = samples
+		calibrated = false
+	}
+	
+	public void setSampleScale(double sampleScale) {
+		super.setSampleScale sampleScale
+		this.sampleScale = sampleScale
+		calibrated = false
+	}
+	
+	@Override
+	public void setSeed(String seedName, long seed) {
+		super.setSeed seedName, seed
+		this.seedName = seedName
+		this.seed = seed
+		calibrated = false
+	}
+	
+	/**
+	 * Calibration is deferred until this module is first sampled, so that the
+	 * calibration reflects whatever seed is set in the meantime.
+	 */
+	public void calculateAll() {
+		calibrated = false
+	}
+	
+	@Override
+	public double get(double x, double y) {
+		apply source.get(x, y)
+	}
+	
+	@Override
+	public double get(double x, double y, double z) {
+		apply source.get(x, y, z)
+	}
+	
+	@Override
+	public double get(double x, double y, double z, double w) {
+		apply source.get(x, y, z, w)
+	}
+	
+	@Override
+	public double get(double x, double y, double z, double w, double u, double v) {
+		apply source.get(x, y, z, w, u, v)
+	}
+	
+	/**
+	 * Apply this module's calibration to the given (raw) source-value.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public double apply(double value) {
+		
+		ensureCalibrated()
+		Math.max(low, Math.min(high, value * scale + offset))
+	}
+	
+	/**
+	 * Apply this module's calibration, in place, to the first {@code count}
+	 * (raw) source-values in the given array.
+	 *
+	 * @param values
+	 * @param count
+	 */
+	public void apply(double[] values, int count) {
+		
+		ensureCalibrated()
+		for(int i = 0; i < count; i++)
+			values[i] = Math.max(low, Math.min(high, values[i] * scale + offset))
+	}
+	
+	private void ensureCalibrated() {
+		
+		if(calibrated)
+			return
+		
+		synchronized(this) {
+			if(calibrated)
+				return
+			
+			final calibration = AutoCorrectCalibrationCache.get(getCalibrationKey(), { calibrate() })
+			scale = calibration[0]
+			offset = calibration[1]
+			calibrated = true
+		}
+	}
+	
+	/**
+	 * @return a digest of every calibration-parameter and the whole source
+	 *         module-graph
+	 */
+	private String getCalibrationKey() {
+		
+		final key = new StringBuilder()
+		key << seedName << ':' << seed << '|' << Double.toString(low) << '|' << Double.toString(high) << '|' << samples
+		key << '|' << Double.toString(sampleScale) << '|' << Double.toString(DOMAIN) << '|' << SAMPLE_SEED << '|'
+		
+		//
+		// Replace each module's ID -- wherever it appears -- with its position in
+		// the graph.
+		final ModuleMap graph = source.getModuleMap()
+		final Map<String,String> positions = [:]
+		graph.keySet().eachWithIndex { id, i -> positions[id] = "#$i" }
+		
+		graph.each { id, properties ->
+			key << positions[id] << '{'
+			properties.each { name, value ->
+				final String text = String.valueOf(value)
+				key << name << '=' << (positions[text] ?: text) << ';'
+			}
+			key << '}'
+		}
+		
+		key.toString().digest('SHA-256')
+	}
+	
+	private double[] calibrate() {
+		
+		final rnd = new Random(SAMPLE_SEED)
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY
+		for(int i = 0; i < samples; i++) {
+			final double x = (rnd.nextDouble() * 2.0 * DOMAIN - DOMAIN) * sampleScale
+			final double y = (rnd.nextDouble() * 2.0 * DOMAIN - DOMAIN) * sampleScale
+			final value = source.get(x, y)
+			min = Math.min(min, value)
+			max = Math.max(max, value)
+		}
+		
+		final double scale = (max > min) ? (high - low) / (max - min) : 1.0
+		final double offset = low - min * scale
+		[scale, offset] as double[]
+	}
+}
@@ -3,6 +3,9 @@
  */
 package org.snowjak.city.map.generator.support.joise
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleAbs
 
@@ -33,5 +36,15 @@ class ModuleAbsConfigurator implements ModuleConfigurator<ModuleAbs> {
 		
 		def module = new ModuleAbs()
 		module.setSource source
+		module
+	}
+	
+	@Override
+	public RegionKernel kernel(ModuleAbs module, RegionKernelCompiler compiler) {
+		compiler.operator({ ScalarModule[] slots ->
+			def operation = new ModuleAbs()
+			operation.setSource slots[0]
+			operation
+		}, source)
 	}
 }
\ No newline at end of file
@@ -5,6 +5,9 @@ package org.snowjak.city.map.generator.support.joise
 
 import java.math.BigDecimal
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleAutoCorrect
 
@@ -33,9 +36,18 @@ class ModuleAutoCorrectConfigurator implements ModuleConfigurator<ModuleAutoCorr
 		this.source = source
 	}
 	
+	/**
+	 * Alias for {@link #samples}.
+	 * 
+	 * @param iterations
+	 */
+	void setIterations(int iterations) {
+		this.samples = iterations
+	}
+	
 	@Override
 	public ModuleAutoCorrect build() {
-		def module = new ModuleAutoCorrect()
+		def module = new CalibratedAutoCorrectModule()
 		module.setSource source
 		module.setLow low
 		module.setHigh high
@@ -43,4 +55,17 @@ class ModuleAutoCorrectConfigurator implements ModuleConfigurator<ModuleAutoCorr
 		module.calculateAll()
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleAutoCorrect module, RegionKernelCompiler compiler) {
+		
+		if(!(module instanceof CalibratedAutoCorrectModule))
+			return compiler.pointwise(module)
+		
+		final RegionKernel sourceKernel = compiler.compile(source)
+		return { double[] xs, double[] ys, int count, double[] out ->
+			sourceKernel.sample xs, ys, count, out
+			module.apply out, count
+		} as RegionKernel
+	}
 }
\ No newline at end of file
@@ -5,6 +5,9 @@ package org.snowjak.city.map.generator.support.joise
 
 import java.math.BigDecimal
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleBias
 
@@ -47,4 +50,14 @@ class ModuleBiasConfigurator implements ModuleConfigurator<ModuleBias> {
 		module.setSource source
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleBias module, RegionKernelCompiler compiler) {
+		compiler.operator({ ScalarModule[] slots ->
+			def operation = new ModuleBias()
+			operation.setSource slots[0]
+			operation.setBias slots[1]
+			operation
+		}, source, bias)
+	}
 }
\ No newline at end of file
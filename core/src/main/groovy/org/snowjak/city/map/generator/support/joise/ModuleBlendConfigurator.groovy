@@ -3,6 +3,9 @@
  */
 package org.snowjak.city.map.generator.support.joise
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleBlend
 
@@ -56,4 +59,15 @@ class ModuleBlendConfigurator implements ModuleConfigurator<ModuleBlend> {
 		module.setControlSource control
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleBlend module, RegionKernelCompiler compiler) {
+		compiler.operator({ ScalarModule[] slots ->
+			def operation = new ModuleBlend()
+			operation.setLowSource slots[0]
+			operation.setHighSource slots[1]
+			operation.setControlSource slots[2]
+			operation
+		}, low, high, control)
+	}
 }
\ No newline at end of file
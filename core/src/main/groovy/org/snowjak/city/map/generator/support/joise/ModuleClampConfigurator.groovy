@@ -5,6 +5,9 @@ package org.snowjak.city.map.generator.support.joise
 
 import java.math.BigDecimal
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleClamp
 
@@ -40,4 +43,15 @@ class ModuleClampConfigurator implements ModuleConfigurator<ModuleClamp> {
 		module.setSource source
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleClamp module, RegionKernelCompiler compiler) {
+		compiler.operator({ ScalarModule[] slots ->
+			def operation = new ModuleClamp()
+			operation.setLow low
+			operation.setHigh high
+			operation.setSource slots[0]
+			operation
+		}, source)
+	}
 }
\ No newline at end of file
@@ -5,6 +5,9 @@ package org.snowjak.city.map.generator.support.joise
 
 import java.math.BigDecimal
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleCombiner
 import com.sudoplay.joise.module.ModuleCombiner.CombinerType
@@ -19,13 +22,9 @@ class ModuleCombinerConfigurator implements ModuleConfigurator<ModuleCombiner> {
 	public Module[] sources = []
 	
 	void setSources(Object[] sources) {
-		this.sources = []
-		
-		for(source in sources)
-			if(source instanceof Number)
-				sources << new ScalarModule(source.doubleValue())
-			else
-				sources << source
+		this.sources = sources.collect { source ->
+			(source instanceof Number) ? new ScalarModule(source.doubleValue()) : source
+		} as Module[]
 	}
 	
 	@Override
@@ -36,4 +35,14 @@ class ModuleCombinerConfigurator implements ModuleConfigurator<ModuleCombiner> {
 		sources.eachWithIndex { src, idx -> module.setSource(idx, src) }
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleCombiner module, RegionKernelCompiler compiler) {
+		compiler.operator({ ScalarModule[] slots ->
+			def operation = new ModuleCombiner()
+			operation.setType type
+			slots.eachWithIndex { slot, idx -> operation.setSource(idx, slot) }
+			operation
+		}, sources)
+	}
 }
\ No newline at end of file
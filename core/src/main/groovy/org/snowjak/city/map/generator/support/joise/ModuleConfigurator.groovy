@@ -3,6 +3,9 @@
  */
 package org.snowjak.city.map.generator.support.joise
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 
 /**
@@ -13,4 +16,16 @@ trait ModuleConfigurator<T extends Module> {
 	
 	abstract T build()
 	
+	/**
+	 * Describe how to evaluate the given Module (as built by this configurator)
+	 * over a whole region at once. By default, the Module is simply sampled
+	 * point-by-point.
+	 * 
+	 * @param module
+	 * @param compiler
+	 * @return
+	 */
+	RegionKernel kernel(T module, RegionKernelCompiler compiler) {
+		compiler.pointwise module
+	}
 }
@@ -5,6 +5,9 @@ package org.snowjak.city.map.generator.support.joise
 
 import java.math.BigDecimal
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleCos
 
@@ -36,4 +39,13 @@ class ModuleCosConfigurator implements ModuleConfigurator<ModuleCos> {
 		module.setSource source
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleCos module, RegionKernelCompiler compiler) {
+		compiler.operator({ ScalarModule[] slots ->
+			def operation = new ModuleCos()
+			operation.setSource slots[0]
+			operation
+		}, source)
+	}
 }
\ No newline at end of file
@@ -5,6 +5,9 @@ package org.snowjak.city.map.generator.support.joise
 
 import java.math.BigDecimal
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleFloor
 
@@ -36,4 +39,13 @@ class ModuleFloorConfigurator implements ModuleConfigurator<ModuleFloor> {
 		module.setSource source
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleFloor module, RegionKernelCompiler compiler) {
+		compiler.operator({ ScalarModule[] slots ->
+			def operation = new ModuleFloor()
+			operation.setSource slots[0]
+			operation
+		}, source)
+	}
 }
\ No newline at end of file
@@ -5,6 +5,9 @@ package org.snowjak.city.map.generator.support.joise
 
 import java.math.BigDecimal
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleGain
 
@@ -48,4 +51,14 @@ class ModuleGainConfigurator implements ModuleConfigurator<ModuleGain> {
 		module.setGain gain
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleGain module, RegionKernelCompiler compiler) {
+		compiler.operator({ ScalarModule[] slots ->
+			def operation = new ModuleGain()
+			operation.setSource slots[0]
+			operation.setGain slots[1]
+			operation
+		}, source, gain)
+	}
 }
\ No newline at end of file
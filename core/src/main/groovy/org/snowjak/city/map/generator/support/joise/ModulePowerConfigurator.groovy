@@ -5,6 +5,9 @@ package org.snowjak.city.map.generator.support.joise
 
 import java.math.BigDecimal
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModulePow
 
@@ -48,4 +51,14 @@ class ModulePowerConfigurator implements ModuleConfigurator<ModulePow> {
 		module.setPower pow
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModulePow module, RegionKernelCompiler compiler) {
+		compiler.operator({ ScalarModule[] slots ->
+			def operation = new ModulePow()
+			operation.setSource slots[0]
+			operation.setPower slots[1]
+			operation
+		}, source, pow)
+	}
 }
\ No newline at end of file
@@ -5,6 +5,10 @@ package org.snowjak.city.map.generator.support.joise
 
 import java.math.BigDecimal
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+import org.snowjak.city.map.generator.support.region.DomainKernel.Transform
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleScaleDomain
 
@@ -111,4 +115,9 @@ class ModuleScaleDomainConfigurator implements ModuleConfigurator<ModuleScaleDom
 		module.setScaleW scaleW
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleScaleDomain module, RegionKernelCompiler compiler) {
+		compiler.domain Transform.SCALE, source, scaleX, scaleY
+	}
 }
\ No newline at end of file
@@ -5,6 +5,9 @@ package org.snowjak.city.map.generator.support.joise
 
 import java.math.BigDecimal
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleTiers
 
@@ -39,4 +42,15 @@ class ModuleTiersConfigurator implements ModuleConfigurator<ModuleTiers> {
 		module.setSmooth smooth
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleTiers module, RegionKernelCompiler compiler) {
+		compiler.operator({ ScalarModule[] slots ->
+			def operation = new ModuleTiers()
+			operation.setSource slots[0]
+			operation.setNumTiers numTiers
+			operation.setSmooth smooth
+			operation
+		}, source)
+	}
 }
\ No newline at end of file
@@ -3,6 +3,10 @@
  */
 package org.snowjak.city.map.generator.support.joise
 
+import org.snowjak.city.map.generator.support.region.RegionKernel
+import org.snowjak.city.map.generator.support.region.RegionKernelCompiler
+import org.snowjak.city.map.generator.support.region.DomainKernel.Transform
+
 import com.sudoplay.joise.module.Module
 import com.sudoplay.joise.module.ModuleTranslateDomain
 
@@ -100,4 +104,9 @@ class ModuleTranslateDomainConfigurator implements ModuleConfigurator<ModuleTran
 		module.setTranslateW translateW
 		module
 	}
+	
+	@Override
+	public RegionKernel kernel(ModuleTranslateDomain module, RegionKernelCompiler compiler) {
+		compiler.domain Transform.TRANSLATE, source, translateX, translateY
+	}
 }
\ No newline at end of file
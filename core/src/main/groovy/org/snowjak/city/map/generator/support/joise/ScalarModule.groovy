@@ -53,7 +53,9 @@ class ScalarModule extends Module {
 	@Override
 	public void writeToMap(ModuleMap map) {
 		
-		
+		final props = new ModulePropertyMap(this)
+		props.writeDouble 'value', value
+		map.put getId(), props
 	}
 
 	@Override
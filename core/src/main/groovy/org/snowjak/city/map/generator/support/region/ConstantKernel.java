@@ -0,0 +1,31 @@
+/**
+ *
+ */
+package org.snowjak.city.map.generator.support.region;
+
+import java.util.Arrays;
+
+import org.snowjak.city.map.generator.support.joise.ScalarModule;
+
+/**
+ * {@link RegionKernel} for a {@link ScalarModule}: fills its output with that
+ * module's value.
+ *
+ * @author snowjak88
+ *
+ */
+public class ConstantKernel implements RegionKernel {
+	
+	private final ScalarModule module;
+	
+	public ConstantKernel(ScalarModule module) {
+		
+		this.module = module;
+	}
+	
+	@Override
+	public void sample(double[] xs, double[] ys, int count, double[] out) {
+		
+		Arrays.fill(out, 0, count, module.getValue());
+	}
+}
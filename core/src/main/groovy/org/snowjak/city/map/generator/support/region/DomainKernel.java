@@ -0,0 +1,70 @@
+/**
+ *
+ */
+package org.snowjak.city.map.generator.support.region;
+
+/**
+ * {@link RegionKernel} for the domain-transforming modules -- scale-domain and
+ * translate-domain. Transforms the whole batch of coordinates at once, and then
+ * samples its source over the transformed batch.
+ *
+ * @author snowjak88
+ *
+ */
+public class DomainKernel implements RegionKernel {
+	
+	/**
+	 * How a DomainKernel transforms each coordinate.
+	 */
+	public enum Transform {
+		/**
+		 * {@code x' = x * factor}
+		 */
+		SCALE,
+		/**
+		 * {@code x' = x + factor}
+		 */
+		TRANSLATE
+	}
+	
+	private final Transform transform;
+	private final RegionKernel source, factorX, factorY;
+	private double[] factorsX, factorsY, transformedX, transformedY;
+	
+	public DomainKernel(Transform transform, RegionKernel source, RegionKernel factorX, RegionKernel factorY) {
+		
+		this.transform = transform;
+		this.source = source;
+		this.factorX = factorX;
+		this.factorY = factorY;
+	}
+	
+	@Override
+	public void sample(double[] xs, double[] ys, int count, double[] out) {
+		
+		factorsX = RegionKernel.ensureCapacity(factorsX, count);
+		factorsY = RegionKernel.ensureCapacity(factorsY, count);
+		transformedX = RegionKernel.ensureCapacity(transformedX, count);
+		transformedY = RegionKernel.ensureCapacity(transformedY, count);
+		
+		factorX.sample(xs, ys, count, factorsX);
+		factorY.sample(xs, ys, count, factorsY);
+		
+		switch (transform) {
+		case SCALE:
+			for (int i = 0; i < count; i++) {
+				transformedX[i] = xs[i] * factorsX[i];
+				transformedY[i] = ys[i] * factorsY[i];
+			}
+			break;
+		case TRANSLATE:
+			for (int i = 0; i < count; i++) {
+				transformedX[i] = xs[i] + factorsX[i];
+				transformedY[i] = ys[i] + factorsY[i];
+			}
+			break;
+		}
+		
+		source.sample(transformedX, transformedY, count, out);
+	}
+}
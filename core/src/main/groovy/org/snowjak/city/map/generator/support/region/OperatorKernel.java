@@ -0,0 +1,65 @@
+/**
+ *
+ */
+package org.snowjak.city.map.generator.support.region;
+
+import org.snowjak.city.map.generator.support.joise.ScalarModule;
+
+import com.sudoplay.joise.module.Module;
+
+/**
+ * {@link RegionKernel} for modules (e.g., clamp, tiers, bias, combine) whose
+ * output depends only on the values of their sources at the same point.
+ * <p>
+ * Each source is evaluated over the whole region into its own buffer. The
+ * operation itself is a copy of the original module, whose sources have been
+ * replaced with {@link ScalarModule "slots"}; for each point, we load the
+ * buffered source-values into those slots and evaluate the copy. This keeps
+ * the operation's exact semantics without recursing into its sources per
+ * point.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class OperatorKernel implements RegionKernel {
+	
+	private final Module operation;
+	private final ScalarModule[] slots;
+	private final RegionKernel[] sources;
+	private final double[][] buffers;
+	
+	/**
+	 * @param operation
+	 *            a copy of the original module, reading its sources from
+	 *            {@code slots}
+	 * @param slots
+	 * @param sources
+	 *            one kernel per slot
+	 */
+	public OperatorKernel(Module operation, ScalarModule[] slots, RegionKernel[] sources) {
+		
+		if (slots.length != sources.length)
+			throw new IllegalArgumentException("Expected one source-kernel per slot.");
+		
+		this.operation = operation;
+		this.slots = slots;
+		this.sources = sources;
+		this.buffers = new double[sources.length][];
+	}
+	
+	@Override
+	public void sample(double[] xs, double[] ys, int count, double[] out) {
+		
+		for (int s = 0; s < sources.length; s++) {
+			buffers[s] = RegionKernel.ensureCapacity(buffers[s], count);
+			sources[s].sample(xs, ys, count, buffers[s]);
+		}
+		
+		for (int i = 0; i < count; i++) {
+			for (int s = 0; s < slots.length; s++)
+				slots[s].setValue(buffers[s][i]);
+			out[i] = operation.get(xs[i], ys[i]);
+		}
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ *
+ */
+package org.snowjak.city.map.generator.support.region;
+
+import com.sudoplay.joise.module.Module;
+
+/**
+ * The fallback {@link RegionKernel}: samples its {@link Module} one point at a
+ * time. Used for noise-sources and for any module that no more specific
+ * kernel is known for.
+ *
+ * @author snowjak88
+ *
+ */
+public class PointwiseKernel implements RegionKernel {
+	
+	private final Module module;
+	
+	public PointwiseKernel(Module module) {
+		
+		this.module = module;
+	}
+	
+	@Override
+	public void sample(double[] xs, double[] ys, int count, double[] out) {
+		
+		for (int i = 0; i < count; i++)
+			out[i] = module.get(xs[i], ys[i]);
+	}
+}
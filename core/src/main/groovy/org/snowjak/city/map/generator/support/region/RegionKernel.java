@@ -0,0 +1,50 @@
+/**
+ *
+ */
+package org.snowjak.city.map.generator.support.region;
+
+import com.sudoplay.joise.module.Module;
+
+/**
+ * Evaluates some {@link Module} at many points at once.
+ * <p>
+ * Rather than recursing through the whole module-graph for every point, each
+ * RegionKernel evaluates its sources over the whole batch of points into
+ * reusable buffers, and then applies its own operation to those buffers.
+ * </p>
+ * <p>
+ * RegionKernels are <strong>not</strong> thread-safe.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+@FunctionalInterface
+public interface RegionKernel {
+	
+	/**
+	 * Evaluate this kernel at each of the points {@code (xs[i], ys[i])}, for
+	 * {@code i} in {@code [0, count)}, writing the results into {@code out[i]}.
+	 *
+	 * @param xs
+	 * @param ys
+	 * @param count
+	 * @param out
+	 */
+	public void sample(double[] xs, double[] ys, int count, double[] out);
+	
+	/**
+	 * Ensure that the given buffer can hold at least {@code count} values,
+	 * allocating a new buffer if necessary.
+	 *
+	 * @param buffer
+	 * @param count
+	 * @return
+	 */
+	public static double[] ensureCapacity(double[] buffer, int count) {
+		
+		if (buffer != null && buffer.length >= count)
+			return buffer;
+		return new double[count];
+	}
+}
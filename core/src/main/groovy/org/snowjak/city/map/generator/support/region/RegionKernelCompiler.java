@@ -0,0 +1,118 @@
+/**
+ *
+ */
+package org.snowjak.city.map.generator.support.region;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.snowjak.city.map.generator.support.MapGeneratorDsl;
+import org.snowjak.city.map.generator.support.joise.ScalarModule;
+
+import com.sudoplay.joise.module.Module;
+
+/**
+ * Compiles a {@link Module}-graph into an equivalent graph of
+ * {@link RegionKernel}s.
+ * <p>
+ * Modules built through the {@link MapGeneratorDsl} are
+ * {@link #register(Module, Function) registered} along with a recipe for
+ * their kernel. Unregistered modules are sampled
+ * {@link PointwiseKernel point-by-point}.
+ * </p>
+ * <p>
+ * Each module is compiled only once, so kernels are shared wherever their
+ * modules are.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class RegionKernelCompiler {
+	
+	private final Map<Module, Function<RegionKernelCompiler, RegionKernel>> recipes = new IdentityHashMap<>();
+	private final Map<Module, RegionKernel> compiled = new IdentityHashMap<>();
+	
+	/**
+	 * Register the recipe by which to compile the given {@link Module}.
+	 *
+	 * @param module
+	 * @param recipe
+	 */
+	public void register(Module module, Function<RegionKernelCompiler, RegionKernel> recipe) {
+		
+		recipes.put(module, recipe);
+		compiled.clear();
+	}
+	
+	/**
+	 * Get the {@link RegionKernel} for the given {@link Module}, compiling it
+	 * (and its sources) if necessary.
+	 *
+	 * @param module
+	 * @return
+	 */
+	public RegionKernel compile(Module module) {
+		
+		final RegionKernel existing = compiled.get(module);
+		if (existing != null)
+			return existing;
+		
+		final RegionKernel kernel;
+		if (module instanceof ScalarModule)
+			kernel = new ConstantKernel((ScalarModule) module);
+		else if (recipes.containsKey(module))
+			kernel = recipes.get(module).apply(this);
+		else
+			kernel = pointwise(module);
+		
+		compiled.put(module, kernel);
+		return kernel;
+	}
+	
+	/**
+	 * @param module
+	 * @return a kernel that samples the given module point-by-point
+	 */
+	public RegionKernel pointwise(Module module) {
+		
+		return new PointwiseKernel(module);
+	}
+	
+	/**
+	 * Build an {@link OperatorKernel}.
+	 *
+	 * @param operation
+	 *            given one {@link ScalarModule slot} per source, builds a copy of
+	 *            the original module that reads its sources from those slots
+	 * @param sources
+	 *            the original module's sources
+	 * @return
+	 */
+	public RegionKernel operator(Function<ScalarModule[], Module> operation, Module... sources) {
+		
+		final ScalarModule[] slots = new ScalarModule[sources.length];
+		final RegionKernel[] sourceKernels = new RegionKernel[sources.length];
+		for (int i = 0; i < sources.length; i++) {
+			slots[i] = new ScalarModule(0);
+			sourceKernels[i] = compile(sources[i]);
+		}
+		
+		return new OperatorKernel(operation.apply(slots), slots, sourceKernels);
+	}
+	
+	/**
+	 * Build a {@link DomainKernel}.
+	 *
+	 * @param transform
+	 * @param source
+	 * @param factorX
+	 * @param factorY
+	 * @return
+	 */
+	public RegionKernel domain(DomainKernel.Transform transform, Module source, Module factorX, Module factorY) {
+		
+		return new DomainKernel(transform, compile(source), compile(factorX), compile(factorY));
+	}
+}
@@ -1,5 +1,7 @@
 package org.snowjak.city.map.renderer
 
+import java.beans.PropertyChangeListener
+
 import org.snowjak.city.module.ui.ModuleWindow
 import org.snowjak.city.tools.Tool
 import org.snowjak.city.map.renderer.hooks.AbstractRenderingHook
@@ -24,12 +26,17 @@ class MapMode {
 	 * these given Map-Modes will all be rendered prior to this Map-Mode
 	 * being rendered.
 	 */
-	final List<String> includes = []
+	final List<String> includes = new ObservableList([])
 	
 	/**
 	 * The set of {@link AbstractRenderingHook#getId() rendering-hook-IDs} to be included
 	 */
-	final Set<String> renderingHooks = []
+	final Set<String> renderingHooks = new ObservableSet(new LinkedHashSet<>())
+	
+	/**
+	 * Increases every time {@link #includes} or {@link #renderingHooks} changes.
+	 */
+	private volatile int version = 0
 	
 	/**
 	 * The set of {@link Tool#id tool IDs} available in this map-mode
@@ -53,5 +60,17 @@ class MapMode {
 	
 	public MapMode(String id) {
 		this.id = id
+		
+		final PropertyChangeListener onChange = { version++ } as PropertyChangeListener
+		(includes as ObservableList).addPropertyChangeListener onChange
+		(renderingHooks as ObservableSet).addPropertyChangeListener onChange
+	}
+	
+	/**
+	 * @return a counter that increases every time this MapMode's
+	 *         {@link #includes} or {@link #renderingHooks} change
+	 */
+	public int getVersion() {
+		version
 	}
 }
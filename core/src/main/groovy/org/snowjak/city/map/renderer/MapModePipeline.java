@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package org.snowjak.city.map.renderer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.snowjak.city.map.renderer.hooks.AbstractRenderingHook;
+
+/**
+ * A {@link MapMode}, compiled down to the flat, ordered list of
+ * {@link AbstractRenderingHook}s it renders -- i.e., the hooks of every
+ * {@link MapMode#getIncludes() included} MapMode (recursively), followed by its
+ * own, each group in {@link RenderingHookRegistry#getPrioritizedRenderingHooks()
+ * priority-order}.
+ * <p>
+ * A pipeline is only valid until its {@link RenderingHookRegistry}, or any of
+ * the MapModes it was compiled from, changes. (See {@link #isValid()}.)
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+class MapModePipeline {
+	
+	private static final AbstractRenderingHook[] EMPTY = new AbstractRenderingHook[0];
+	
+	private final RenderingHookRegistry registry;
+	private final int registryVersion;
+	
+	private final MapMode[] sources;
+	private final int[] sourceVersions;
+	
+	private final AbstractRenderingHook[] hooks;
+	
+	/**
+	 * Compile the given MapMode.
+	 *
+	 * @param mapMode
+	 * @param mapModes
+	 *            all available MapModes, by ID, against which
+	 *            {@link MapMode#getIncludes() includes} are resolved
+	 * @param registry
+	 */
+	MapModePipeline(MapMode mapMode, Map<String, MapMode> mapModes, RenderingHookRegistry registry) {
+		
+		this.registry = registry;
+		this.registryVersion = registry.getVersion();
+		
+		final List<MapMode> sources = new ArrayList<>();
+		final List<AbstractRenderingHook> hooks = new ArrayList<>();
+		compile(mapMode, mapModes, registry.getPrioritizedRenderingHooks(), new ArrayList<>(), sources, hooks);
+		
+		this.sources = sources.toArray(new MapMode[0]);
+		this.sourceVersions = new int[this.sources.length];
+		for (int i = 0; i < this.sources.length; i++)
+			sourceVersions[i] = this.sources[i].getVersion();
+		
+		this.hooks = hooks.toArray(EMPTY);
+	}
+	
+	private static void compile(MapMode mapMode, Map<String, MapMode> mapModes,
+			List<AbstractRenderingHook> prioritizedHooks, List<MapMode> including, List<MapMode> sources,
+			List<AbstractRenderingHook> hooks) {
+		
+		//
+		// A MapMode that (indirectly) includes itself is only rendered once.
+		if (including.contains(mapMode))
+			return;
+		
+		including.add(mapMode);
+		sources.add(mapMode);
+		
+		for (String includedMapModeName : mapMode.getIncludes()) {
+			final MapMode includedMapMode = mapModes.get(includedMapModeName);
+			if (includedMapMode != null)
+				compile(includedMapMode, mapModes, prioritizedHooks, including, sources, hooks);
+		}
+		
+		for (AbstractRenderingHook hook : prioritizedHooks)
+			if (mapMode.getRenderingHooks().contains(hook.getId()))
+				hooks.add(hook);
+		
+		including.remove(including.size() - 1);
+	}
+	
+	/**
+	 * @return {@code true} if neither the {@link RenderingHookRegistry} nor any of
+	 *         the {@link MapMode}s this pipeline was compiled from have changed
+	 *         since
+	 */
+	boolean isValid() {
+		
+		if (registry.getVersion() != registryVersion)
+			return false;
+		
+		for (int i = 0; i < sources.length; i++)
+			if (sources[i].getVersion() != sourceVersions[i])
+				return false;
+		
+		return true;
+	}
+	
+	/**
+	 * @return the hooks to render, in order
+	 */
+	AbstractRenderingHook[] getHooks() {
+		
+		return hooks;
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ *
+ */
+package org.snowjak.city.map.renderer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.snowjak.city.map.CityMap;
+
+/**
+ * Tracks the range of vertex-altitudes found within each of a
+ * {@link CityMap}'s chunks, so that
+ * {@link MapRenderer#viewportToMap(com.badlogic.gdx.math.Vector2, boolean)
+ * picking} can skip whole spans of cells that cannot possibly be under the
+ * cursor.
+ * <p>
+ * A chunk's range covers every cell in that chunk -- i.e., it includes the
+ * vertices along the chunk's far edges, too.
+ * </p>
+ * <p>
+ * {@link #update(CityMap)} must only be called from one thread (the rendering
+ * thread). {@link #get(CityMap)} may be called from any thread, without
+ * locking: each chunk's lowest and highest altitudes are published together,
+ * as a single {@code long}, so a reader never sees one without the other.
+ * Until a chunk's range has been computed, that chunk reports an unbounded
+ * range.
+ * </p>
+ * <p>
+ * Ranges are only brought up to date by {@link #update(CityMap)}. An altitude
+ * edited since the last update is not reflected until the next one -- so, for
+ * up to a frame, picking may miss a cell that was just raised or lowered.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+class MapPickingIndex {
+	
+	/**
+	 * At most this many chunks have their ranges recomputed per
+	 * {@link #update(CityMap) update}.
+	 */
+	private static final int MAX_CHUNKS_PER_UPDATE = 64;
+	
+	/**
+	 * A packed range covering every possible altitude.
+	 */
+	static final long UNBOUNDED = pack(Integer.MIN_VALUE, Integer.MAX_VALUE);
+	
+	private volatile Ranges ranges;
+	
+	/**
+	 * Bring this index up to date with the given map. Only chunks whose
+	 * {@link CityMap#getChunkVersion(int, int) versions} have changed are
+	 * recomputed.
+	 *
+	 * @param map
+	 */
+	public void update(CityMap map) {
+		
+		if (map == null) {
+			ranges = null;
+			return;
+		}
+		
+		Ranges current = ranges;
+		if (current == null || current.map != map) {
+			current = new Ranges(map);
+			ranges = current;
+		}
+		
+		int recomputed = 0;
+		for (int chunkY = 0; chunkY < current.chunksY; chunkY++)
+			for (int chunkX = 0; chunkX < current.chunksX; chunkX++) {
+				
+				final int index = chunkY * current.chunksX + chunkX;
+				final long version = map.getChunkVersion(chunkX, chunkY);
+				if (version == current.versions[index])
+					continue;
+				
+				if (recomputed >= MAX_CHUNKS_PER_UPDATE) {
+					//
+					// No time to recompute it now -- but don't let anyone trust
+					// its old range in the meantime.
+					current.ranges.set(index, UNBOUNDED);
+					continue;
+				}
+				
+				current.recompute(chunkX, chunkY);
+				current.versions[index] = version;
+				recomputed++;
+			}
+	}
+	
+	/**
+	 * @param map
+	 * @return the altitude-ranges for the given map, or {@code null} if this
+	 *         index does not (yet) cover that map
+	 */
+	public Ranges get(CityMap map) {
+		
+		final Ranges current = ranges;
+		return (current != null && current.map == map) ? current : null;
+	}
+	
+	private static long pack(int lowest, int highest) {
+		
+		return ((long) lowest << 32) | (highest & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * @param range
+	 *            as given by {@link Ranges#getRange(int, int)}
+	 * @return the lowest altitude in that range
+	 */
+	public static int getLowest(long range) {
+		
+		return (int) (range >> 32);
+	}
+	
+	/**
+	 * @param range
+	 *            as given by {@link Ranges#getRange(int, int)}
+	 * @return the highest altitude in that range
+	 */
+	public static int getHighest(long range) {
+		
+		return (int) range;
+	}
+	
+	/**
+	 * Per-chunk altitude-ranges for a single map.
+	 */
+	static class Ranges {
+		
+		final CityMap map;
+		final int chunksX, chunksY;
+		final AtomicLongArray ranges;
+		final long[] versions;
+		
+		Ranges(CityMap map) {
+			
+			this.map = map;
+			this.chunksX = map.getChunksX();
+			this.chunksY = map.getChunksY();
+			
+			final int count = chunksX * chunksY;
+			ranges = new AtomicLongArray(count);
+			versions = new long[count];
+			
+			for (int i = 0; i < count; i++)
+				ranges.set(i, UNBOUNDED);
+			Arrays.fill(versions, -1);
+		}
+		
+		/**
+		 * @param chunkX
+		 * @param chunkY
+		 * @return the range of vertex-altitudes within the given chunk, packed into
+		 *         a single value (see {@link MapPickingIndex#getLowest(long)} and
+		 *         {@link MapPickingIndex#getHighest(long)}); unbounded if that's not
+		 *         known
+		 */
+		public long getRange(int chunkX, int chunkY) {
+			
+			return ranges.get(chunkY * chunksX + chunkX);
+		}
+		
+		void recompute(int chunkX, int chunkY) {
+			
+			final int fromX = chunkX << CityMap.CHUNK_SHIFT, fromY = chunkY << CityMap.CHUNK_SHIFT;
+			final int toX = Math.min(fromX + CityMap.CHUNK_SIZE, map.getWidth()),
+					toY = Math.min(fromY + CityMap.CHUNK_SIZE, map.getHeight());
+			
+			int lowest = Integer.MAX_VALUE, highest = Integer.MIN_VALUE;
+			for (int vertexY = fromY; vertexY <= toY; vertexY++)
+				for (int vertexX = fromX; vertexX <= toX; vertexX++) {
+					final int altitude = map.getVertexAltitudeUnchecked(vertexX, vertexY);
+					if (altitude < lowest)
+						lowest = altitude;
+					if (altitude > highest)
+						highest = altitude;
+				}
+			
+			ranges.set(chunkY * chunksX + chunkX, (lowest > highest) ? UNBOUNDED : pack(lowest, highest));
+		}
+	}
+}
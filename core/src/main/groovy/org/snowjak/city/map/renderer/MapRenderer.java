@@ -24,9 +24,9 @@ import static com.badlogic.gdx.graphics.g2d.Batch.Y2;
 import static com.badlogic.gdx.graphics.g2d.Batch.Y3;
 import static com.badlogic.gdx.graphics.g2d.Batch.Y4;
 
-import java.util.Arrays;
-import java.util.ListIterator;
-import java.util.function.Predicate;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.snowjak.city.GameState;
 import org.snowjak.city.ecs.components.HasMapCellTiles;
@@ -86,13 +86,30 @@ public class MapRenderer implements RenderingSupport, Disposable {
 		 * 1 "tile-width unit" works out to being this many pixels on-screen
 		 */
 		public final float worldGridUnitSize = 64f;
+		
+		/**
+		 * Skip drawing map-cells that are completely hidden behind the terrain in
+		 * front of them (takes effect as cached map-chunks are rebuilt)
+		 */
+		public boolean cullOccludedCells = true;
+		
+		/**
+		 * At or above this camera zoom-level, the map's terrain is rendered from
+		 * low-resolution, per-chunk snapshots instead of tile-by-tile
+		 */
+		public float lodZoomThreshold = 3f;
+		
+		/**
+		 * Resolution of those terrain snapshots, in pixels per tile-width unit
+		 */
+		public float lodPixelsPerUnit = 12f;
 	}
 	
 	public static final String DEFAULT_MAP_MODE_ID = "default";
 	
 	private static final Logger LOG = LoggerService.forClass(MapRenderer.class);
 	
-	private static final int NUM_VERTICES = 20;
+	static final int NUM_VERTICES = 20;
 	
 	public static final MapRendererSettings SETTINGS = new MapRendererSettings();
 	
@@ -104,6 +121,29 @@ public class MapRenderer implements RenderingSupport, Disposable {
 	private final float worldAltitudeMultiplier = SETTINGS.worldGridUnitSize * SETTINGS.tileHeightWidthRatio
 			* SETTINGS.altitudeMultiplier;
 	
+	/**
+	 * Viewport-units of height per unit of altitude. Follows
+	 * {@link MapRendererSettings#altitudeMultiplier} (which modules may change at
+	 * any time) -- see {@link #updateAltitudeScale()}.
+	 */
+	private float altitudeScale = getCurrentAltitudeScale();
+	
+	/**
+	 * The corners of a cell, in the order that
+	 * {@link #getCellVertices(int, int, Vector2[], TileCorner, int)
+	 * getCellVertices()} reports them.
+	 */
+	private static final TileCorner[] CELL_CORNERS = { TileCorner.LEFT, TileCorner.TOP, TileCorner.RIGHT,
+			TileCorner.BOTTOM };
+	
+	/**
+	 * Per-corner (indexed as {@link #CELL_CORNERS}) offset from a cell's
+	 * {@link TileCorner#LEFT left} vertex, both in map-vertices and in viewport
+	 * units (before altitude is applied).
+	 */
+	private final int[] cornerOffsetX = new int[4], cornerOffsetY = new int[4];
+	private final float[] cornerViewportX = new float[4], cornerViewportY = new float[4];
+	
 	private Matrix4 isoTransform;
 	private Matrix4 invIsotransform;
 	private Vector3 scratchV3 = new Vector3();
@@ -135,13 +175,53 @@ public class MapRenderer implements RenderingSupport, Disposable {
 	 */
 	private final Vector2 cellVertex = new Vector2();
 	
+	/**
+	 * Scratch int[4] array for preparing cell-vertices' altitudes
+	 */
+	private final int[] cornerAltitudes = new int[4];
+	
 	private final GameState state;
 	private final ShaderProgram maskingShaderProgram = new ShaderProgram(
 			Gdx.files.internal("mapTileVertexShader.vert").readString(),
 			Gdx.files.internal("mapTileFragmentShader.frag").readString());
-	private SpriteBatch batch;
+	
+	/**
+	 * Positions the {@link TerrainChunkCache}'s cached tiles from their cells and
+	 * corner-altitudes. (See {@link #bindTerrainShader(Matrix4)}.)
+	 */
+	private final ShaderProgram terrainShaderProgram = new ShaderProgram(
+			Gdx.files.internal("mapTerrainVertexShader.vert").readString(),
+			Gdx.files.internal("mapTileFragmentShader.frag").readString());
+	private ProfilingSpriteBatch batch;
 	private ShapeDrawer shapeDrawer;
 	
+	private final ComponentMapper<HasMapCellTiles> hasTilesMapper = ComponentMapper.getFor(HasMapCellTiles.class);
+	
+	/**
+	 * Caches the map's tile-geometry, chunk by chunk.
+	 */
+	private final TerrainChunkCache terrainCache = new TerrainChunkCache(this);
+	
+	/**
+	 * Renders the map's terrain when zoomed out.
+	 */
+	private final TerrainChunkSnapshots terrainSnapshots = new TerrainChunkSnapshots(terrainCache);
+	
+	/**
+	 * The camera's current zoom-level.
+	 */
+	private float zoom = 1f;
+	
+	/**
+	 * Accelerates {@link #viewportToMap(Vector2, boolean) picking}.
+	 */
+	private final MapPickingIndex pickingIndex = new MapPickingIndex();
+	
+	/**
+	 * Each {@link MapMode}'s compiled rendering-hooks.
+	 */
+	private final Map<MapMode, MapModePipeline> pipelines = new IdentityHashMap<>();
+	
 	/**
 	 * The rendering-hook that actually executes the map-renderer. In effect, this
 	 * MapRenderer hooks into itself, with id = "map". This enables the MapRenderer
@@ -149,8 +229,6 @@ public class MapRenderer implements RenderingSupport, Disposable {
 	 */
 	public final AbstractRenderingHook MAP_RENDERING_HOOK = new AbstractRenderingHook("map") {
 		
-		private final ComponentMapper<HasMapCellTiles> hasTilesMapper = ComponentMapper.getFor(HasMapCellTiles.class);
-		
 		@Override
 		public void render(float delta, Batch batch, ShapeDrawer shapeDrawer, RenderingSupport support) {
 			
@@ -160,48 +238,12 @@ public class MapRenderer implements RenderingSupport, Disposable {
 			if (state == null || state.getMap() == null)
 				return;
 			
-			final CityMap map = state.getMap();
-			
-			for (int cellY = mapVisibleMaxY; cellY >= mapVisibleMinY; cellY--)
-				for (int cellX = mapVisibleMinX; cellX <= mapVisibleMaxX; cellX++)
-					if (map.isValidCell(cellX, cellY)) {
-						
-						final Entity entity = map.getEntity(cellX, cellY);
-						if (entity == null)
-							continue;
-						if (!hasTilesMapper.has(entity))
-							continue;
-						
-						final HasMapCellTiles hasTiles = hasTilesMapper.get(entity);
-						final ListIterator<MapCellTile> listerator = hasTiles.getTiles().listIterator();
-						//
-						// Reset the MapCellTile iterator back to the top
-						//
-						while (listerator.hasNext())
-							listerator.next();
-							
-						//
-						// Scan downward until previous() yields a non-transparent Tile
-						// (or we get to the beginning of the list)
-						//
-						while (listerator.hasPrevious()) {
-							final MapCellTile tile = listerator.previous();
-							if (tile == null)
-								continue;
-							if (!tile.getTile().isTransparent())
-								break;
-						}
-						
-						//
-						// Now render all these tiles in order.
-						while (listerator.hasNext()) {
-							final MapCellTile cellTile = listerator.next();
-							final Tile tile = cellTile.getTile();
-							final Integer altitudeOverride = cellTile.getAltitudeOverride();
-							
-							renderTile(cellX, cellY, tile, null, (altitudeOverride == null) ? -1 : altitudeOverride);
-						}
-					}
+			if (isLevelOfDetailActive())
+				terrainSnapshots.render(state.getMap(), batch, mapVisibleMinX, mapVisibleMinY, mapVisibleMaxX,
+						mapVisibleMaxY);
+			else
+				terrainCache.render(state.getMap(), batch, mapVisibleMinX, mapVisibleMinY, mapVisibleMaxX,
+						mapVisibleMaxY);
 		}
 		
 	};
@@ -218,8 +260,12 @@ public class MapRenderer implements RenderingSupport, Disposable {
 		for (int i = 0; i < cellVertices.length; i++)
 			cellVertices[i] = new Vector2();
 		
-		for (int i = 0; i < viewportToMapVertices.length; i++)
-			viewportToMapVertices[i] = new Vector2();
+		for (int i = 0; i < CELL_CORNERS.length; i++) {
+			cornerOffsetX[i] = CELL_CORNERS[i].getOffsetX();
+			cornerOffsetY[i] = CELL_CORNERS[i].getOffsetY();
+			cornerViewportX[i] = computeCellVertexX(cornerOffsetX[i], cornerOffsetY[i]);
+			cornerViewportY[i] = computeCellVertexY(cornerOffsetX[i], cornerOffsetY[i], 0);
+		}
 		
 		// create the isometric transform
 		isoTransform = new Matrix4();
@@ -246,7 +292,7 @@ public class MapRenderer implements RenderingSupport, Disposable {
 	
 	private void setupBatch() {
 		
-		this.batch = new SpriteBatch(2048);
+		this.batch = new ProfilingSpriteBatch(2048);
 		
 		this.batch.disableBlending();
 		this.batch.setShader(maskingShaderProgram);
@@ -271,7 +317,10 @@ public class MapRenderer implements RenderingSupport, Disposable {
 	 */
 	public void setView(OrthographicCamera camera) {
 		
+		updateAltitudeScale();
+		
 		batch.setProjectionMatrix(camera.combined);
+		zoom = camera.zoom;
 		
 		//
 		// the viewport's width and height scale per camera's zoom-level
@@ -348,25 +397,159 @@ public class MapRenderer implements RenderingSupport, Disposable {
 		if (currentMapMode == null)
 			return;
 		
+		updateAltitudeScale();
+		
+		pickingIndex.update(state.getMap());
+		
+		terrainCache.beginFrame();
+		if (isLevelOfDetailActive())
+			terrainSnapshots.update(state.getMap(), batch, mapVisibleMinX, mapVisibleMinY, mapVisibleMaxX,
+					mapVisibleMaxY);
+		
+		final AbstractRenderingHook[] hooks = getPipeline(currentMapMode).getHooks();
+		
 		batch.begin();
 		
-		renderMapMode(delta, currentMapMode);
+		final RenderingHookProfiler profiler = state.getRenderingHookProfiler();
+		if (profiler.isEnabled())
+			renderProfiled(delta, hooks, profiler);
+		else
+			for (int i = 0; i < hooks.length; i++)
+				if (hooks[i].isEnabled())
+					hooks[i].render(delta, batch, shapeDrawer, this);
 		
 		batch.end();
 	}
 	
-	private void renderMapMode(float delta, MapMode mapMode) {
+	/**
+	 * Bring {@link #altitudeScale} up to date with the current
+	 * {@link #SETTINGS}.
+	 * <p>
+	 * If it has changed, every cached chunk's bounds -- and the occlusion-culling
+	 * baked into its geometry, and its snapshot -- are out of date, and so are
+	 * discarded.
+	 * </p>
+	 */
+	private void updateAltitudeScale() {
+		
+		final float currentAltitudeScale = getCurrentAltitudeScale();
+		if (currentAltitudeScale == altitudeScale)
+			return;
 		
-		for (String includedMapModeName : mapMode.getIncludes()) {
-			final MapMode includedMapMode = state.getMapModes().get(includedMapModeName);
-			if (includedMapMode != null)
-				renderMapMode(delta, includedMapMode);
+		altitudeScale = currentAltitudeScale;
+		invalidateTerrain();
+	}
+	
+	/**
+	 * Discard all cached terrain-geometry and -snapshots, so that they're rebuilt
+	 * (e.g., because the textures they draw from are about to be disposed).
+	 */
+	public void invalidateTerrain() {
+		
+		terrainSnapshots.clear();
+		terrainCache.clear();
+	}
+	
+	private static float getCurrentAltitudeScale() {
+		
+		return SETTINGS.tileHeightWidthRatio * SETTINGS.altitudeMultiplier;
+	}
+	
+	/**
+	 * Render the given hooks, recording each one's cost with the given
+	 * {@link RenderingHookProfiler}.
+	 * <p>
+	 * The batch is flushed after each hook, so that whatever a hook leaves pending
+	 * is counted against that hook (and not whichever hook happens to trigger the
+	 * next flush).
+	 * </p>
+	 * 
+	 * @param delta
+	 * @param hooks
+	 * @param profiler
+	 */
+	private void renderProfiled(float delta, AbstractRenderingHook[] hooks, RenderingHookProfiler profiler) {
+		
+		profiler.beginFrame();
+		
+		for (int i = 0; i < hooks.length; i++) {
+			if (!hooks[i].isEnabled())
+				continue;
+			
+			final int renderCallsBefore = batch.renderCalls + terrainCache.renderCalls;
+			final int flushesBefore = batch.flushes;
+			final long start = System.nanoTime();
+			
+			hooks[i].render(delta, batch, shapeDrawer, this);
+			
+			final int flushes = batch.flushes - flushesBefore;
+			batch.flush();
+			final long nanos = System.nanoTime() - start;
+			
+			profiler.record(hooks[i], nanos, batch.renderCalls + terrainCache.renderCalls - renderCallsBefore,
+					flushes);
 		}
+	}
+	
+	/**
+	 * @return {@code true} if the camera is zoomed out far enough that the map's
+	 *         terrain should be rendered from {@link TerrainChunkSnapshots}
+	 */
+	private boolean isLevelOfDetailActive() {
 		
-		for (AbstractRenderingHook hook : state.getRenderingHookRegistry().getPrioritizedRenderingHooks())
-			if (hook.isEnabled())
-				if (mapMode.getRenderingHooks().contains(hook.getId()))
-					hook.render(delta, batch, shapeDrawer, this);
+		return zoom >= SETTINGS.lodZoomThreshold;
+	}
+	
+	/**
+	 * Get the given {@link MapMode}'s compiled {@link MapModePipeline},
+	 * (re-)compiling it if necessary.
+	 * <p>
+	 * Whenever a pipeline is (re-)compiled, the pipelines of any MapModes no longer
+	 * {@link GameState#getMapModes() declared} are discarded.
+	 * </p>
+	 * 
+	 * @param mapMode
+	 * @return
+	 */
+	private MapModePipeline getPipeline(MapMode mapMode) {
+		
+		MapModePipeline pipeline = pipelines.get(mapMode);
+		if (pipeline == null || !pipeline.isValid()) {
+			final Map<String, MapMode> mapModes = state.getMapModes();
+			
+			//
+			// (MapMode doesn't override equals(), so this is an identity-check.)
+			pipelines.keySet().removeIf(m -> m != mapMode && !mapModes.containsValue(m));
+			
+			pipeline = new MapModePipeline(mapMode, mapModes, state.getRenderingHookRegistry());
+			pipelines.put(mapMode, pipeline);
+		}
+		
+		return pipeline;
+	}
+	
+	/**
+	 * A {@link SpriteBatch} that counts how many times it's been
+	 * {@link #flush() flushed}.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class ProfilingSpriteBatch extends SpriteBatch {
+		
+		int flushes = 0;
+		
+		ProfilingSpriteBatch(int size) {
+			
+			super(size);
+		}
+		
+		@Override
+		public void flush() {
+			
+			flushes++;
+			super.flush();
+		}
 	}
 	
 	@Override
@@ -395,6 +578,63 @@ public class MapRenderer implements RenderingSupport, Disposable {
 				&& cellY <= mapVisibleMaxY);
 	}
 	
+	/**
+	 * Render the given cell's {@link HasMapCellTiles tiles} directly -- i.e.,
+	 * without going through the {@link TerrainChunkCache}.
+	 * 
+	 * @param cellX
+	 * @param cellY
+	 */
+	void renderCellTiles(int cellX, int cellY) {
+		
+		final HasMapCellTiles hasTiles = getCellTiles(cellX, cellY);
+		if (hasTiles == null)
+			return;
+		
+		final List<MapCellTile> tiles = hasTiles.getTiles();
+		for (int i = getFirstRenderedTile(tiles); i < tiles.size(); i++) {
+			final MapCellTile cellTile = tiles.get(i);
+			final Integer altitudeOverride = cellTile.getAltitudeOverride();
+			
+			renderTile(cellX, cellY, cellTile.getTile(), null, (altitudeOverride == null) ? -1 : altitudeOverride);
+		}
+	}
+	
+	/**
+	 * @param cellX
+	 * @param cellY
+	 * @return the given cell's {@link HasMapCellTiles}, or {@code null} if it has
+	 *         none
+	 */
+	HasMapCellTiles getCellTiles(int cellX, int cellY) {
+		
+		final Entity entity = state.getMap().getEntityUnchecked(cellX, cellY);
+		if (entity == null)
+			return null;
+		
+		return hasTilesMapper.get(entity);
+	}
+	
+	/**
+	 * Tiles are rendered in order, so there's no point rendering anything
+	 * beneath the top-most non-transparent tile.
+	 * 
+	 * @param tiles
+	 * @return the index of the first tile in the list that needs to be rendered
+	 */
+	static int getFirstRenderedTile(List<MapCellTile> tiles) {
+		
+		int first = tiles.size() - 1;
+		while (first > 0) {
+			final MapCellTile tile = tiles.get(first);
+			if (tile != null && !tile.getTile().isTransparent())
+				break;
+			first--;
+		}
+		
+		return Math.max(first, 0);
+	}
+	
 	public void renderTile(int col, int row, Tile tile, Color tint, int altitudeOverride) {
 		
 		if (state == null || state.getMap() == null)
@@ -406,9 +646,6 @@ public class MapRenderer implements RenderingSupport, Disposable {
 		if (!isCellVisible(col, row))
 			return;
 		
-		if (tile == null || tile.getSprite() == null)
-			return;
-		
 		final float color;
 		
 		if (tint == null)
@@ -416,6 +653,31 @@ public class MapRenderer implements RenderingSupport, Disposable {
 		else
 			color = Color.toFloatBits(tint.r, tint.g, tint.b, tint.a);
 		
+		if (computeTileVertices(col, row, tile, color, altitudeOverride, vertices))
+			batch.draw(tile.getSprite().getTexture(), vertices, 0, NUM_VERTICES);
+	}
+	
+	/**
+	 * Compute the {@link #NUM_VERTICES} packed vertex-values (in
+	 * {@link SpriteBatch} format) that would draw the given tile on the given
+	 * cell.
+	 * 
+	 * @param col
+	 * @param row
+	 * @param tile
+	 * @param color
+	 *            packed color
+	 * @param altitudeOverride
+	 *            if {@code >= 0}, use this instead of the cell's altitudes
+	 * @param vertices
+	 *            receives the vertex-values
+	 * @return {@code false} if the tile has nothing to draw
+	 */
+	boolean computeTileVertices(int col, int row, Tile tile, float color, int altitudeOverride, float[] vertices) {
+		
+		if (tile == null || tile.getSprite() == null)
+			return false;
+		
 		final float tileScale = 1f / (float) tile.getGridWidth();
 		final TileCorner base = tile.getBase();
 		getCellVertices(col, row, cellVertices, base, altitudeOverride);
@@ -532,7 +794,7 @@ public class MapRenderer implements RenderingSupport, Disposable {
 			}
 		}
 		
-		batch.draw(region.getTexture(), vertices, 0, NUM_VERTICES);
+		return true;
 	}
 	
 	@Override
@@ -572,25 +834,105 @@ public class MapRenderer implements RenderingSupport, Disposable {
 		if (state == null || state.getMap() == null)
 			return;
 		
+		getCornerAltitudes(col, row, base, altitudeOverride, cornerAltitudes);
+		
+		final float originX = computeCellVertexX(col, row), originY = computeCellVertexY(col, row, 0);
+		
+		for (int i = 0; i < CELL_CORNERS.length; i++)
+			vertices[i].set(originX + cornerViewportX[i],
+					originY + cornerViewportY[i] + (float) cornerAltitudes[i] * altitudeScale);
+	}
+	
+	/**
+	 * Get the altitudes at which a tile, drawn on the given cell, would place
+	 * each of that cell's 4 corners (in the same order as
+	 * {@link #getCellVertices(int, int, Vector2[], TileCorner, int)
+	 * getCellVertices()}).
+	 * 
+	 * @param col
+	 * @param row
+	 * @param base
+	 *            use TileCorner as the basis for altitude calculations, or
+	 *            {@code null} to use altitude at each vertex
+	 * @param altitudeOverride
+	 *            ignore the stored altitude and use this value instead; if
+	 *            {@code <0}, then do not override
+	 * @param altitudes
+	 *            receives the 4 altitudes
+	 */
+	void getCornerAltitudes(int col, int row, TileCorner base, int altitudeOverride, int[] altitudes) {
+		
 		final CityMap map = state.getMap();
 		
-		int index = 0;
-		for (TileCorner corner : Arrays.asList(TileCorner.LEFT, TileCorner.TOP, TileCorner.RIGHT, TileCorner.BOTTOM)) {
-			
-			final boolean isValidCell = map.isValidCell(col, row);
-			final int altitude;
-			if (altitudeOverride >= 0)
-				altitude = altitudeOverride;
-			else if (!isValidCell)
-				altitude = 0;
-			else if (base == null || base == corner)
-				altitude = map.getCellAltitude(col, row, corner);
-			else
-				altitude = map.getCellAltitude(col, row, base);
-			
-			vertices[index++].set(computeCellVertexX(col + corner.getOffsetX(), row + corner.getOffsetY()),
-					computeCellVertexY(col + corner.getOffsetX(), row + corner.getOffsetY(), altitude));
+		//
+		// If every corner shares a single altitude, look it up only once.
+		final int sharedAltitude;
+		if (altitudeOverride >= 0)
+			sharedAltitude = altitudeOverride;
+		else if (!map.isValidCell(col, row))
+			sharedAltitude = 0;
+		else if (base != null)
+			sharedAltitude = map.getVertexAltitudeUnchecked(col + base.getOffsetX(), row + base.getOffsetY());
+		else
+			sharedAltitude = -1;
+		
+		for (int i = 0; i < CELL_CORNERS.length; i++)
+			altitudes[i] = (sharedAltitude >= 0) ? sharedAltitude
+					: map.getVertexAltitudeUnchecked(col + cornerOffsetX[i], row + cornerOffsetY[i]);
+	}
+	
+	/**
+	 * Compute the viewport-bounds of the given tile, drawn on the given cell with
+	 * the given {@link #getCornerAltitudes(int, int, TileCorner, int, int[])
+	 * corner-altitudes}. This is the same quad that
+	 * {@link #computeTileVertices(int, int, Tile, float, int, float[])
+	 * computeTileVertices()} would compute (and that the
+	 * {@link #bindTerrainShader(Matrix4) terrain-shader} reproduces).
+	 * 
+	 * @param col
+	 * @param row
+	 * @param tile
+	 *            must have a sprite
+	 * @param altitudes
+	 * @param bounds
+	 *            receives the bounds
+	 */
+	void getTileBounds(int col, int row, Tile tile, int[] altitudes, Rectangle bounds) {
+		
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+		for (int i = 0; i < CELL_CORNERS.length; i++) {
+			minX = Math.min(minX, cornerViewportX[i]);
+			minY = Math.min(minY, cornerViewportY[i] + (float) altitudes[i] * altitudeScale);
 		}
+		
+		final float tileScale = 1f / (float) tile.getGridWidth();
+		final TextureRegion region = tile.getSprite();
+		
+		bounds.set(computeCellVertexX(col, row) + minX,
+				computeCellVertexY(col, row, 0) + minY - ((float) tile.getSurfaceOffset() * tileScale),
+				region.getRegionWidth() * tileScale, region.getRegionHeight() * tileScale);
+	}
+	
+	/**
+	 * Bind the terrain-shader, and set its uniforms to match this renderer's
+	 * geometry. That shader expects the vertex-attributes laid out by the
+	 * {@link TerrainChunkCache}.
+	 * 
+	 * @param projectionTransform
+	 * @return the bound terrain-shader
+	 */
+	ShaderProgram bindTerrainShader(Matrix4 projectionTransform) {
+		
+		terrainShaderProgram.bind();
+		terrainShaderProgram.setUniformMatrix("u_projTrans", projectionTransform);
+		terrainShaderProgram.setUniformi("u_texture", 0);
+		terrainShaderProgram.setUniformf("u_halfCellSize", halfTileWidth, halfTileHeight);
+		terrainShaderProgram.setUniformf("u_altitudeScale", getCurrentAltitudeScale());
+		terrainShaderProgram.setUniformf("u_cornerX", cornerViewportX[0], cornerViewportX[1], cornerViewportX[2],
+				cornerViewportX[3]);
+		terrainShaderProgram.setUniformf("u_cornerY", cornerViewportY[0], cornerViewportY[1], cornerViewportY[2],
+				cornerViewportY[3]);
+		return terrainShaderProgram;
 	}
 	
 	@Override
@@ -599,12 +941,34 @@ public class MapRenderer implements RenderingSupport, Disposable {
 		if (state == null || state.getMap() == null)
 			return null;
 		final int altitude = (state.getMap().isValidVertex(vertexX, vertexY))
-				? state.getMap().getVertexAltitude(vertexX, vertexY)
+				? state.getMap().getVertexAltitudeUnchecked(vertexX, vertexY)
 				: 0;
 		cellVertex.set(computeCellVertexX(vertexX, vertexY), computeCellVertexY(vertexX, vertexY, altitude));
 		return cellVertex;
 	}
 	
+	/**
+	 * @param vertexX
+	 * @param vertexY
+	 * @return the given vertex's viewport X-coordinate
+	 */
+	float getVertexViewportX(int vertexX, int vertexY) {
+		
+		return computeCellVertexX(vertexX, vertexY);
+	}
+	
+	/**
+	 * @param vertexX
+	 *            must be a valid vertex
+	 * @param vertexY
+	 *            must be a valid vertex
+	 * @return the given vertex's viewport Y-coordinate, including its altitude
+	 */
+	float getVertexViewportY(int vertexX, int vertexY) {
+		
+		return computeCellVertexY(vertexX, vertexY, state.getMap().getVertexAltitudeUnchecked(vertexX, vertexY));
+	}
+	
 	private float computeCellVertexX(int vertexX, int vertexY) {
 		
 		return (vertexX * halfTileWidth) + (vertexY * halfTileWidth);
@@ -612,8 +976,7 @@ public class MapRenderer implements RenderingSupport, Disposable {
 	
 	private float computeCellVertexY(int vertexX, int vertexY, int altitude) {
 		
-		return (vertexY * halfTileHeight) - (vertexX * halfTileHeight)
-				+ ((float) altitude * SETTINGS.tileHeightWidthRatio * SETTINGS.altitudeMultiplier);
+		return (vertexY * halfTileHeight) - (vertexX * halfTileHeight) + ((float) altitude * altitudeScale);
 	}
 	
 	@Override
@@ -638,19 +1001,16 @@ public class MapRenderer implements RenderingSupport, Disposable {
 		return viewportToMap(viewportCoordinates, false);
 	}
 	
-	private Vector3 viewportToMapScratchV3 = new Vector3();
-	private Vector2[] viewportToMapVertices = new Vector2[4];
-	
 	/**
 	 * Unproject the given viewport-location to the map (taking vertex-altitude into
 	 * account).
 	 * <p>
-	 * This method is thread-safe. You may call it from multiple threads at once.
+	 * This method is lock-free. You may call it from multiple threads at once.
 	 * </p>
 	 * 
 	 * @param viewportCoordinates
 	 * @param ignoreAltitude
-	 * @return
+	 * @return the mutated {@code viewportCoordinates}
 	 */
 	public Vector2 viewportToMap(Vector2 viewportCoordinates, boolean ignoreAltitude) {
 		
@@ -658,75 +1018,106 @@ public class MapRenderer implements RenderingSupport, Disposable {
 			return viewportCoordinates;
 		
 		final CityMap map = state.getMap();
+		final float viewportX = viewportCoordinates.x, viewportY = viewportCoordinates.y;
 		
-		synchronized (viewportToMapScratchV3) {
-			//
-			// Figure out which (viewport-)vertical column to scan through.
-			//
-			// If the map were flat, this would be the cell we're hitting ...
-			viewportToMapScratchV3.set(viewportCoordinates.x, viewportCoordinates.y, 0);
-			viewportToMapScratchV3.mul(invIsotransform);
-			final float flatMapCellX = viewportToMapScratchV3.x, flatMapCellY = viewportToMapScratchV3.y;
+		//
+		// Figure out which (viewport-)vertical column to scan through.
+		//
+		// If the map were flat, this would be the cell we're hitting ...
+		final float[] inverse = invIsotransform.val;
+		final float flatMapCellX = viewportX * inverse[Matrix4.M00] + viewportY * inverse[Matrix4.M01]
+				+ inverse[Matrix4.M03];
+		final float flatMapCellY = viewportX * inverse[Matrix4.M10] + viewportY * inverse[Matrix4.M11]
+				+ inverse[Matrix4.M13];
+		
+		if (ignoreAltitude)
+			return viewportCoordinates.set(flatMapCellX, flatMapCellY);
+		
+		//
+		// this is the column we need to scan ...
+		final int column = Math.round(flatMapCellX + flatMapCellY);
+		
+		//
+		// Now iterate up the column -- starting at cell [column,0] and continuing by
+		// alternately [-1,0] and [0,+1] until we find a cell whose viewport-projected
+		// vertices contain the given viewport-coordinate.
+		//
+		// At step s, we're looking at cell [column - ceil(s/2), floor(s/2)]. That
+		// cell's viewport-Y extends from
+		// (s - column - 1) * halfTileHeight + (lowest altitude) * altitudeScale
+		// to
+		// (s - column + 1) * halfTileHeight + (highest altitude) * altitudeScale
+		//
+		// So knowing the range of altitudes within each chunk lets us skip
+		// straight to those steps that might possibly be hits.
+		//
+		final MapPickingIndex.Ranges ranges = pickingIndex.get(map);
+		
+		final int firstStep = Math.max(0, 2 * (column - map.getWidth()) + 1);
+		final int lastStep = Math.min(2 * column, 2 * map.getHeight() - 1);
+		
+		int step = firstStep;
+		while (step <= lastStep) {
 			
-			if (ignoreAltitude)
-				return new Vector2(flatMapCellX, flatMapCellY);
-				
-			//
-			// this is the column we need to scan ...
-			final int column = Math.round(flatMapCellX + flatMapCellY);
+			final int chunkX = (column - ((step + 1) >> 1)) >> CityMap.CHUNK_SHIFT;
+			final int chunkY = (step >> 1) >> CityMap.CHUNK_SHIFT;
 			
 			//
-			// Now iterate up the column -- starting at cell [column,0] and continuing by
-			// [-1,+1] until we find a cell whose viewport-projected vertices contain the
-			// given viewport-coordinate.
-			//
-			final Predicate<Vector2> isWithinQuadrilaterial = (v) -> (Intersector.isPointInTriangle(v.x, v.y,
-					viewportToMapVertices[0].x, viewportToMapVertices[0].y, viewportToMapVertices[1].x,
-					viewportToMapVertices[1].y, viewportToMapVertices[3].x, viewportToMapVertices[3].y)
-					|| Intersector.isPointInTriangle(v.x, v.y, viewportToMapVertices[1].x, viewportToMapVertices[1].y,
-							viewportToMapVertices[2].x, viewportToMapVertices[2].y, viewportToMapVertices[3].x,
-							viewportToMapVertices[3].y));
+			// The last step that stays within this chunk.
+			final int chunkLastStep = Math.min(lastStep,
+					Math.min(2 * (column - (chunkX << CityMap.CHUNK_SHIFT)),
+							2 * ((chunkY << CityMap.CHUNK_SHIFT) + CityMap.CHUNK_SIZE - 1) + 1));
 			
-			int cellX = column, cellY = 0;
-			//
-			// We will alternate back and forth between decrementing X and incrementing Y.
-			// This field governs whether we do one or the other.
-			boolean justDidX = true;
+			final long range = (ranges == null) ? MapPickingIndex.UNBOUNDED : ranges.getRange(chunkX, chunkY);
+			final int lowest = MapPickingIndex.getLowest(range), highest = MapPickingIndex.getHighest(range);
 			
-			//
-			// Note that we might just start off with cellX being *way* outside the map,
-			// if "column" is greater than map.getWidth().
-			//
-			// Accordingly, we might have to iterate for a bit until we get on the map.
-			//
-			while (cellX > 0 && cellY < map.getHeight() && !map.isValidCell(cellX, cellY)) {
-				if (justDidX)
-					cellX--;
-				else
-					cellY++;
-				justDidX = !justDidX;
-			}
+			final int fromStep = Math.max(step, (int) Math
+					.floor(column - 2 + (viewportY - (double) highest * altitudeScale) / halfTileHeight));
+			final int toStep = Math.min(chunkLastStep,
+					(int) Math.ceil(column + 2 + (viewportY - (double) lowest * altitudeScale) / halfTileHeight));
 			
-			//
-			// OK -- so long as we're still on the map, search.
-			while (map.isValidCell(cellX, cellY)) {
-				
-				getCellVertices(cellX, cellY, viewportToMapVertices, null, -1);
-				
-				if (isWithinQuadrilaterial.test(viewportCoordinates))
-					return new Vector2(cellX, cellY);
-				
-				if (justDidX)
-					cellX--;
-				else
-					cellY++;
-				justDidX = !justDidX;
+			for (int s = fromStep; s <= toStep; s++) {
+				final int cellX = column - ((s + 1) >> 1), cellY = s >> 1;
+				if (isWithinCell(map, cellX, cellY, viewportX, viewportY))
+					return viewportCoordinates.set(cellX, cellY);
 			}
 			
-			//
-			// Eh. Return our best guess.
-			return new Vector2(flatMapCellX, flatMapCellY);
+			step = chunkLastStep + 1;
 		}
+		
+		//
+		// Eh. Return our best guess.
+		return viewportCoordinates.set(flatMapCellX, flatMapCellY);
+	}
+	
+	/**
+	 * @param map
+	 * @param cellX
+	 * @param cellY
+	 * @param viewportX
+	 * @param viewportY
+	 * @return {@code true} if the given viewport-location lies within the given
+	 *         cell's viewport-projected vertices
+	 */
+	private boolean isWithinCell(CityMap map, int cellX, int cellY, float viewportX, float viewportY) {
+		
+		final float originX = computeCellVertexX(cellX, cellY), originY = computeCellVertexY(cellX, cellY, 0);
+		
+		final float x0 = originX + cornerViewportX[0], y0 = originY + cornerViewportY[0]
+				+ (float) map.getVertexAltitudeUnchecked(cellX + cornerOffsetX[0], cellY + cornerOffsetY[0])
+						* altitudeScale;
+		final float x1 = originX + cornerViewportX[1], y1 = originY + cornerViewportY[1]
+				+ (float) map.getVertexAltitudeUnchecked(cellX + cornerOffsetX[1], cellY + cornerOffsetY[1])
+						* altitudeScale;
+		final float x2 = originX + cornerViewportX[2], y2 = originY + cornerViewportY[2]
+				+ (float) map.getVertexAltitudeUnchecked(cellX + cornerOffsetX[2], cellY + cornerOffsetY[2])
+						* altitudeScale;
+		final float x3 = originX + cornerViewportX[3], y3 = originY + cornerViewportY[3]
+				+ (float) map.getVertexAltitudeUnchecked(cellX + cornerOffsetX[3], cellY + cornerOffsetY[3])
+						* altitudeScale;
+		
+		return Intersector.isPointInTriangle(viewportX, viewportY, x0, y0, x1, y1, x3, y3)
+				|| Intersector.isPointInTriangle(viewportX, viewportY, x1, y1, x2, y2, x3, y3);
 	}
 	
 	@Override
@@ -738,6 +1129,10 @@ public class MapRenderer implements RenderingSupport, Disposable {
 			
 			batch.dispose();
 			maskingShaderProgram.dispose();
+			terrainShaderProgram.dispose();
 		}
+		
+		terrainSnapshots.dispose();
+		terrainCache.dispose();
 	}
 }
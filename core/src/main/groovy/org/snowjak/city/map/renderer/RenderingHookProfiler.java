@@ -0,0 +1,253 @@
+/**
+ *
+ */
+package org.snowjak.city.map.renderer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.snowjak.city.map.renderer.hooks.AbstractRenderingHook;
+import org.snowjak.city.service.LoggerService;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.github.czyzby.kiwi.log.Logger;
+
+/**
+ * Records, per {@link AbstractRenderingHook rendering-hook}, how much each
+ * frame cost: CPU-time spent inside the hook, draw-calls it submitted, and how
+ * many times it caused the batch to flush.
+ * <p>
+ * Only the most recent {@link #HISTORY_FRAMES} frames are retained. While
+ * {@link #isEnabled() disabled} (the default), nothing is recorded.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class RenderingHookProfiler {
+	
+	private static final Logger LOG = LoggerService.forClass(RenderingHookProfiler.class);
+	
+	/**
+	 * How many frames of history are retained for each hook.
+	 */
+	public static final int HISTORY_FRAMES = 240;
+	
+	private volatile boolean enabled = false;
+	
+	private final Map<String, HookProfile> profiles = new LinkedHashMap<>();
+	private long frame = -1;
+	
+	public boolean isEnabled() {
+		
+		return enabled;
+	}
+	
+	public void setEnabled(boolean enabled) {
+		
+		this.enabled = enabled;
+	}
+	
+	/**
+	 * Discard all recorded history.
+	 */
+	public synchronized void clear() {
+		
+		profiles.clear();
+		frame = -1;
+	}
+	
+	/**
+	 * Start recording a new frame.
+	 */
+	public synchronized void beginFrame() {
+		
+		frame++;
+	}
+	
+	/**
+	 * Record the given hook's cost for the current frame.
+	 *
+	 * @param hook
+	 * @param nanos
+	 *            CPU-time spent within the hook
+	 * @param renderCalls
+	 *            draw-calls submitted by the hook
+	 * @param flushes
+	 *            times the hook caused the batch to flush
+	 */
+	public synchronized void record(AbstractRenderingHook hook, long nanos, int renderCalls, int flushes) {
+		
+		if (frame < 0)
+			return;
+		
+		HookProfile profile = profiles.get(hook.getId());
+		if (profile == null) {
+			profile = new HookProfile(hook.getId());
+			profiles.put(hook.getId(), profile);
+		}
+		
+		profile.record(frame, nanos, renderCalls, flushes);
+	}
+	
+	/**
+	 * @return a snapshot of every hook profiled so far, in the order they were
+	 *         first recorded
+	 */
+	public synchronized List<HookProfile> getProfiles() {
+		
+		return new ArrayList<>(profiles.values());
+	}
+	
+	/**
+	 * @return the most recently-recorded frame (or {@code -1} if none yet)
+	 */
+	public synchronized long getFrame() {
+		
+		return frame;
+	}
+	
+	/**
+	 * Write all retained history, as CSV, to the given local file.
+	 *
+	 * @param filename
+	 * @see #exportCsv(FileHandle)
+	 */
+	public void exportCsv(String filename) {
+		
+		exportCsv(Gdx.files.local(filename));
+	}
+	
+	/**
+	 * Write all retained history, as CSV, to the given file. Each row covers one
+	 * hook during one frame:
+	 *
+	 * <pre>
+	 * frame,hook,cpu_ms,render_calls,flushes
+	 * </pre>
+	 *
+	 * @param file
+	 */
+	public synchronized void exportCsv(FileHandle file) {
+		
+		final StringBuilder csv = new StringBuilder("frame,hook,cpu_ms,render_calls,flushes\n");
+		
+		final long oldest = Math.max(0, frame - HISTORY_FRAMES + 1);
+		for (long f = oldest; f <= frame; f++)
+			for (HookProfile profile : profiles.values()) {
+				final int i = profile.indexOf(f);
+				if (i < 0)
+					continue;
+				
+				csv.append(f).append(',').append(profile.id).append(',').append(profile.nanos[i] / 1e6).append(',')
+						.append(profile.renderCalls[i]).append(',').append(profile.flushes[i]).append('\n');
+			}
+		
+		file.writeString(csv.toString(), false);
+		LOG.info("Exported rendering-hook profile to \"{0}\".", file.path());
+	}
+	
+	/**
+	 * Rolling history for a single rendering-hook.
+	 *
+	 * @author snowjak88
+	 *
+	 */
+	public static class HookProfile {
+		
+		private final String id;
+		private final long[] frames = new long[HISTORY_FRAMES];
+		private final long[] nanos = new long[HISTORY_FRAMES];
+		private final int[] renderCalls = new int[HISTORY_FRAMES], flushes = new int[HISTORY_FRAMES];
+		
+		private HookProfile(String id) {
+			
+			this.id = id;
+			Arrays.fill(frames, -1);
+		}
+		
+		private void record(long frame, long nanos, int renderCalls, int flushes) {
+			
+			final int i = (int) (frame % HISTORY_FRAMES);
+			if (frames[i] != frame) {
+				frames[i] = frame;
+				this.nanos[i] = 0;
+				this.renderCalls[i] = 0;
+				this.flushes[i] = 0;
+			}
+			
+			this.nanos[i] += nanos;
+			this.renderCalls[i] += renderCalls;
+			this.flushes[i] += flushes;
+		}
+		
+		private int indexOf(long frame) {
+			
+			if (frame < 0)
+				return -1;
+			final int i = (int) (frame % HISTORY_FRAMES);
+			return (frames[i] == frame) ? i : -1;
+		}
+		
+		public String getId() {
+			
+			return id;
+		}
+		
+		/**
+		 * @param frame
+		 * @return CPU-time (in milliseconds) this hook took during the given frame,
+		 *         or 0 if that frame is not retained
+		 */
+		public float getMillis(long frame) {
+			
+			final int i = indexOf(frame);
+			return (i < 0) ? 0 : nanos[i] / 1e6f;
+		}
+		
+		/**
+		 * @param frame
+		 * @return draw-calls this hook submitted during the given frame
+		 */
+		public int getRenderCalls(long frame) {
+			
+			final int i = indexOf(frame);
+			return (i < 0) ? 0 : renderCalls[i];
+		}
+		
+		/**
+		 * @param frame
+		 * @return batch-flushes this hook caused during the given frame
+		 */
+		public int getFlushes(long frame) {
+			
+			final int i = indexOf(frame);
+			return (i < 0) ? 0 : flushes[i];
+		}
+		
+		/**
+		 * @param toFrame
+		 * @param frameCount
+		 * @return average CPU-time (in milliseconds) over the given number of frames
+		 *         up to (and including) the given frame
+		 */
+		public float getAverageMillis(long toFrame, int frameCount) {
+			
+			long total = 0;
+			int count = 0;
+			for (long f = toFrame; f > toFrame - frameCount; f--) {
+				final int i = indexOf(f);
+				if (i < 0)
+					continue;
+				total += nanos[i];
+				count++;
+			}
+			
+			return (count == 0) ? 0 : total / 1e6f / count;
+		}
+	}
+}
@@ -22,6 +22,12 @@ public class RenderingHookRegistry {
 	private final Map<String, AbstractRenderingHook> renderingHooks = new LinkedHashMap<>();
 	private final RelativePriorityList<String, AbstractRenderingHook> prioritizedRenderingHooks = new RelativePriorityList<>();
 	
+	/**
+	 * Increases every time the set of registered hooks (or their priorities)
+	 * changes, or when this registry is {@link #invalidate() invalidated}.
+	 */
+	private volatile int version = 0;
+	
 	public List<AbstractRenderingHook> getPrioritizedRenderingHooks() {
 		
 		return prioritizedRenderingHooks;
@@ -29,6 +35,8 @@ public class RenderingHookRegistry {
 	
 	public AbstractRenderingHook addRenderingHook(AbstractRenderingHook hook) throws PrioritizationFailedException {
 		
+		version++;
+		
 		final AbstractRenderingHook previous = renderingHooks.put(hook.getId(), hook);
 		
 		if (previous != null)
@@ -58,7 +66,27 @@ public class RenderingHookRegistry {
 	
 	public void removeRenderingHook(AbstractRenderingHook hook) {
 		
+		version++;
+		
 		renderingHooks.remove(hook.getId());
 		prioritizedRenderingHooks.remove(hook);
 	}
+	
+	/**
+	 * Signal that anything derived from this registry (e.g., a compiled
+	 * {@link MapModePipeline}) must be rebuilt -- for instance, because the set of
+	 * {@link MapMode}s has changed.
+	 */
+	public void invalidate() {
+		
+		version++;
+	}
+	
+	/**
+	 * @return a counter that increases every time this registry changes
+	 */
+	public int getVersion() {
+		
+		return version;
+	}
 }
@@ -0,0 +1,591 @@
+/**
+ *
+ */
+package org.snowjak.city.map.renderer;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.snowjak.city.ecs.components.HasMapCellTiles;
+import org.snowjak.city.ecs.components.HasMapCellTiles.MapCellTile;
+import org.snowjak.city.map.CityMap;
+import org.snowjak.city.map.tiles.Tile;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Caches the {@link MapRenderer}'s tile-geometry, one map-chunk (see
+ * {@link CityMap#CHUNK_SIZE}) at a time, in {@link Mesh}es.
+ * <p>
+ * A chunk's geometry is rebuilt only when that chunk's
+ * {@link CityMap#getChunkVersion(int, int) version} changes -- i.e., when any
+ * of its cells' altitudes, Entities, or {@link HasMapCellTiles tiles} are
+ * marked as changed. Only a few chunks are rebuilt per frame; any other
+ * out-of-date chunks are rendered tile-by-tile in the meantime.
+ * </p>
+ * <p>
+ * Chunks are rendered back-to-front (by descending Y, then ascending X), and
+ * each chunk's tiles in the same order as the {@link MapRenderer} would
+ * render them one at a time.
+ * </p>
+ * <p>
+ * Cells {@link TerrainOcclusion hidden} behind the terrain in front of them are
+ * left out of the cached geometry. Because those occluders may lie in the
+ * neighbouring chunks to the front, a chunk is also rebuilt when any of those
+ * neighbours changes.
+ * </p>
+ * <p>
+ * Cached geometry doesn't hold viewport-positions. Each vertex holds only its
+ * tile's cell, that cell's corner-altitudes, and its offset from the tile's
+ * origin; the {@link MapRenderer#bindTerrainShader(Matrix4) terrain-shader}
+ * works out the rest. Cached geometry is always rendered untinted.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+class TerrainChunkCache implements Disposable {
+	
+	/**
+	 * A single Mesh holds at most this many tiles (quads), so that its vertices
+	 * can be indexed with (unsigned) shorts.
+	 */
+	private static final int MAX_QUADS_PER_MESH = 8191;
+	
+	/**
+	 * Geometry is kept for at most this many chunks. The least-recently-rendered
+	 * chunk is evicted first.
+	 */
+	private static final int MAX_CACHED_CHUNKS = 256;
+	
+	/**
+	 * At most this many chunks are rebuilt per frame.
+	 */
+	private static final int MAX_REBUILDS_PER_FRAME = 4;
+	
+	/**
+	 * Offsets to the neighbouring chunks (in front of any given chunk) that may
+	 * hold cells occluding that chunk's cells.
+	 */
+	private static final int[] OCCLUDING_NEIGHBOUR_X = { +1, 0, +1 }, OCCLUDING_NEIGHBOUR_Y = { 0, -1, -1 };
+	
+	/**
+	 * A chunk's geometry depends on this many chunk-versions: its own, and each
+	 * of its occluding neighbours'. (See {@link #getVersions(CityMap, int, int, long[])}.)
+	 */
+	static final int VERSION_COUNT = 1 + OCCLUDING_NEIGHBOUR_X.length;
+	
+	/**
+	 * Floats per vertex: cell (x,y), corner-altitudes (4), offset (x,y), and
+	 * texture-coordinates (u,v).
+	 */
+	private static final int VERTEX_SIZE = 10;
+	
+	private static final int FLOATS_PER_QUAD = 4 * VERTEX_SIZE;
+	
+	private static final short[] QUAD_INDICES = new short[MAX_QUADS_PER_MESH * 6];
+	static {
+		for (int i = 0, j = 0; i < QUAD_INDICES.length; i += 6, j += 4) {
+			QUAD_INDICES[i] = (short) j;
+			QUAD_INDICES[i + 1] = (short) (j + 1);
+			QUAD_INDICES[i + 2] = (short) (j + 2);
+			QUAD_INDICES[i + 3] = (short) (j + 2);
+			QUAD_INDICES[i + 4] = (short) (j + 3);
+			QUAD_INDICES[i + 5] = (short) j;
+		}
+	}
+	
+	private final MapRenderer renderer;
+	
+	private final float[] quad = new float[FLOATS_PER_QUAD];
+	private final int[] altitudes = new int[4];
+	private final Rectangle tileBounds = new Rectangle();
+	private final FloatArray vertexData = new FloatArray();
+	
+	private final Matrix4 projectionTransform = new Matrix4();
+	
+	/**
+	 * Scratch space for a single cell's quads (and their textures).
+	 */
+	private final FloatArray cellVertexData = new FloatArray();
+	private final Array<Texture> cellTextures = new Array<>();
+	
+	private final TerrainOcclusion occlusion;
+	
+	/**
+	 * Counts every Mesh this cache has drawn. (These draw-calls bypass the
+	 * batch, and so don't show up in its
+	 * {@link com.badlogic.gdx.graphics.g2d.SpriteBatch#renderCalls renderCalls}.)
+	 */
+	int renderCalls = 0;
+	
+	private CityMap map;
+	private int rebuilds = 0;
+	private final Map<Integer, ChunkGeometry> chunks = new LinkedHashMap<Integer, ChunkGeometry>(16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 3527470618932051204L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, ChunkGeometry> eldest) {
+			
+			if (size() <= MAX_CACHED_CHUNKS)
+				return false;
+			
+			eldest.getValue().dispose();
+			return true;
+		}
+	};
+	
+	TerrainChunkCache(MapRenderer renderer) {
+		
+		this.renderer = renderer;
+		this.occlusion = new TerrainOcclusion(renderer);
+	}
+	
+	/**
+	 * Reset the per-frame rebuild budget. Call once per frame, before any
+	 * rendering.
+	 */
+	public void beginFrame() {
+		
+		rebuilds = 0;
+	}
+	
+	/**
+	 * Render every chunk that intersects the given region of cells.
+	 *
+	 * @param map
+	 * @param batch
+	 *            must be {@link Batch#begin() drawing}
+	 * @param minCellX
+	 * @param minCellY
+	 * @param maxCellX
+	 * @param maxCellY
+	 */
+	public void render(CityMap map, Batch batch, int minCellX, int minCellY, int maxCellX, int maxCellY) {
+		
+		setMap(map);
+		
+		if (MapRenderer.SETTINGS.cullOccludedCells) {
+			//
+			// A cell may have been culled because of occluders up to
+			// TerrainOcclusion.MAX_DEPTH cells in front of it -- which may lie just
+			// off-screen (the visible region ignores altitude). Those must be drawn
+			// too, or we'd leave a hole where the culled cell was.
+			minCellY -= TerrainOcclusion.MAX_DEPTH;
+			maxCellX += TerrainOcclusion.MAX_DEPTH;
+		}
+		
+		minCellX = Math.max(minCellX, 0);
+		minCellY = Math.max(minCellY, 0);
+		maxCellX = Math.min(maxCellX, map.getWidth() - 1);
+		maxCellY = Math.min(maxCellY, map.getHeight() - 1);
+		if (minCellX > maxCellX || minCellY > maxCellY)
+			return;
+		
+		for (int chunkY = (maxCellY >> CityMap.CHUNK_SHIFT); chunkY >= (minCellY >> CityMap.CHUNK_SHIFT); chunkY--)
+			for (int chunkX = (minCellX >> CityMap.CHUNK_SHIFT); chunkX <= (maxCellX >> CityMap.CHUNK_SHIFT); chunkX++) {
+				
+				final ChunkGeometry geometry = chunks.get(chunkY * map.getChunksX() + chunkX);
+				if (geometry == null || !isCurrent(map, chunkX, chunkY, geometry.versions)) {
+					
+					if (rebuilds >= MAX_REBUILDS_PER_FRAME) {
+						renderImmediately(chunkX, chunkY, minCellX, minCellY, maxCellX, maxCellY);
+						continue;
+					}
+					
+					rebuilds++;
+				}
+				
+				draw(batch, getCurrentGeometry(map, chunkX, chunkY));
+			}
+	}
+	
+	/**
+	 * Render the whole of the given chunk, rebuilding its geometry first if
+	 * necessary (regardless of this frame's rebuild budget).
+	 *
+	 * @param map
+	 * @param batch
+	 *            must be {@link Batch#begin() drawing}
+	 * @param chunkX
+	 * @param chunkY
+	 */
+	public void renderChunk(CityMap map, Batch batch, int chunkX, int chunkY) {
+		
+		setMap(map);
+		draw(batch, getCurrentGeometry(map, chunkX, chunkY));
+	}
+	
+	/**
+	 * Get the viewport-bounds of the given chunk's geometry, rebuilding that
+	 * geometry first if necessary (regardless of this frame's rebuild budget).
+	 *
+	 * @param map
+	 * @param chunkX
+	 * @param chunkY
+	 * @param bounds
+	 *            receives the bounds
+	 * @return {@code false} if the chunk has no geometry at all
+	 */
+	public boolean getChunkBounds(CityMap map, int chunkX, int chunkY, Rectangle bounds) {
+		
+		setMap(map);
+		
+		final ChunkGeometry geometry = getCurrentGeometry(map, chunkX, chunkY);
+		if (geometry.textures.size == 0)
+			return false;
+		
+		bounds.set(geometry.bounds);
+		return true;
+	}
+	
+	private void setMap(CityMap map) {
+		
+		if (map != this.map) {
+			clear();
+			this.map = map;
+		}
+	}
+	
+	private ChunkGeometry getCurrentGeometry(CityMap map, int chunkX, int chunkY) {
+		
+		final Integer index = chunkY * map.getChunksX() + chunkX;
+		
+		ChunkGeometry geometry = chunks.get(index);
+		if (geometry == null) {
+			geometry = new ChunkGeometry();
+			chunks.put(index, geometry);
+		}
+		
+		if (!isCurrent(map, chunkX, chunkY, geometry.versions)) {
+			build(map, chunkX, chunkY, geometry);
+			getVersions(map, chunkX, chunkY, geometry.versions);
+		}
+		
+		return geometry;
+	}
+	
+	/**
+	 * Get the {@link #VERSION_COUNT} chunk-versions that the given chunk's
+	 * geometry depends on.
+	 *
+	 * @param map
+	 * @param chunkX
+	 * @param chunkY
+	 * @param versions
+	 *            receives the versions
+	 */
+	static void getVersions(CityMap map, int chunkX, int chunkY, long[] versions) {
+		
+		versions[0] = map.getChunkVersion(chunkX, chunkY);
+		for (int i = 0; i < OCCLUDING_NEIGHBOUR_X.length; i++)
+			versions[i + 1] = getNeighbourVersion(map, chunkX, chunkY, i);
+	}
+	
+	/**
+	 * @param map
+	 * @param chunkX
+	 * @param chunkY
+	 * @param versions
+	 *            as previously given by {@link #getVersions(CityMap, int, int, long[])}
+	 * @return {@code true} if none of the given chunk-versions have changed
+	 */
+	static boolean isCurrent(CityMap map, int chunkX, int chunkY, long[] versions) {
+		
+		if (versions[0] != map.getChunkVersion(chunkX, chunkY))
+			return false;
+		
+		for (int i = 0; i < OCCLUDING_NEIGHBOUR_X.length; i++)
+			if (versions[i + 1] != getNeighbourVersion(map, chunkX, chunkY, i))
+				return false;
+		
+		return true;
+	}
+	
+	/**
+	 * @return the version of the given chunk's {@code i}th occluding neighbour, or
+	 *         {@code -1} if that neighbour lies off the map
+	 */
+	private static long getNeighbourVersion(CityMap map, int chunkX, int chunkY, int i) {
+		
+		final int neighbourX = chunkX + OCCLUDING_NEIGHBOUR_X[i], neighbourY = chunkY + OCCLUDING_NEIGHBOUR_Y[i];
+		if (neighbourX < 0 || neighbourY < 0 || neighbourX >= map.getChunksX() || neighbourY >= map.getChunksY())
+			return -1;
+		
+		return map.getChunkVersion(neighbourX, neighbourY);
+	}
+	
+	/**
+	 * Render the visible part of the given chunk tile-by-tile.
+	 */
+	private void renderImmediately(int chunkX, int chunkY, int minCellX, int minCellY, int maxCellX, int maxCellY) {
+		
+		final int fromX = Math.max(minCellX, chunkX << CityMap.CHUNK_SHIFT);
+		final int toX = Math.min(maxCellX, ((chunkX + 1) << CityMap.CHUNK_SHIFT) - 1);
+		final int fromY = Math.max(minCellY, chunkY << CityMap.CHUNK_SHIFT);
+		final int toY = Math.min(maxCellY, ((chunkY + 1) << CityMap.CHUNK_SHIFT) - 1);
+		
+		for (int cellY = toY; cellY >= fromY; cellY--)
+			for (int cellX = fromX; cellX <= toX; cellX++)
+				renderer.renderCellTiles(cellX, cellY);
+	}
+	
+	private void build(CityMap map, int chunkX, int chunkY, ChunkGeometry geometry) {
+		
+		vertexData.clear();
+		geometry.textures.clear();
+		geometry.runStarts.clear();
+		geometry.runCounts.clear();
+		
+		final int fromX = chunkX << CityMap.CHUNK_SHIFT, toX = Math.min(map.getWidth(), fromX + CityMap.CHUNK_SIZE);
+		final int fromY = chunkY << CityMap.CHUNK_SHIFT, toY = Math.min(map.getHeight(), fromY + CityMap.CHUNK_SIZE);
+		
+		final boolean cull = MapRenderer.SETTINGS.cullOccludedCells;
+		if (cull)
+			occlusion.prepare(map, fromX, fromY, toX, toY);
+		
+		int quads = 0;
+		float boundsMinX = Float.MAX_VALUE, boundsMinY = Float.MAX_VALUE, boundsMaxX = -Float.MAX_VALUE,
+				boundsMaxY = -Float.MAX_VALUE;
+		
+		for (int cellY = toY - 1; cellY >= fromY; cellY--)
+			for (int cellX = fromX; cellX < toX; cellX++) {
+				
+				final HasMapCellTiles hasTiles = renderer.getCellTiles(cellX, cellY);
+				if (hasTiles == null)
+					continue;
+				
+				cellVertexData.clear();
+				cellTextures.clear();
+				float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+				
+				final List<MapCellTile> tiles = hasTiles.getTiles();
+				for (int i = MapRenderer.getFirstRenderedTile(tiles); i < tiles.size(); i++) {
+					final MapCellTile cellTile = tiles.get(i);
+					final Tile tile = cellTile.getTile();
+					final Integer altitudeOverride = cellTile.getAltitudeOverride();
+					
+					if (tile == null || tile.getSprite() == null)
+						continue;
+					
+					renderer.getCornerAltitudes(cellX, cellY, tile.getBase(),
+							(altitudeOverride == null) ? -1 : altitudeOverride, altitudes);
+					renderer.getTileBounds(cellX, cellY, tile, altitudes, tileBounds);
+					
+					minX = Math.min(minX, tileBounds.x);
+					minY = Math.min(minY, tileBounds.y);
+					maxX = Math.max(maxX, tileBounds.x + tileBounds.width);
+					maxY = Math.max(maxY, tileBounds.y + tileBounds.height);
+					
+					packQuad(cellX, cellY, tile, altitudes, quad);
+					cellVertexData.addAll(quad);
+					cellTextures.add(tile.getSprite().getTexture());
+				}
+				
+				if (cellTextures.size == 0)
+					continue;
+				if (cull && occlusion.isHidden(cellX, cellY, minX, minY, maxX, maxY))
+					continue;
+				
+				boundsMinX = Math.min(boundsMinX, minX);
+				boundsMinY = Math.min(boundsMinY, minY);
+				boundsMaxX = Math.max(boundsMaxX, maxX);
+				boundsMaxY = Math.max(boundsMaxY, maxY);
+				
+				for (int i = 0; i < cellTextures.size; i++) {
+					//
+					// Consecutive tiles sharing a texture are drawn together.
+					final Texture texture = cellTextures.get(i);
+					if (geometry.textures.size == 0 || geometry.textures.peek() != texture) {
+						geometry.textures.add(texture);
+						geometry.runStarts.add(quads);
+						geometry.runCounts.add(0);
+					}
+					geometry.runCounts.incr(geometry.runCounts.size - 1, 1);
+					
+					vertexData.addAll(cellVertexData.items, i * FLOATS_PER_QUAD, FLOATS_PER_QUAD);
+					quads++;
+				}
+			}
+		
+		if (quads > 0)
+			geometry.bounds.set(boundsMinX, boundsMinY, boundsMaxX - boundsMinX, boundsMaxY - boundsMinY);
+		else
+			geometry.bounds.set(0, 0, 0, 0);
+		
+		geometry.upload(vertexData, quads);
+	}
+	
+	/**
+	 * Pack the given tile's quad, as the terrain-shader expects it. Vertices are
+	 * in the same order as
+	 * {@link MapRenderer#computeTileVertices(int, int, Tile, float, int, float[])
+	 * computeTileVertices()} gives them.
+	 */
+	private static void packQuad(int cellX, int cellY, Tile tile, int[] altitudes, float[] quad) {
+		
+		final float tileScale = 1f / (float) tile.getGridWidth();
+		final TextureRegion region = tile.getSprite();
+		
+		final float x1 = 0, y1 = -((float) tile.getSurfaceOffset() * tileScale);
+		final float x2 = region.getRegionWidth() * tileScale, y2 = y1 + region.getRegionHeight() * tileScale;
+		
+		packVertex(quad, 0, cellX, cellY, altitudes, x1, y1, region.getU(), region.getV2());
+		packVertex(quad, 1, cellX, cellY, altitudes, x1, y2, region.getU(), region.getV());
+		packVertex(quad, 2, cellX, cellY, altitudes, x2, y2, region.getU2(), region.getV());
+		packVertex(quad, 3, cellX, cellY, altitudes, x2, y1, region.getU2(), region.getV2());
+	}
+	
+	private static void packVertex(float[] quad, int vertex, int cellX, int cellY, int[] altitudes, float offsetX,
+			float offsetY, float u, float v) {
+		
+		int i = vertex * VERTEX_SIZE;
+		quad[i++] = cellX;
+		quad[i++] = cellY;
+		quad[i++] = altitudes[0];
+		quad[i++] = altitudes[1];
+		quad[i++] = altitudes[2];
+		quad[i++] = altitudes[3];
+		quad[i++] = offsetX;
+		quad[i++] = offsetY;
+		quad[i++] = u;
+		quad[i] = v;
+	}
+	
+	private void draw(Batch batch, ChunkGeometry geometry) {
+		
+		if (geometry.textures.size == 0)
+			return;
+		
+		//
+		// Anything the batch has pending must be drawn first, to preserve
+		// rendering-order.
+		batch.flush();
+		
+		if (batch.isBlendingEnabled()) {
+			Gdx.gl.glEnable(GL20.GL_BLEND);
+			Gdx.gl.glBlendFuncSeparate(batch.getBlendSrcFunc(), batch.getBlendDstFunc(), batch.getBlendSrcFuncAlpha(),
+					batch.getBlendDstFuncAlpha());
+		} else
+			Gdx.gl.glDisable(GL20.GL_BLEND);
+		
+		projectionTransform.set(batch.getProjectionMatrix()).mul(batch.getTransformMatrix());
+		final ShaderProgram shader = renderer.bindTerrainShader(projectionTransform);
+		
+		for (int run = 0; run < geometry.textures.size; run++) {
+			geometry.textures.get(run).bind();
+			
+			int quad = geometry.runStarts.get(run);
+			final int end = quad + geometry.runCounts.get(run);
+			while (quad < end) {
+				final int mesh = quad / MAX_QUADS_PER_MESH, offset = quad % MAX_QUADS_PER_MESH;
+				final int count = Math.min(end - quad, MAX_QUADS_PER_MESH - offset);
+				
+				geometry.meshes.get(mesh).render(shader, GL20.GL_TRIANGLES, offset * 6, count * 6);
+				renderCalls++;
+				quad += count;
+			}
+		}
+		
+		//
+		// The batch expects its own shader to still be bound.
+		batch.getShader().bind();
+	}
+	
+	/**
+	 * Discard all cached geometry.
+	 */
+	public void clear() {
+		
+		for (ChunkGeometry geometry : chunks.values())
+			geometry.dispose();
+		chunks.clear();
+	}
+	
+	@Override
+	public void dispose() {
+		
+		clear();
+		map = null;
+	}
+	
+	/**
+	 * A single chunk's cached geometry. Tiles are grouped into "runs" of
+	 * consecutive tiles sharing the same {@link Texture}.
+	 */
+	private static class ChunkGeometry implements Disposable {
+		
+		final long[] versions = new long[VERSION_COUNT];
+		final Rectangle bounds = new Rectangle();
+		
+		final Array<Texture> textures = new Array<>();
+		final IntArray runStarts = new IntArray(), runCounts = new IntArray();
+		
+		final Array<Mesh> meshes = new Array<>();
+		
+		ChunkGeometry() {
+			
+			Arrays.fill(versions, Long.MIN_VALUE);
+		}
+		
+		void upload(FloatArray vertexData, int quads) {
+			
+			final int floatsPerQuad = FLOATS_PER_QUAD;
+			final int meshCount = (quads + MAX_QUADS_PER_MESH - 1) / MAX_QUADS_PER_MESH;
+			
+			while (meshes.size > meshCount)
+				meshes.pop().dispose();
+			
+			for (int i = 0; i < meshCount; i++) {
+				final int meshQuads = Math.min(MAX_QUADS_PER_MESH, quads - i * MAX_QUADS_PER_MESH);
+				
+				if (i < meshes.size && meshes.get(i).getMaxVertices() < meshQuads * 4) {
+					meshes.get(i).dispose();
+					meshes.set(i, newMesh(meshQuads));
+				} else if (i >= meshes.size)
+					meshes.add(newMesh(meshQuads));
+				
+				meshes.get(i).setVertices(vertexData.items, i * MAX_QUADS_PER_MESH * floatsPerQuad,
+						meshQuads * floatsPerQuad);
+			}
+		}
+		
+		private static Mesh newMesh(int quads) {
+			
+			final int capacity = Math.min(MAX_QUADS_PER_MESH, MathUtils.nextPowerOfTwo(quads));
+			
+			final Mesh mesh = new Mesh(true, capacity * 4, capacity * 6,
+					new VertexAttribute(Usage.Generic, 2, "a_cell"), new VertexAttribute(Usage.Generic, 4, "a_altitudes"),
+					new VertexAttribute(Usage.Generic, 2, "a_offset"),
+					new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
+			mesh.setIndices(QUAD_INDICES, 0, capacity * 6);
+			return mesh;
+		}
+		
+		@Override
+		public void dispose() {
+			
+			for (Mesh mesh : meshes)
+				mesh.dispose();
+			meshes.clear();
+		}
+	}
+}
@@ -0,0 +1,337 @@
+/**
+ *
+ */
+package org.snowjak.city.map.renderer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.snowjak.city.map.CityMap;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Level-of-detail rendering for the map's terrain: each map-chunk (see
+ * {@link CityMap#CHUNK_SIZE}) is rendered once, at low resolution, into its own
+ * {@link FrameBuffer}, and thereafter drawn as a single textured quad.
+ * <p>
+ * Snapshots are baked from the {@link TerrainChunkCache}'s geometry, and
+ * re-baked whenever that geometry would change. Only a few snapshots are
+ * (re-)baked per frame; until then, a chunk with an out-of-date snapshot
+ * keeps showing it, and a chunk with no snapshot at all is rendered through
+ * the TerrainChunkCache.
+ * </p>
+ * <p>
+ * Snapshots are kept for every chunk on-screen, plus a few more. A chunk
+ * drawn this frame is never evicted.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+class TerrainChunkSnapshots implements Disposable {
+	
+	/**
+	 * At most this many snapshots are (re-)baked per frame.
+	 */
+	private static final int MAX_BAKES_PER_FRAME = 2;
+	
+	/**
+	 * Besides those on-screen, snapshots are kept for at most this many chunks.
+	 * The least-recently-drawn chunk is evicted first.
+	 */
+	private static final int MAX_OFFSCREEN_SNAPSHOTS = 16;
+	
+	/**
+	 * No snapshot is larger than this (in pixels) on either side.
+	 */
+	private static final int MAX_SNAPSHOT_SIZE = 2048;
+	
+	private final TerrainChunkCache terrainCache;
+	
+	private final Matrix4 bakingProjection = new Matrix4(), previousProjection = new Matrix4();
+	private final long[] versions = new long[TerrainChunkCache.VERSION_COUNT];
+	
+	private CityMap map;
+	
+	/**
+	 * In access-order, so that the least-recently-drawn chunk comes first.
+	 */
+	private final Map<Integer, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+	
+	/**
+	 * Incremented by every {@link #update(CityMap, Batch, int, int, int, int)}.
+	 */
+	private int frame = 0;
+	
+	TerrainChunkSnapshots(TerrainChunkCache terrainCache) {
+		
+		this.terrainCache = terrainCache;
+	}
+	
+	/**
+	 * (Re-)bake the snapshots of the chunks intersecting the given region of
+	 * cells, as this frame's budget allows. Chunks without any snapshot are baked
+	 * first.
+	 * <p>
+	 * Must be called outside of {@link Batch#begin()}/{@link Batch#end()}.
+	 * </p>
+	 *
+	 * @param map
+	 * @param batch
+	 * @param minCellX
+	 * @param minCellY
+	 * @param maxCellX
+	 * @param maxCellY
+	 */
+	public void update(CityMap map, Batch batch, int minCellX, int minCellY, int maxCellX, int maxCellY) {
+		
+		setMap(map);
+		
+		if (MapRenderer.SETTINGS.cullOccludedCells) {
+			//
+			// As in TerrainChunkCache: include the chunks holding any occluders
+			// for the cells on-screen.
+			minCellY -= TerrainOcclusion.MAX_DEPTH;
+			maxCellX += TerrainOcclusion.MAX_DEPTH;
+		}
+		
+		minCellX = Math.max(minCellX, 0);
+		minCellY = Math.max(minCellY, 0);
+		maxCellX = Math.min(maxCellX, map.getWidth() - 1);
+		maxCellY = Math.min(maxCellY, map.getHeight() - 1);
+		if (minCellX > maxCellX || minCellY > maxCellY)
+			return;
+		
+		frame++;
+		
+		//
+		// Mark every on-screen snapshot as drawn this frame, so it won't be evicted.
+		int visibleChunks = 0;
+		for (int chunkY = (minCellY >> CityMap.CHUNK_SHIFT); chunkY <= (maxCellY >> CityMap.CHUNK_SHIFT); chunkY++)
+			for (int chunkX = (minCellX >> CityMap.CHUNK_SHIFT); chunkX <= (maxCellX >> CityMap.CHUNK_SHIFT); chunkX++) {
+				
+				final Snapshot snapshot = snapshots.get(chunkY * map.getChunksX() + chunkX);
+				if (snapshot != null)
+					snapshot.frame = frame;
+				visibleChunks++;
+			}
+		
+		int bakes = 0;
+		
+		for (int pass = 0; pass < 2 && bakes < MAX_BAKES_PER_FRAME; pass++)
+			for (int chunkY = (maxCellY >> CityMap.CHUNK_SHIFT); chunkY >= (minCellY >> CityMap.CHUNK_SHIFT)
+					&& bakes < MAX_BAKES_PER_FRAME; chunkY--)
+				for (int chunkX = (minCellX >> CityMap.CHUNK_SHIFT); chunkX <= (maxCellX >> CityMap.CHUNK_SHIFT)
+						&& bakes < MAX_BAKES_PER_FRAME; chunkX++) {
+					
+					final Integer index = chunkY * map.getChunksX() + chunkX;
+					final Snapshot snapshot = snapshots.get(index);
+					
+					//
+					// First pass: missing snapshots. Second pass: out-of-date snapshots.
+					final boolean bake = (pass == 0) ? (snapshot == null)
+							: (snapshot != null && !TerrainChunkCache.isCurrent(map, chunkX, chunkY, snapshot.versions));
+					if (!bake)
+						continue;
+					
+					bake(map, batch, chunkX, chunkY, index, snapshot);
+					bakes++;
+				}
+		
+		evict(visibleChunks + MAX_OFFSCREEN_SNAPSHOTS);
+	}
+	
+	/**
+	 * Discard the least-recently-drawn snapshots until no more than
+	 * {@code capacity} remain -- but never any snapshot drawn this frame.
+	 *
+	 * @param capacity
+	 */
+	private void evict(int capacity) {
+		
+		final Iterator<Snapshot> iterator = snapshots.values().iterator();
+		while (snapshots.size() > capacity && iterator.hasNext()) {
+			
+			final Snapshot snapshot = iterator.next();
+			if (snapshot.frame == frame)
+				//
+				// Everything after this was drawn this frame, too.
+				break;
+			
+			snapshot.dispose();
+			iterator.remove();
+		}
+	}
+	
+	/**
+	 * Render every chunk that intersects the given region of cells.
+	 *
+	 * @param map
+	 * @param batch
+	 *            must be {@link Batch#begin() drawing}
+	 * @param minCellX
+	 * @param minCellY
+	 * @param maxCellX
+	 * @param maxCellY
+	 */
+	public void render(CityMap map, Batch batch, int minCellX, int minCellY, int maxCellX, int maxCellY) {
+		
+		setMap(map);
+		
+		if (MapRenderer.SETTINGS.cullOccludedCells) {
+			//
+			// As in TerrainChunkCache: include the chunks holding any occluders
+			// for the cells on-screen.
+			minCellY -= TerrainOcclusion.MAX_DEPTH;
+			maxCellX += TerrainOcclusion.MAX_DEPTH;
+		}
+		
+		minCellX = Math.max(minCellX, 0);
+		minCellY = Math.max(minCellY, 0);
+		maxCellX = Math.min(maxCellX, map.getWidth() - 1);
+		maxCellY = Math.min(maxCellY, map.getHeight() - 1);
+		if (minCellX > maxCellX || minCellY > maxCellY)
+			return;
+		
+		for (int chunkY = (maxCellY >> CityMap.CHUNK_SHIFT); chunkY >= (minCellY >> CityMap.CHUNK_SHIFT); chunkY--)
+			for (int chunkX = (minCellX >> CityMap.CHUNK_SHIFT); chunkX <= (maxCellX >> CityMap.CHUNK_SHIFT); chunkX++) {
+				
+				final Snapshot snapshot = snapshots.get(chunkY * map.getChunksX() + chunkX);
+				
+				if (snapshot == null) {
+					final int fromX = chunkX << CityMap.CHUNK_SHIFT, fromY = chunkY << CityMap.CHUNK_SHIFT;
+					terrainCache.render(map, batch, Math.max(minCellX, fromX), Math.max(minCellY, fromY),
+							Math.min(maxCellX, fromX + CityMap.CHUNK_SIZE - 1),
+							Math.min(maxCellY, fromY + CityMap.CHUNK_SIZE - 1));
+					continue;
+				}
+				
+				if (snapshot.frameBuffer == null)
+					continue;
+				
+				final Texture texture = snapshot.frameBuffer.getColorBufferTexture();
+				batch.draw(texture, snapshot.bounds.x, snapshot.bounds.y, snapshot.bounds.width, snapshot.bounds.height,
+						0, 0, texture.getWidth(), texture.getHeight(), false, true);
+			}
+	}
+	
+	private void bake(CityMap map, Batch batch, int chunkX, int chunkY, Integer index, Snapshot snapshot) {
+		
+		if (snapshot == null) {
+			snapshot = new Snapshot();
+			snapshot.frame = frame;
+			snapshots.put(index, snapshot);
+		}
+		
+		TerrainChunkCache.getVersions(map, chunkX, chunkY, versions);
+		
+		if (!terrainCache.getChunkBounds(map, chunkX, chunkY, snapshot.bounds)) {
+			//
+			// Nothing to draw.
+			snapshot.disposeFrameBuffer();
+			System.arraycopy(versions, 0, snapshot.versions, 0, versions.length);
+			return;
+		}
+		
+		final float pixelsPerUnit = MapRenderer.SETTINGS.lodPixelsPerUnit;
+		final int width = Math.max(1,
+				Math.min(MAX_SNAPSHOT_SIZE, (int) Math.ceil(snapshot.bounds.width * pixelsPerUnit)));
+		final int height = Math.max(1,
+				Math.min(MAX_SNAPSHOT_SIZE, (int) Math.ceil(snapshot.bounds.height * pixelsPerUnit)));
+		
+		if (snapshot.frameBuffer == null || snapshot.frameBuffer.getWidth() != width
+				|| snapshot.frameBuffer.getHeight() != height) {
+			snapshot.disposeFrameBuffer();
+			snapshot.frameBuffer = new FrameBuffer(Format.RGBA8888, width, height, false);
+			snapshot.frameBuffer.getColorBufferTexture().setFilter(TextureFilter.Linear, TextureFilter.Linear);
+		}
+		
+		previousProjection.set(batch.getProjectionMatrix());
+		bakingProjection.setToOrtho2D(snapshot.bounds.x, snapshot.bounds.y, snapshot.bounds.width,
+				snapshot.bounds.height);
+		
+		snapshot.frameBuffer.begin();
+		
+		Gdx.gl.glClearColor(0, 0, 0, 0);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+		
+		batch.setProjectionMatrix(bakingProjection);
+		batch.begin();
+		terrainCache.renderChunk(map, batch, chunkX, chunkY);
+		batch.end();
+		
+		snapshot.frameBuffer.end();
+		
+		batch.setProjectionMatrix(previousProjection);
+		
+		System.arraycopy(versions, 0, snapshot.versions, 0, versions.length);
+	}
+	
+	private void setMap(CityMap map) {
+		
+		if (map != this.map) {
+			clear();
+			this.map = map;
+		}
+	}
+	
+	/**
+	 * Discard all snapshots.
+	 */
+	public void clear() {
+		
+		for (Snapshot snapshot : snapshots.values())
+			snapshot.dispose();
+		snapshots.clear();
+	}
+	
+	@Override
+	public void dispose() {
+		
+		clear();
+		map = null;
+	}
+	
+	/**
+	 * A single chunk's snapshot.
+	 */
+	private static class Snapshot implements Disposable {
+		
+		final long[] versions = new long[TerrainChunkCache.VERSION_COUNT];
+		final Rectangle bounds = new Rectangle();
+		
+		/**
+		 * The last frame in which this snapshot was on-screen
+		 */
+		int frame;
+		
+		/**
+		 * {@code null} if the chunk has nothing to draw
+		 */
+		FrameBuffer frameBuffer;
+		
+		void disposeFrameBuffer() {
+			
+			if (frameBuffer != null)
+				frameBuffer.dispose();
+			frameBuffer = null;
+		}
+		
+		@Override
+		public void dispose() {
+			
+			disposeFrameBuffer();
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/**
+ *
+ */
+package org.snowjak.city.map.renderer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.snowjak.city.ecs.components.HasMapCellTiles;
+import org.snowjak.city.ecs.components.HasMapCellTiles.MapCellTile;
+import org.snowjak.city.map.CityMap;
+
+/**
+ * Conservatively determines which cells are completely hidden behind the
+ * terrain in front of them, so that their tiles need not be drawn at all.
+ * <p>
+ * A cell whose top-most rendered tile is not
+ * {@link org.snowjak.city.map.tiles.Tile#isTransparent() transparent} (and
+ * does not override its altitude) is assumed to cover its whole surface --
+ * i.e., the quadrilateral between its 4 vertices, at their altitudes. These surfaces are the only "occluders". A cell is hidden if all
+ * of its tiles' quads lie within the union of occluders drawn after it.
+ * </p>
+ * <p>
+ * On-screen, every cell's column is split into two half-width strips. Within a
+ * strip, the surfaces of the cells in front form a strip of triangles, each
+ * pair of neighbouring triangles sharing an edge ("rung") that spans the strip.
+ * At any point along the strip, an unbroken run of occluding triangles covers
+ * everything between its lowest and highest rungs. So it's enough to find a
+ * run with one rung entirely below the hidden quads and one entirely above
+ * them.
+ * </p>
+ * <p>
+ * Only the nearest {@link #MAX_DEPTH} cells in front of each cell are
+ * considered.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+class TerrainOcclusion {
+	
+	/**
+	 * Only this many cells in front of any cell are considered as occluders.
+	 * Must be less than {@link CityMap#CHUNK_SIZE}, so that a chunk's occluders
+	 * are all found in that chunk or its immediate neighbours.
+	 */
+	static final int MAX_DEPTH = 16;
+	
+	/**
+	 * Occluders must overlap hidden quads by at least this much (in viewport
+	 * units), to avoid cracks.
+	 */
+	private static final float TOLERANCE = 1f / 64f;
+	
+	private static final byte UNKNOWN = 0, OPAQUE = 1, NOT_OPAQUE = 2;
+	
+	private final MapRenderer renderer;
+	
+	private CityMap map;
+	private int originX, originY, width, height;
+	private byte[] opacity = new byte[0];
+	
+	TerrainOcclusion(MapRenderer renderer) {
+		
+		this.renderer = renderer;
+	}
+	
+	/**
+	 * Prepare to test the given region of cells.
+	 *
+	 * @param map
+	 * @param fromX
+	 * @param fromY
+	 * @param toX
+	 *            exclusive
+	 * @param toY
+	 *            exclusive
+	 */
+	void prepare(CityMap map, int fromX, int fromY, int toX, int toY) {
+		
+		this.map = map;
+		this.originX = fromX;
+		this.originY = fromY - MAX_DEPTH - 1;
+		this.width = (toX - fromX) + MAX_DEPTH + 1;
+		this.height = (toY - fromY) + MAX_DEPTH + 1;
+		
+		if (opacity.length < width * height)
+			opacity = new byte[width * height];
+		else
+			Arrays.fill(opacity, 0, width * height, UNKNOWN);
+	}
+	
+	/**
+	 * Is the given cell -- whose tiles all lie within the given bounds -- hidden
+	 * behind the cells in front of it?
+	 *
+	 * @param cellX
+	 * @param cellY
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @return
+	 */
+	boolean isHidden(int cellX, int cellY, float minX, float minY, float maxX, float maxY) {
+		
+		final float columnLeft = renderer.getVertexViewportX(cellX, cellY);
+		final float columnMiddle = renderer.getVertexViewportX(cellX, cellY + 1);
+		final float columnRight = renderer.getVertexViewportX(cellX + 1, cellY + 1);
+		
+		//
+		// Tiles that spill over into neighbouring columns are never hidden.
+		if (minX < columnLeft - TOLERANCE || maxX > columnRight + TOLERANCE)
+			return false;
+		
+		minY -= TOLERANCE;
+		maxY += TOLERANCE;
+		
+		//
+		// The left strip starts with this cell's own left half; the right strip,
+		// with the cell behind this one and then this cell's own right half.
+		if (minX < columnMiddle && !isStripCovered(cellX, cellY, 1, minY, maxY))
+			return false;
+		if (maxX > columnMiddle && !isStripCovered(cellX, cellY + 1, 2, minY, maxY))
+			return false;
+		
+		return true;
+	}
+	
+	/**
+	 * Look for a run of occluding triangles, within the strip starting at the
+	 * given cell's left vertex, that covers the given range.
+	 * <p>
+	 * Rung {@code m} spans between vertices
+	 * {@code (x + floor(m/2), y - floor(m/2))} and
+	 * {@code (x + ceil(m/2), y - ceil(m/2) + 1)}; triangle {@code m} lies
+	 * between rungs {@code m} and {@code m+1}, and is part of cell
+	 * {@code (x + floor(m/2), y - ceil(m/2))}.
+	 * </p>
+	 */
+	private boolean isStripCovered(int x, int y, int firstTriangle, float minY, float maxY) {
+		
+		boolean below = false, above = false, inRun = false;
+		
+		for (int m = firstTriangle; m <= 2 * MAX_DEPTH + 1; m++) {
+			
+			final int cellX = x + (m >> 1), cellY = y - ((m + 1) >> 1);
+			if (!isOpaque(cellX, cellY)) {
+				below = above = inRun = false;
+				continue;
+			}
+			
+			if (!inRun) {
+				inRun = true;
+				below = isRungBelow(x, y, m, minY);
+				above = isRungAbove(x, y, m, maxY);
+			}
+			
+			below |= isRungBelow(x, y, m + 1, minY);
+			above |= isRungAbove(x, y, m + 1, maxY);
+			
+			if (below && above)
+				return true;
+		}
+		
+		return false;
+	}
+	
+	private boolean isRungBelow(int x, int y, int m, float limit) {
+		
+		final int left = m >> 1, right = (m + 1) >> 1;
+		return renderer.getVertexViewportY(x + left, y - left) <= limit
+				&& renderer.getVertexViewportY(x + right, y - right + 1) <= limit;
+	}
+	
+	private boolean isRungAbove(int x, int y, int m, float limit) {
+		
+		final int left = m >> 1, right = (m + 1) >> 1;
+		return renderer.getVertexViewportY(x + left, y - left) >= limit
+				&& renderer.getVertexViewportY(x + right, y - right + 1) >= limit;
+	}
+	
+	private boolean isOpaque(int cellX, int cellY) {
+		
+		if (!map.isValidCell(cellX, cellY))
+			return false;
+		
+		final int localX = cellX - originX, localY = cellY - originY;
+		if (localX < 0 || localY < 0 || localX >= width || localY >= height)
+			return computeOpaque(cellX, cellY);
+		
+		final int index = localY * width + localX;
+		if (opacity[index] == UNKNOWN)
+			opacity[index] = computeOpaque(cellX, cellY) ? OPAQUE : NOT_OPAQUE;
+		
+		return opacity[index] == OPAQUE;
+	}
+	
+	private boolean computeOpaque(int cellX, int cellY) {
+		
+		final HasMapCellTiles hasTiles = renderer.getCellTiles(cellX, cellY);
+		if (hasTiles == null)
+			return false;
+		
+		final List<MapCellTile> tiles = hasTiles.getTiles();
+		if (tiles.isEmpty())
+			return false;
+		
+		final MapCellTile cellTile = tiles.get(MapRenderer.getFirstRenderedTile(tiles));
+		return cellTile != null && cellTile.getTile() != null && !cellTile.getTile().isTransparent()
+				&& cellTile.getTile().getSprite() != null && cellTile.getAltitudeOverride() == null;
+	}
+}
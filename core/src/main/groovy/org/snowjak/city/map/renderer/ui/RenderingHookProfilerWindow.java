@@ -0,0 +1,202 @@
+/**
+ *
+ */
+package org.snowjak.city.map.renderer.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.snowjak.city.map.renderer.RenderingHookProfiler;
+import org.snowjak.city.map.renderer.RenderingHookProfiler.HookProfile;
+import org.snowjak.city.service.I18NService;
+import org.snowjak.city.service.SkinService;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.scenes.scene2d.ui.Table;
+import com.badlogic.gdx.scenes.scene2d.ui.Window;
+
+/**
+ * Debug window that charts, per rendering-hook, the figures recorded by a
+ * {@link RenderingHookProfiler}. The profiler is only enabled while this window
+ * is visible.
+ *
+ * @author snowjak88
+ *
+ */
+public class RenderingHookProfilerWindow extends Window {
+	
+	/**
+	 * Figures are averaged over this many frames.
+	 */
+	private static final int AVERAGE_FRAMES = 60;
+	
+	/**
+	 * Figures are refreshed this often (in seconds).
+	 */
+	private static final float REFRESH_INTERVAL = 0.25f;
+	
+	private static final float CHART_WIDTH = RenderingHookProfiler.HISTORY_FRAMES, CHART_HEIGHT = 24;
+	
+	private final RenderingHookProfiler profiler;
+	private final I18NService i18nService;
+	private final Skin skin;
+	
+	private final Table content = new Table();
+	private final List<HookRow> rows = new ArrayList<>();
+	private float sinceRefresh = 0;
+	
+	public RenderingHookProfilerWindow(RenderingHookProfiler profiler, I18NService i18nService,
+			SkinService skinService) {
+		
+		super(i18nService.get("profiler-window-title"), skinService.getCurrent());
+		this.profiler = profiler;
+		this.i18nService = i18nService;
+		this.skin = skinService.getCurrent();
+		
+		setModal(false);
+		setMovable(true);
+		setVisible(false);
+		
+		add(content);
+		rebuild();
+	}
+	
+	/**
+	 * Show this window (and enable profiling) if it's hidden, or hide it (and
+	 * disable profiling) if it's showing.
+	 */
+	public void toggle() {
+		
+		final boolean show = !isVisible();
+		
+		if (show)
+			profiler.clear();
+		profiler.setEnabled(show);
+		setVisible(show);
+	}
+	
+	@Override
+	public void act(float delta) {
+		
+		super.act(delta);
+		
+		if (!isVisible())
+			return;
+		
+		sinceRefresh += delta;
+		if (sinceRefresh < REFRESH_INTERVAL)
+			return;
+		sinceRefresh = 0;
+		
+		final List<HookProfile> profiles = profiler.getProfiles();
+		if (profiles.size() != rows.size())
+			rebuild();
+		
+		final long frame = profiler.getFrame();
+		for (int i = 0; i < rows.size(); i++)
+			rows.get(i).update(profiles.get(i), frame);
+	}
+	
+	private void rebuild() {
+		
+		content.clearChildren();
+		rows.clear();
+		
+		content.defaults().pad(2, 5, 2, 5).left();
+		
+		content.row();
+		content.add(new Label(i18nService.get("profiler-window-hook"), skin));
+		content.add(new Label(i18nService.get("profiler-window-cpu"), skin)).right();
+		content.add(new Label(i18nService.get("profiler-window-rendercalls"), skin)).right();
+		content.add(new Label(i18nService.get("profiler-window-flushes"), skin)).right();
+		content.add(new Label(i18nService.get("profiler-window-history"), skin));
+		
+		for (HookProfile profile : profiler.getProfiles()) {
+			final HookRow row = new HookRow(profile);
+			rows.add(row);
+			
+			content.row();
+			content.add(new Label(profile.getId(), skin, "mono"));
+			content.add(row.cpu).right();
+			content.add(row.renderCalls).right();
+			content.add(row.flushes).right();
+			content.add(row.chart).size(CHART_WIDTH, CHART_HEIGHT);
+		}
+		
+		pack();
+	}
+	
+	private class HookRow {
+		
+		final Label cpu = new Label("", skin, "mono"), renderCalls = new Label("", skin, "mono"),
+				flushes = new Label("", skin, "mono");
+		final HistoryChart chart;
+		
+		HookRow(HookProfile profile) {
+			
+			chart = new HistoryChart(profile);
+		}
+		
+		void update(HookProfile profile, long frame) {
+			
+			chart.profile = profile;
+			
+			float totalRenderCalls = 0, totalFlushes = 0;
+			for (long f = frame; f > frame - AVERAGE_FRAMES; f--) {
+				totalRenderCalls += profile.getRenderCalls(f);
+				totalFlushes += profile.getFlushes(f);
+			}
+			
+			cpu.setText(String.format("%.3f", profile.getAverageMillis(frame, AVERAGE_FRAMES)));
+			renderCalls.setText(String.format("%.1f", totalRenderCalls / AVERAGE_FRAMES));
+			flushes.setText(String.format("%.1f", totalFlushes / AVERAGE_FRAMES));
+		}
+	}
+	
+	/**
+	 * Draws a hook's CPU-time, one bar per retained frame (oldest at left). Bars
+	 * are scaled to the tallest bar shown, but never less than 1 millisecond.
+	 */
+	private class HistoryChart extends Actor {
+		
+		private final TextureRegion white = skin.getRegion("white");
+		private final Color barColor = new Color(Color.SKY), previousColor = new Color();
+		
+		HookProfile profile;
+		
+		HistoryChart(HookProfile profile) {
+			
+			this.profile = profile;
+		}
+		
+		@Override
+		public void draw(Batch batch, float parentAlpha) {
+			
+			final long frame = profiler.getFrame();
+			final int frames = RenderingHookProfiler.HISTORY_FRAMES;
+			
+			float scale = 1f;
+			for (int i = 0; i < frames; i++)
+				scale = Math.max(scale, profile.getMillis(frame - i));
+			
+			final float barWidth = getWidth() / frames;
+			
+			previousColor.set(batch.getColor());
+			batch.setColor(barColor.r, barColor.g, barColor.b, barColor.a * parentAlpha);
+			
+			for (int i = 0; i < frames; i++) {
+				final float millis = profile.getMillis(frame - frames + 1 + i);
+				if (millis <= 0)
+					continue;
+				batch.draw(white, getX() + i * barWidth, getY(), barWidth, getHeight() * millis / scale);
+			}
+			
+			batch.setColor(previousColor);
+		}
+	}
+}
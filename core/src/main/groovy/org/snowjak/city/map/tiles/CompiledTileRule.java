@@ -0,0 +1,378 @@
+/**
+ *
+ */
+package org.snowjak.city.map.tiles;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation;
+import org.snowjak.city.map.tiles.support.TileSupport;
+
+import groovy.util.Expando;
+
+/**
+ * A {@link TileRule} compiled from a declarative requirement (see
+ * {@link Tile#requires(Map)}), rather than written as a closure. Compiled rules
+ * evaluate directly against the cell's heights and {@code ext}, with none of
+ * the dynamic dispatch a closure entails.
+ * <p>
+ * Requirements are given as a map, and may include:
+ * <dl>
+ * <dt>{@code flat: true}</dt>
+ * <dd>all the cell's corners must be at the same altitude (like
+ * {@link TileSupport#isFlat()}). {@code flat: false} requires the opposite.
+ * </dd>
+ * <dt>{@code flat: [TOP, LEFT]}</dt>
+ * <dd>the given corners must be at the same altitude (like
+ * {@link TileSupport#isFlat(List)})</dd>
+ * <dt>{@code altDelta: [TOP, [LEFT, RIGHT], +1]}</dt>
+ * <dd>the given corners must all be at the given altitude relative to the
+ * first (like {@link TileSupport#altDelta(TileCorner, List, int)}). May also
+ * be a list of such triples, all of which must be met.</dd>
+ * <dt>{@code ext: [terrain: 'grass', water: false, road: [NORTH, SOUTH]]}</dt>
+ * <dd>each named {@code ext} property must match its given value:
+ * <ul>
+ * <li>{@code true}/{@code false} -- the property's Groovy-truth must match
+ * (e.g., {@code water: false} is {@code !ext.water})</li>
+ * <li>a collection -- the property must hold the same elements, in any order
+ * (like {@link TileSupport#listsMatch(Collection, Collection)})</li>
+ * <li>anything else -- the property must {@code ==} the value</li>
+ * </ul>
+ * </dd>
+ * </dl>
+ * </p>
+ * <p>
+ * Each requirement is compiled to its own rule -- and each {@code ext}
+ * property to its own rule -- so that the {@link TileSetIndex} can classify
+ * them individually.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public abstract class CompiledTileRule extends TileRule<TileSupport> {
+	
+	public static final String FLAT = "flat", ALT_DELTA = "altDelta", EXT = "ext";
+	
+	/**
+	 * Compile the given requirements into rules.
+	 *
+	 * @param requirements
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if any requirement is not understood
+	 */
+	public static List<CompiledTileRule> compile(Map<String, ?> requirements) {
+		
+		final List<CompiledTileRule> rules = new ArrayList<>();
+		
+		for (Map.Entry<String, ?> requirement : requirements.entrySet())
+			switch (requirement.getKey()) {
+			case FLAT:
+				rules.add(compileFlat(requirement.getValue()));
+				break;
+			case ALT_DELTA:
+				rules.addAll(compileAltDeltas(requirement.getValue()));
+				break;
+			case EXT:
+				if (!(requirement.getValue() instanceof Map))
+					throw new IllegalArgumentException(
+							"Requirement \"ext\" must be a map of ext-properties to required values.");
+				for (Map.Entry<?, ?> property : ((Map<?, ?>) requirement.getValue()).entrySet())
+					rules.add(compileExt(String.valueOf(property.getKey()), property.getValue()));
+				break;
+			default:
+				throw new IllegalArgumentException("Unrecognized requirement \"" + requirement.getKey()
+						+ "\" -- expected one of: " + FLAT + ", " + ALT_DELTA + ", " + EXT);
+			}
+		
+		return rules;
+	}
+	
+	private static CompiledTileRule compileFlat(Object value) {
+		
+		if (value instanceof Boolean) {
+			final CornersEqual allFlat = new CornersEqual(TileCorner.values());
+			return ((Boolean) value) ? allFlat : new Not(allFlat);
+		}
+		
+		final List<TileCorner> corners = toCorners(value, FLAT);
+		return new CornersEqual(
+				(corners.isEmpty() ? TileCorner.values() : corners.toArray(new TileCorner[corners.size()])));
+	}
+	
+	private static List<CompiledTileRule> compileAltDeltas(Object value) {
+		
+		if (!(value instanceof List) || ((List<?>) value).isEmpty())
+			throw new IllegalArgumentException(
+					"Requirement \"altDelta\" must be of the form [origin, [corners], delta], or a list of those.");
+		
+		final List<?> list = (List<?>) value;
+		if (!(list.get(0) instanceof List))
+			return Collections.singletonList(compileAltDelta(list));
+		
+		final List<CompiledTileRule> rules = new ArrayList<>(list.size());
+		for (Object clause : list)
+			rules.add(compileAltDelta(clause));
+		return rules;
+	}
+	
+	private static CompiledTileRule compileAltDelta(Object value) {
+		
+		if (!(value instanceof List) || ((List<?>) value).size() != 3
+				|| !(((List<?>) value).get(0) instanceof TileCorner) || !(((List<?>) value).get(2) instanceof Number))
+			throw new IllegalArgumentException(
+					"Requirement \"altDelta\" must be of the form [origin, [corners], delta] -- not " + value);
+		
+		final List<?> clause = (List<?>) value;
+		final List<TileCorner> corners = toCorners(clause.get(1), ALT_DELTA);
+		return new AltDelta((TileCorner) clause.get(0), corners.toArray(new TileCorner[corners.size()]),
+				((Number) clause.get(2)).intValue());
+	}
+	
+	private static CompiledTileRule compileExt(String key, Object expected) {
+		
+		if (expected instanceof Boolean)
+			return new ExtTruth(key, (Boolean) expected);
+		
+		if (expected instanceof Collection) {
+			final Collection<?> elements = (Collection<?>) expected;
+			
+			Class<?> enumType = null;
+			for (Object element : elements)
+				if (!(element instanceof Enum)
+						|| (enumType != null && ((Enum<?>) element).getDeclaringClass() != enumType)) {
+					enumType = null;
+					break;
+				} else
+					enumType = ((Enum<?>) element).getDeclaringClass();
+			
+			if (enumType != null && enumType.getEnumConstants().length <= Long.SIZE)
+				return new ExtEnumSet(key, enumType, elements);
+			
+			return new ExtSet(key, elements);
+		}
+		
+		return new ExtEquals(key, expected);
+	}
+	
+	private static List<TileCorner> toCorners(Object value, String requirement) {
+		
+		if (value instanceof TileCorner)
+			return Collections.singletonList((TileCorner) value);
+		
+		if (value instanceof Collection) {
+			final List<TileCorner> corners = new ArrayList<>();
+			for (Object element : (Collection<?>) value)
+				if (element instanceof TileCorner)
+					corners.add((TileCorner) element);
+				else
+					throw new IllegalArgumentException(
+							"Requirement \"" + requirement + "\" expects tile-corners -- not " + element);
+			return corners;
+		}
+		
+		throw new IllegalArgumentException(
+				"Requirement \"" + requirement + "\" expects a tile-corner, or a list of them -- not " + value);
+	}
+	
+	@Override
+	public abstract boolean isAcceptable(int[][] heights, Expando ext);
+	
+	/**
+	 * Every one of the given corners must be at the same altitude.
+	 */
+	private static class CornersEqual extends CompiledTileRule {
+		
+		private final int[] xs, ys;
+		
+		CornersEqual(TileCorner[] corners) {
+			
+			xs = new int[corners.length];
+			ys = new int[corners.length];
+			for (int i = 0; i < corners.length; i++) {
+				xs[i] = corners[i].getOffsetX();
+				ys[i] = corners[i].getOffsetY();
+			}
+		}
+		
+		@Override
+		public boolean isAcceptable(int[][] heights, Expando ext) {
+			
+			if (xs.length < 2)
+				return true;
+			
+			final int first = heights[xs[0]][ys[0]];
+			for (int i = 1; i < xs.length; i++)
+				if (heights[xs[i]][ys[i]] != first)
+					return false;
+			return true;
+		}
+	}
+	
+	/**
+	 * The given corners must all be at the given altitude relative to the origin.
+	 */
+	private static class AltDelta extends CompiledTileRule {
+		
+		private final int originX, originY, delta;
+		private final int[] xs, ys;
+		
+		AltDelta(TileCorner origin, TileCorner[] corners, int delta) {
+			
+			this.originX = origin.getOffsetX();
+			this.originY = origin.getOffsetY();
+			this.delta = delta;
+			
+			xs = new int[corners.length];
+			ys = new int[corners.length];
+			for (int i = 0; i < corners.length; i++) {
+				xs[i] = corners[i].getOffsetX();
+				ys[i] = corners[i].getOffsetY();
+			}
+		}
+		
+		@Override
+		public boolean isAcceptable(int[][] heights, Expando ext) {
+			
+			final int expected = heights[originX][originY] + delta;
+			for (int i = 0; i < xs.length; i++)
+				if (heights[xs[i]][ys[i]] != expected)
+					return false;
+			return true;
+		}
+	}
+	
+	private static class Not extends CompiledTileRule {
+		
+		private final CompiledTileRule rule;
+		
+		Not(CompiledTileRule rule) {
+			
+			this.rule = rule;
+		}
+		
+		@Override
+		public boolean isAcceptable(int[][] heights, Expando ext) {
+			
+			return !rule.isAcceptable(heights, ext);
+		}
+	}
+	
+	/**
+	 * The {@code ext} property's Groovy-truth must match.
+	 */
+	private static class ExtTruth extends CompiledTileRule {
+		
+		private final String key;
+		private final boolean expected;
+		
+		ExtTruth(String key, boolean expected) {
+			
+			this.key = key;
+			this.expected = expected;
+		}
+		
+		@Override
+		public boolean isAcceptable(int[][] heights, Expando ext) {
+			
+			return DefaultTypeTransformation.castToBoolean(ext.getProperty(key)) == expected;
+		}
+	}
+	
+	/**
+	 * The {@code ext} property must {@code ==} the given value.
+	 */
+	private static class ExtEquals extends CompiledTileRule {
+		
+		private final String key;
+		private final Object expected;
+		
+		ExtEquals(String key, Object expected) {
+			
+			this.key = key;
+			this.expected = expected;
+		}
+		
+		@Override
+		public boolean isAcceptable(int[][] heights, Expando ext) {
+			
+			return DefaultTypeTransformation.compareEqual(ext.getProperty(key), expected);
+		}
+	}
+	
+	/**
+	 * The {@code ext} property must be a collection holding the same enum-values,
+	 * in any order -- compared as bitmasks of their ordinals.
+	 */
+	private static class ExtEnumSet extends CompiledTileRule {
+		
+		private final String key;
+		private final Class<?> enumType;
+		private final long expected;
+		
+		ExtEnumSet(String key, Class<?> enumType, Collection<?> elements) {
+			
+			this.key = key;
+			this.enumType = enumType;
+			
+			long mask = 0;
+			for (Object element : elements)
+				mask |= 1L << ((Enum<?>) element).ordinal();
+			this.expected = mask;
+		}
+		
+		@Override
+		public boolean isAcceptable(int[][] heights, Expando ext) {
+			
+			final Object value = ext.getProperty(key);
+			if (!(value instanceof Collection))
+				return false;
+			
+			long mask = 0;
+			for (Object element : (Collection<?>) value) {
+				if (!(element instanceof Enum) || ((Enum<?>) element).getDeclaringClass() != enumType)
+					return false;
+				mask |= 1L << ((Enum<?>) element).ordinal();
+			}
+			
+			return mask == expected;
+		}
+	}
+	
+	/**
+	 * The {@code ext} property must be a collection holding the same elements, in
+	 * any order.
+	 */
+	private static class ExtSet extends CompiledTileRule {
+		
+		private final String key;
+		private final Set<?> expected;
+		
+		ExtSet(String key, Collection<?> elements) {
+			
+			this.key = key;
+			this.expected = new HashSet<>(elements);
+		}
+		
+		@Override
+		public boolean isAcceptable(int[][] heights, Expando ext) {
+			
+			final Object value = ext.getProperty(key);
+			if (!(value instanceof Collection))
+				return false;
+			
+			final Collection<?> actual = (Collection<?>) value;
+			for (Object element : actual)
+				if (!expected.contains(element))
+					return false;
+			return actual.containsAll(expected);
+		}
+	}
+}
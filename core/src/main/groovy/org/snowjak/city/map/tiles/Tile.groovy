@@ -3,6 +3,8 @@
  */
 package org.snowjak.city.map.tiles
 
+import java.util.function.Supplier
+
 import org.snowjak.city.map.tiles.support.TileSupport
 import org.snowjak.city.util.validation.Validator
 import org.snowjak.city.util.validation.Validator.ValidationException
@@ -36,6 +38,12 @@ class Tile implements Disposable {
 	
 	TextureRegion sprite
 	
+	/**
+	 * If this tile's {@link #sprite} has been packed into a shared texture (see
+	 * {@link TileAtlasPacker}), its original sprite.
+	 */
+	TextureRegion unpackedSprite
+	
 	final Set<TileRule<TileSupport>> rules = new HashSet<>()
 	
 	/**
@@ -62,7 +70,22 @@ class Tile implements Disposable {
 	 * @param rule
 	 */
 	public void rule(@DelegatesTo(TileSupport) Closure rule) {
-		this.rules << new TileRule(rule, ruleHelpers, new TileSupport())
+		this.rules << new TileRule<TileSupport>(rule, ruleHelpers, { new TileSupport() } as Supplier)
+	}
+	
+	/**
+	 * Declare requirements for this tile, e.g.:
+	 * <pre>
+	 * requires flat: true, ext: [terrain: 'grass', water: false]
+	 * </pre>
+	 * Requirements are compiled into rules when the tile is defined (see {@link CompiledTileRule} for the vocabulary),
+	 * and are much cheaper to evaluate than closures. For anything they can't express, use {@link #rule(Closure)}.
+	 * 
+	 * @param requirements
+	 * @throws IllegalArgumentException if any requirement is not understood
+	 */
+	public void requires(Map<String,?> requirements) {
+		this.rules.addAll CompiledTileRule.compile(requirements)
 	}
 	
 	/**
@@ -112,6 +135,9 @@ class Tile implements Disposable {
 	@Override
 	public void dispose() {
 		
-		sprite?.texture?.dispose()
+		//
+		// A packed sprite's texture is shared with other tiles, and belongs to the
+		// TileAtlasPacker.
+		(unpackedSprite ?: sprite)?.texture?.dispose()
 	}
 }
@@ -0,0 +1,371 @@
+/**
+ *
+ */
+package org.snowjak.city.map.tiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.snowjak.city.CityGame;
+import org.snowjak.city.service.GameAssetService;
+import org.snowjak.city.service.LoggerService;
+import org.snowjak.city.service.PreferencesService;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Blending;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker.SkylineStrategy;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FileTextureData;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.github.czyzby.autumn.annotation.Component;
+import com.github.czyzby.kiwi.log.Logger;
+import com.google.common.hash.Hashing;
+
+/**
+ * Packs the images of every loaded {@link TileSet}'s {@link Tile}s into as few
+ * texture-pages as possible, so that the map can be drawn with fewer
+ * texture-switches.
+ * <p>
+ * Each packed Tile's {@link Tile#getSprite() sprite} is replaced with a region
+ * of one of those pages. (Its original sprite is kept as
+ * {@link Tile#getUnpackedSprite() unpackedSprite}.) Tiles whose images cannot
+ * be packed keep their original sprites.
+ * </p>
+ * <p>
+ * The packed pages are cached in local storage (under
+ * {@link CityGame#LOCAL_ROOT_CACHE}), and re-used for as long as the same tile
+ * images are loaded.
+ * </p>
+ * <p>
+ * Packing may be disabled by setting the preference
+ * {@code tilesets.pack-atlas} to {@code false}.
+ * </p>
+ * <p>
+ * Anything that has kept hold of the packed pages (e.g., cached map-geometry)
+ * should {@link #addRepackListener(Runnable) listen} for re-packing, which
+ * disposes those pages.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+@Component
+public class TileAtlasPacker implements Disposable {
+	
+	private static final Logger LOG = LoggerService.forClass(TileAtlasPacker.class);
+	
+	private static final int PAGE_SIZE = 2048, PADDING = 2;
+	
+	private static final String CACHE_DIRECTORY = "tile-atlas/", INDEX_FILE_NAME = "index.txt",
+			PAGE_FILE_PREFIX = "page-", PAGE_FILE_SUFFIX = ".png";
+	
+	private final GameAssetService assetService;
+	private final PreferencesService preferencesService;
+	
+	private final List<Texture> pages = new ArrayList<>();
+	
+	private final List<Runnable> repackListeners = new ArrayList<>();
+	
+	public TileAtlasPacker(GameAssetService assetService, PreferencesService preferencesService) {
+		
+		this.assetService = assetService;
+		this.preferencesService = preferencesService;
+	}
+	
+	/**
+	 * Register a listener to be called whenever the packed pages are about to be
+	 * replaced (and disposed).
+	 * 
+	 * @param listener
+	 */
+	public void addRepackListener(Runnable listener) {
+		
+		repackListeners.add(listener);
+	}
+	
+	/**
+	 * Pack the tiles of every loaded {@link TileSet}, replacing whatever pages
+	 * were packed previously.
+	 */
+	public void packAll() {
+		
+		if (!preferencesService.get("tilesets").getBoolean("pack-atlas", true))
+			return;
+		
+		final Collection<TileSet> tileSets = assetService.getAllByType(TileSet.class);
+		
+		//
+		// Collect each tile's image-region, identified by the file it comes from
+		// and its location in that file. Tiles sharing an image-region will share
+		// a packed region, too.
+		final Map<Tile, String> tileNames = new IdentityHashMap<>();
+		final Map<String, TextureRegion> images = new LinkedHashMap<>();
+		final TreeSet<String> stamps = new TreeSet<>();
+		
+		for (TileSet tileSet : tileSets)
+			for (Tile tile : tileSet.getTiles()) {
+				
+				final TextureRegion source = getSource(tile);
+				final FileHandle file = getFile(source);
+				if (file == null) {
+					if (tile.getUnpackedSprite() != null)
+						tile.setSprite(tile.getUnpackedSprite());
+					continue;
+				}
+				
+				final String name = file.path() + "#" + source.getRegionX() + "," + source.getRegionY() + ","
+						+ source.getRegionWidth() + "," + source.getRegionHeight();
+				
+				tileNames.put(tile, name);
+				if (images.putIfAbsent(name, source) == null)
+					stamps.add(name + ":" + file.lastModified() + ":" + file.length());
+			}
+		
+		if (images.isEmpty())
+			return;
+		
+		final String key = Hashing.sha256()
+				.hashString(PAGE_SIZE + ":" + PADDING + ":" + String.join("\n", stamps), StandardCharsets.UTF_8)
+				.toString();
+		
+		//
+		// Nothing may go on drawing the old pages once they're disposed.
+		repackListeners.forEach(Runnable::run);
+		disposePages();
+		
+		Map<String, TextureRegion> packed = readCache(key);
+		if (packed == null) {
+			packed = pack(images);
+			writeCache(key, packed);
+		}
+		
+		int packedTiles = 0;
+		for (Map.Entry<Tile, String> entry : tileNames.entrySet()) {
+			final Tile tile = entry.getKey();
+			final TextureRegion region = packed.get(entry.getValue());
+			
+			if (tile.getUnpackedSprite() == null)
+				tile.setUnpackedSprite(tile.getSprite());
+			
+			if (region == null) {
+				tile.setSprite(tile.getUnpackedSprite());
+				continue;
+			}
+			
+			tile.setSprite(region);
+			packedTiles++;
+		}
+		
+		LOG.info("Packed {0} of {1} tiles into {2} texture-page(s).", packedTiles, tileNames.size(), pages.size());
+	}
+	
+	/**
+	 * @param tile
+	 * @return the Tile's original (unpacked) sprite, or {@code null} if it has no
+	 *         sprite that can be packed
+	 */
+	private static TextureRegion getSource(Tile tile) {
+		
+		final TextureRegion source = (tile.getUnpackedSprite() != null) ? tile.getUnpackedSprite() : tile.getSprite();
+		if (source == null || source.getTexture() == null)
+			return null;
+		
+		if (source.isFlipX() || source.isFlipY())
+			return null;
+		if (source instanceof AtlasRegion && ((AtlasRegion) source).rotate)
+			return null;
+		
+		return source;
+	}
+	
+	/**
+	 * @param source
+	 * @return the file backing the given region's texture, or {@code null} if it
+	 *         isn't backed by a file
+	 */
+	private static FileHandle getFile(TextureRegion source) {
+		
+		if (source == null)
+			return null;
+		
+		final TextureData data = source.getTexture().getTextureData();
+		if (!(data instanceof FileTextureData))
+			return null;
+		
+		return ((FileTextureData) data).getFileHandle();
+	}
+	
+	private Map<String, TextureRegion> pack(Map<String, TextureRegion> images) {
+		
+		final Map<String, TextureRegion> result = new LinkedHashMap<>();
+		
+		//
+		// Packing the tallest images first leaves fewer gaps.
+		final List<Map.Entry<String, TextureRegion>> entries = new ArrayList<>(images.entrySet());
+		entries.sort((e1, e2) -> Integer.compare(e2.getValue().getRegionHeight(), e1.getValue().getRegionHeight()));
+		
+		final PixmapPacker packer = new PixmapPacker(PAGE_SIZE, PAGE_SIZE, Format.RGBA8888, PADDING, false,
+				new SkylineStrategy());
+		final Map<Texture, Pixmap> sources = new IdentityHashMap<>();
+		
+		try {
+			for (Map.Entry<String, TextureRegion> entry : entries) {
+				final TextureRegion source = entry.getValue();
+				
+				try {
+					Pixmap sourcePixmap = sources.get(source.getTexture());
+					if (sourcePixmap == null) {
+						sourcePixmap = new Pixmap(getFile(source));
+						sources.put(source.getTexture(), sourcePixmap);
+					}
+					
+					final Pixmap image = new Pixmap(source.getRegionWidth(), source.getRegionHeight(), Format.RGBA8888);
+					try {
+						image.setBlending(Blending.None);
+						image.drawPixmap(sourcePixmap, 0, 0, source.getRegionX(), source.getRegionY(),
+								source.getRegionWidth(), source.getRegionHeight());
+						packer.pack(entry.getKey(), image);
+					} finally {
+						image.dispose();
+					}
+					
+				} catch (Throwable t) {
+					LOG.error(t, "Cannot pack tile-image [{0}] -- leaving it unpacked.", entry.getKey());
+				}
+			}
+			
+			final Array<PixmapPacker.Page> packerPages = packer.getPages();
+			for (PixmapPacker.Page page : packerPages)
+				pages.add(new Texture(page.getPixmap()));
+			
+			for (Map.Entry<String, TextureRegion> entry : entries) {
+				final Rectangle rect = packer.getRect(entry.getKey());
+				if (rect == null)
+					continue;
+				
+				result.put(entry.getKey(), new TextureRegion(pages.get(packer.getPageIndex(entry.getKey())),
+						(int) rect.x, (int) rect.y, (int) rect.width, (int) rect.height));
+			}
+			
+			writePages(packerPages);
+			
+		} finally {
+			sources.values().forEach(Pixmap::dispose);
+			packer.dispose();
+		}
+		
+		return result;
+	}
+	
+	private static FileHandle getCacheDirectory() {
+		
+		return (Gdx.files == null) ? null : Gdx.files.local(CityGame.LOCAL_ROOT_CACHE + CACHE_DIRECTORY);
+	}
+	
+	/**
+	 * Load the cached pages, if they were packed under the given key.
+	 *
+	 * @param key
+	 * @return the cached regions, or {@code null} if the cache is missing, stale,
+	 *         or unreadable
+	 */
+	private Map<String, TextureRegion> readCache(String key) {
+		
+		final FileHandle directory = getCacheDirectory();
+		if (directory == null || !directory.child(INDEX_FILE_NAME).exists())
+			return null;
+		
+		try {
+			final String[] lines = directory.child(INDEX_FILE_NAME).readString("UTF-8").split("\n");
+			if (lines.length < 2 || !lines[0].equals("key=" + key) || !lines[1].startsWith("pages="))
+				return null;
+			
+			final int pageCount = Integer.parseInt(lines[1].substring("pages=".length()));
+			for (int i = 0; i < pageCount; i++)
+				pages.add(new Texture(directory.child(PAGE_FILE_PREFIX + i + PAGE_FILE_SUFFIX)));
+			
+			final Map<String, TextureRegion> result = new LinkedHashMap<>();
+			for (int i = 2; i < lines.length; i++) {
+				final int split = lines[i].lastIndexOf('=');
+				if (split < 0)
+					continue;
+				
+				final String[] values = lines[i].substring(split + 1).split(",");
+				result.put(lines[i].substring(0, split),
+						new TextureRegion(pages.get(Integer.parseInt(values[0])), Integer.parseInt(values[1]),
+								Integer.parseInt(values[2]), Integer.parseInt(values[3]), Integer.parseInt(values[4])));
+			}
+			
+			return result;
+			
+		} catch (Throwable t) {
+			LOG.error(t, "Cannot read packed tile-atlas cache -- re-packing.");
+			disposePages();
+			return null;
+		}
+	}
+	
+	private void writePages(Array<PixmapPacker.Page> packerPages) {
+		
+		final FileHandle directory = getCacheDirectory();
+		if (directory == null)
+			return;
+		
+		try {
+			directory.deleteDirectory();
+			for (int i = 0; i < packerPages.size; i++)
+				PixmapIO.writePNG(directory.child(PAGE_FILE_PREFIX + i + PAGE_FILE_SUFFIX),
+						packerPages.get(i).getPixmap());
+		} catch (Throwable t) {
+			LOG.error(t, "Cannot write packed tile-atlas pages.");
+		}
+	}
+	
+	private void writeCache(String key, Map<String, TextureRegion> packed) {
+		
+		final FileHandle directory = getCacheDirectory();
+		if (directory == null)
+			return;
+		
+		try {
+			final StringBuilder index = new StringBuilder();
+			index.append("key=").append(key).append('\n');
+			index.append("pages=").append(pages.size()).append('\n');
+			packed.forEach((name, region) -> index.append(name).append('=').append(pages.indexOf(region.getTexture()))
+					.append(',').append(region.getRegionX()).append(',').append(region.getRegionY()).append(',')
+					.append(region.getRegionWidth()).append(',').append(region.getRegionHeight()).append('\n'));
+			
+			directory.child(INDEX_FILE_NAME).writeString(index.toString(), false, "UTF-8");
+		} catch (Throwable t) {
+			LOG.error(t, "Cannot write packed tile-atlas index.");
+		}
+	}
+	
+	private void disposePages() {
+		
+		pages.forEach(Texture::dispose);
+		pages.clear();
+	}
+	
+	@Override
+	public void dispose() {
+		
+		disposePages();
+	}
+}
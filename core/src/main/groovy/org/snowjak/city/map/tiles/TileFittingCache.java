@@ -0,0 +1,230 @@
+/**
+ *
+ */
+package org.snowjak.city.map.tiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import groovy.util.Expando;
+
+/**
+ * Remembers which tiles fit which cells, so that cells sharing the same
+ * relative corner-heights and characteristics needn't be fitted again.
+ * <p>
+ * Entries are keyed by the cell's normalized height-signature (see
+ * {@link TileSetIndex}) plus its characteristics, sorted by name. Where the
+ * index cannot vouch that fitting depends only on relative heights, the cell's
+ * absolute corner-heights are used instead. Cells whose characteristics
+ * include anything other than strings, numbers, booleans, enums, or lists/sets
+ * of those, are not cached at all.
+ * </p>
+ * <p>
+ * Only the most recently-used {@link #getCapacity() capacity} entries are
+ * kept. A cache belongs to a single {@link TileSetIndex}; when a tile-set is
+ * re-indexed or reloaded, it gets a new cache.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class TileFittingCache {
+	
+	public static final int DEFAULT_CAPACITY = 4096;
+	
+	private final TileSetIndex index;
+	private final int capacity;
+	
+	private final Map<List<Object>, List<Tile>> entries;
+	
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), uncacheable = new AtomicLong(),
+			evictions = new AtomicLong();
+	
+	public TileFittingCache(TileSetIndex index) {
+		
+		this(index, DEFAULT_CAPACITY);
+	}
+	
+	public TileFittingCache(TileSetIndex index, int capacity) {
+		
+		this.index = index;
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<List<Object>, List<Tile>>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 4327315432207622337L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, List<Tile>> eldest) {
+				
+				if (size() <= TileFittingCache.this.capacity)
+					return false;
+				
+				evictions.incrementAndGet();
+				return true;
+			}
+		};
+	}
+	
+	/**
+	 * Get every tile that fits the given constraints, as
+	 * {@link TileSetIndex#getAcceptable(int[][], Expando)} would.
+	 *
+	 * @param heights
+	 * @param ext
+	 * @return an unmodifiable list
+	 */
+	public List<Tile> getAcceptable(int[][] heights, Expando ext) {
+		
+		final boolean translationInvariant = index.isTranslationInvariant();
+		
+		final List<Object> key = getKey(heights, ext, translationInvariant);
+		if (key == null) {
+			uncacheable.incrementAndGet();
+			return Collections.unmodifiableList(index.getAcceptable(heights, ext));
+		}
+		
+		synchronized (entries) {
+			final List<Tile> cached = entries.get(key);
+			if (cached != null) {
+				hits.incrementAndGet();
+				return cached;
+			}
+		}
+		
+		misses.incrementAndGet();
+		final List<Tile> result = Collections.unmodifiableList(index.getAcceptable(heights, ext));
+		
+		//
+		// If the index stopped being translation-invariant while we were fitting
+		// this cell, this key may be too broad.
+		if (translationInvariant && !index.isTranslationInvariant())
+			return result;
+		
+		synchronized (entries) {
+			entries.put(key, result);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the cache-key for the given cell, or {@code null} if the cell
+	 *         cannot be cached
+	 */
+	private static List<Object> getKey(int[][] heights, Expando ext, boolean translationInvariant) {
+		
+		@SuppressWarnings("unchecked")
+		final Map<Object, Object> properties = ext.getProperties();
+		final TreeMap<String, Object> sorted = new TreeMap<>();
+		for (Map.Entry<Object, Object> property : properties.entrySet())
+			//
+			// An absent property reads the same as a null one.
+			if (property.getValue() != null)
+				sorted.put(String.valueOf(property.getKey()), property.getValue());
+		
+		final List<Object> key = new ArrayList<>(1 + sorted.size() * 2);
+		
+		final int signature = TileSetIndex.getSignature(heights);
+		if (translationInvariant && signature >= 0)
+			key.add(signature);
+		else
+			key.add(Arrays.asList(heights[0][0], heights[0][1], heights[1][0], heights[1][1]));
+		
+		for (Map.Entry<String, Object> property : sorted.entrySet()) {
+			final Object value = TileSetIndex.toMemoKey(property.getValue());
+			if (value == null)
+				return null;
+			
+			key.add(property.getKey());
+			key.add(value);
+		}
+		
+		return key;
+	}
+	
+	/**
+	 * Discard all entries. Statistics are retained.
+	 */
+	public void clear() {
+		
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+	
+	public TileSetIndex getIndex() {
+		
+		return index;
+	}
+	
+	public int getCapacity() {
+		
+		return capacity;
+	}
+	
+	/**
+	 * @return entries currently cached
+	 */
+	public int getSize() {
+		
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	/**
+	 * @return lookups answered from the cache
+	 */
+	public long getHits() {
+		
+		return hits.get();
+	}
+	
+	/**
+	 * @return lookups that had to be fitted, and were then cached
+	 */
+	public long getMisses() {
+		
+		return misses.get();
+	}
+	
+	/**
+	 * @return lookups that could not be cached at all
+	 */
+	public long getUncacheable() {
+		
+		return uncacheable.get();
+	}
+	
+	/**
+	 * @return entries discarded to make room for newer ones
+	 */
+	public long getEvictions() {
+		
+		return evictions.get();
+	}
+	
+	/**
+	 * @return the fraction of all lookups answered from the cache, or 0 if there
+	 *         have been no lookups
+	 */
+	public double getHitRate() {
+		
+		final long hits = getHits(), total = hits + getMisses() + getUncacheable();
+		return (total == 0) ? 0 : (double) hits / (double) total;
+	}
+	
+	@Override
+	public String toString() {
+		
+		return String.format(
+				"TileFittingCache [size=%d/%d, hits=%d, misses=%d, uncacheable=%d, evictions=%d, hit-rate=%.1f%%]",
+				getSize(), capacity, getHits(), getMisses(), getUncacheable(), getEvictions(), getHitRate() * 100d);
+	}
+}
@@ -3,42 +3,117 @@
  */
 package org.snowjak.city.map.tiles
 
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.function.Supplier
+
 import org.snowjak.city.map.tiles.support.TileSupport
 
 /**
+ * A single rule governing where a {@link Tile} may be placed.
+ * <p>
+ * A rule's {@link #spec} is evaluated against a {@link TileSupport} delegate. Each evaluation borrows its own
+ * delegate (and its own copy of the spec, bound to that delegate) from this rule's pool, so rules may be evaluated
+ * concurrently without locking. The pool belongs to this rule alone, so nothing outlives it (as it would in a
+ * {@link ThreadLocal} on a long-lived worker thread).
+ * </p>
+ * 
  * @author snowjak88
  *
  */
 class TileRule<S extends TileSupport> {
 	
-	Closure spec
-	S support
+	final Closure spec
+	private final Map<String,Closure> helpers
+	private final Supplier<S> supportFactory
+	
+	/**
+	 * Bound copies of {@link #spec} not currently in use.
+	 */
+	private final Queue<BoundSpec<S>> boundSpecs = new ConcurrentLinkedQueue<>()
 	
-	public TileRule(Closure spec, Map<String,Closure> helpers, S support) {
+	/**
+	 * 
+	 * @param spec
+	 * @param helpers
+	 *            named rule-helpers, made available to {@code spec}
+	 * @param supportFactory
+	 *            creates a fresh {@link TileSupport} delegate (one per concurrent evaluation)
+	 */
+	public TileRule(Closure spec, Map<String,Closure> helpers, Supplier<S> supportFactory) {
 		
-		this.spec = spec.rehydrate(support, this, this)
-		this.spec.resolveStrategy = Closure.DELEGATE_FIRST
+		this.spec = spec
+		this.helpers = new HashMap<>(helpers)
+		this.supportFactory = supportFactory
+	}
+	
+	/**
+	 * For rules that evaluate themselves without any {@link #spec} (see {@link CompiledTileRule}).
+	 */
+	protected TileRule() {
 		
-		this.support = support
-		helpers.each { name, helper ->
-			helper = helper.rehydrate(this.support, this.spec, this.spec)
-			this.support.metaClass."$name" = helper
-		}
+		this.spec = null
+		this.helpers = [:]
+		this.supportFactory = null
 	}
 	
 	/**
-	 * Does this rule fit 
-	 * @param m
-	 * @param cx
-	 * @param cy
+	 * Does this rule fit the given cell?
+	 * <p>
+	 * May be called from any thread, and re-entrantly.
+	 * </p>
+	 * 
+	 * @param heights
+	 * @param ext
 	 * @return
 	 */
 	public boolean isAcceptable(int[][] heights, Expando ext) {
-		synchronized(this) {
-			support.localHeight = heights
-			support.ext = ext
+		
+		BoundSpec<S> bound = boundSpecs.poll()
+		if(bound == null)
+			bound = bind()
+		
+		bound.support.localHeight = heights
+		bound.support.ext = ext
+		try {
+			return bound.spec()
+		} finally {
+			bound.support.localHeight = null
+			bound.support.ext = null
+			boundSpecs.offer bound
+		}
+	}
+	
+	/**
+	 * Bind a copy of {@link #spec} (and its helpers) to a new {@link TileSupport} delegate.
+	 * 
+	 * @return
+	 */
+	private BoundSpec<S> bind() {
+		
+		final S support = supportFactory.get()
+		
+		final Closure boundSpec = spec.rehydrate(support, this, this)
+		boundSpec.resolveStrategy = Closure.DELEGATE_FIRST
+		
+		helpers.each { name, helper ->
+			support.metaClass."$name" = helper.rehydrate(support, boundSpec, boundSpec)
+		}
+		
+		new BoundSpec<S>(support, boundSpec)
+	}
+	
+	/**
+	 * A single copy of {@link TileRule#spec}, with its delegate.
+	 */
+	private static class BoundSpec<S extends TileSupport> {
+		
+		final S support
+		final Closure spec
+		
+		BoundSpec(S support, Closure spec) {
 			
-			spec()
+			this.support = support
+			this.spec = spec
 		}
 	}
 }
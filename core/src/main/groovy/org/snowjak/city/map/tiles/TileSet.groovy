@@ -81,18 +81,13 @@ class TileSet extends ScriptedResource implements Disposable {
 	 * {@code ext} is an {@link Expando} giving the "characteristics" that the returned Tile(s) must fit within.
 	 * </p>
 	 * <p>
-	 * The default implementation inspects every tile in {@link #tiles}. Every tile that fits these criteria
-	 * (i.e., {@link Tile#isAcceptable(int,Expando) isAcceptable()}) is added to a list-of-results. Finally, we select 1 Tile
-	 * from that list-of-results at random.
+	 * The default implementation asks this tile-set's {@link #getFittingCache() fitting-cache} for every tile that fits
+	 * these criteria (i.e., {@link Tile#isAcceptable(int,Expando) isAcceptable()}), in the same order as {@link #tiles}.
+	 * Finally, we select 1 Tile from that list-of-results at random.
 	 * </p>
 	 * <pre>
 	 * { int[][] heights, Expando ext ->
-	 *     final result = []
-	 *     for (Tile tile : tiles) {
-	 *         if (!tile.isAcceptable(heights, ext))
-	 *             continue
-	 *         result << tile
-	 *     }
+	 *     final result = getFittingCache().getAcceptable(heights, ext)
 	 *     if(result.isEmpty())
 	 *         return null
 	 *     [ result[GameState.RND.nextInt(result.size())] ]
@@ -100,20 +95,12 @@ class TileSet extends ScriptedResource implements Disposable {
 	 * </pre>
 	 */
 	Closure tileMatcher = { int[][] heights, Expando ext ->
-		final result = []
 		
 		//
-		// Consider each tile in order.
+		// The fitting-cache gives us every tile whose rules allow it to fit here,
+		// in order. Only the final pick is made per cell.
 		//
-		for (Tile tile : tiles) {
-			
-			//
-			// If the tile's rules don't allow it to fit here -- skip it.
-			if (!tile.isAcceptable(heights, ext))
-				continue
-			
-			result << tile
-		}
+		final result = getFittingCache().getAcceptable(heights, ext)
 		
 		if(result.isEmpty())
 			return null
@@ -123,6 +110,43 @@ class TileSet extends ScriptedResource implements Disposable {
 		]
 	}
 	
+	private volatile TileFittingCache fittingCache
+	
+	/**
+	 * Get the {@link TileSetIndex} over this tile-set's {@link #tiles}, (re-)building it if necessary.
+	 * 
+	 * @return
+	 */
+	public TileSetIndex getIndex() {
+		getFittingCache().index
+	}
+	
+	/**
+	 * Get the {@link TileFittingCache} over this tile-set's {@link #getIndex() index}, (re-)building it if necessary.
+	 * Its statistics describe how often tile-fitting has been answered from the cache.
+	 * 
+	 * @return
+	 */
+	public TileFittingCache getFittingCache() {
+		final cache = fittingCache
+		if(cache != null && cache.index.tiles.size() == tiles.size())
+			return cache
+		
+		synchronized(this) {
+			if(fittingCache == null || fittingCache.index.tiles.size() != tiles.size())
+				buildIndex()
+			return fittingCache
+		}
+	}
+	
+	/**
+	 * (Re-)build this tile-set's {@link TileSetIndex} (and discard its {@link TileFittingCache}). Should be called once
+	 * all {@link #tiles} are defined.
+	 */
+	public synchronized void buildIndex() {
+		fittingCache = new TileFittingCache(new TileSetIndex(tiles))
+	}
+	
 	/**
 	 * A {@link Validator} configured for TileSetDsl instances
 	 */
@@ -292,6 +316,7 @@ class TileSet extends ScriptedResource implements Disposable {
 	@Override
 	public void dispose() {
 		
+		fittingCache?.clear()
 		tiles.each { it.dispose() }
 	}
 }
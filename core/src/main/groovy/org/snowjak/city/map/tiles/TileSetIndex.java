@@ -0,0 +1,454 @@
+/**
+ *
+ */
+package org.snowjak.city.map.tiles;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.snowjak.city.map.tiles.support.TileSupport;
+
+import groovy.util.Expando;
+
+/**
+ * Narrows down which of a {@link TileSet}'s {@link Tile}s could possibly fit a
+ * cell, so that only those few tiles need run their {@link TileRule}s.
+ * <p>
+ * When the index is built, each tile's rules are probed, to classify them as:
+ * <ul>
+ * <li><em>height-rules</em> -- which inspect only the cell's corner-heights
+ * (and only relative to each other). These are evaluated up-front for every
+ * normalized height-signature (corner-heights minus the lowest
+ * corner-height), and tiles are bucketed by the signatures they accept.</li>
+ * <li><em>key-rules</em> -- which inspect only a single {@code ext} key. Tiles
+ * are bucketed by the values of that key they accept, as those values are
+ * encountered.</li>
+ * <li><em>remaining rules</em> -- everything else, evaluated for each
+ * candidate as usual.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Key-rules are re-checked every time they're evaluated for a new value. Should
+ * a key-rule ever inspect the cell's heights, or any other {@code ext} key, it
+ * is demoted to a remaining rule.
+ * </p>
+ *
+ * @author snowjak88
+ *
+ */
+public class TileSetIndex {
+	
+	/**
+	 * Height-signatures are only indexed for cells whose corners lie within this
+	 * many units of each other. Any other cell is checked against every tile's
+	 * height-rules as usual.
+	 */
+	public static final int MAX_RELIEF = 3;
+	
+	/**
+	 * Height-rules are probed at each of these base-altitudes, to make sure they
+	 * depend only on relative corner-heights.
+	 */
+	private static final int[] PROBE_ALTITUDES = { 0, 1, -2, 7, 40 };
+	
+	/**
+	 * At most this many distinct values are remembered for any one {@code ext}
+	 * key.
+	 */
+	private static final int MAX_VALUES_PER_KEY = 1024;
+	
+	private static final int SIGNATURE_BASE = MAX_RELIEF + 1;
+	private static final int SIGNATURES = SIGNATURE_BASE * SIGNATURE_BASE * SIGNATURE_BASE * SIGNATURE_BASE;
+	
+	/**
+	 * Stands in for {@code null} values in a {@link ConcurrentHashMap}.
+	 */
+	private static final Object NULL = new Object();
+	
+	private final List<Tile> tiles;
+	private final IndexedTile[] indexedTiles;
+	
+	/**
+	 * Per height-signature, the tiles whose height-rules all accept it.
+	 */
+	private final BitSet[] bySignature = new BitSet[SIGNATURES];
+	private final BitSet allTiles;
+	
+	/**
+	 * Per {@code ext} key, the key-rules that inspect it.
+	 */
+	private final KeyBucket[] keyBuckets;
+	
+	/**
+	 * Does any tile have rules that aren't height- or key-rules (including
+	 * demoted key-rules)?
+	 */
+	private volatile boolean hasRemainingRules = false;
+	
+	/**
+	 * Build an index over the given tiles.
+	 *
+	 * @param tiles
+	 */
+	public TileSetIndex(Collection<Tile> tiles) {
+		
+		this.tiles = Collections.unmodifiableList(new ArrayList<>(tiles));
+		this.indexedTiles = new IndexedTile[this.tiles.size()];
+		this.allTiles = new BitSet(this.tiles.size());
+		this.allTiles.set(0, this.tiles.size());
+		
+		for (int i = 0; i < SIGNATURES; i++)
+			bySignature[i] = new BitSet(this.tiles.size());
+		
+		final Map<String, KeyBucket> keyBuckets = new LinkedHashMap<>();
+		final int[][] heights = new int[2][2];
+		
+		for (int t = 0; t < this.tiles.size(); t++) {
+			final IndexedTile indexed = new IndexedTile();
+			indexedTiles[t] = indexed;
+			
+			final BitSet acceptedSignatures = new BitSet(SIGNATURES);
+			acceptedSignatures.set(0, SIGNATURES);
+			
+			for (TileRule<TileSupport> rule : this.tiles.get(t).getRules()) {
+				
+				final String key = probeKeyRule(rule);
+				if (key != null) {
+					final IndexedRule indexedRule = new IndexedRule(t, rule, key);
+					indexed.keyRules.add(indexedRule);
+					keyBuckets.computeIfAbsent(key, KeyBucket::new).rules.add(indexedRule);
+					continue;
+				}
+				
+				final BitSet ruleSignatures = probeHeightRule(rule, heights);
+				if (ruleSignatures != null) {
+					indexed.heightRules.add(rule);
+					acceptedSignatures.and(ruleSignatures);
+					continue;
+				}
+				
+				indexed.remainingRules.add(rule);
+				hasRemainingRules = true;
+			}
+			
+			for (int s = acceptedSignatures.nextSetBit(0); s >= 0; s = acceptedSignatures.nextSetBit(s + 1))
+				bySignature[s].set(t);
+		}
+		
+		this.keyBuckets = keyBuckets.values().toArray(new KeyBucket[0]);
+	}
+	
+	/**
+	 * @return the indexed tiles, in order
+	 */
+	public List<Tile> getTiles() {
+		
+		return tiles;
+	}
+	
+	/**
+	 * Does every tile's fit depend only on the cell's <em>relative</em>
+	 * corner-heights -- i.e., would every tile fit the same if the cell were
+	 * raised or lowered as a whole?
+	 * <p>
+	 * This is only known for cells whose relief is within {@link #MAX_RELIEF},
+	 * and only while every tile's rules are height- or key-rules. This may change
+	 * from {@code true} to {@code false} as key-rules are demoted.
+	 * </p>
+	 *
+	 * @return
+	 */
+	public boolean isTranslationInvariant() {
+		
+		return !hasRemainingRules;
+	}
+	
+	/**
+	 * Get every tile that fits the given constraints -- i.e., every tile that
+	 * {@link Tile#isAcceptable(int[][], Expando) isAcceptable()} -- in the same
+	 * order as {@link #getTiles()}.
+	 *
+	 * @param heights
+	 * @param ext
+	 * @return
+	 */
+	public List<Tile> getAcceptable(int[][] heights, Expando ext) {
+		
+		final int signature = getSignature(heights);
+		final BitSet candidates = (BitSet) ((signature < 0) ? allTiles : bySignature[signature]).clone();
+		
+		for (int i = 0; i < keyBuckets.length && !candidates.isEmpty(); i++)
+			candidates.and(keyBuckets[i].getAccepted(ext));
+		
+		final List<Tile> result = new ArrayList<>(candidates.cardinality());
+		for (int t = candidates.nextSetBit(0); t >= 0; t = candidates.nextSetBit(t + 1))
+			if (indexedTiles[t].isAcceptable(heights, ext, signature < 0))
+				result.add(tiles.get(t));
+		
+		return result;
+	}
+	
+	/**
+	 * @param heights
+	 * @return the normalized height-signature of the given corner-heights, or
+	 *         {@code -1} if their relief exceeds {@link #MAX_RELIEF}
+	 */
+	static int getSignature(int[][] heights) {
+		
+		final int min = Math.min(Math.min(heights[0][0], heights[0][1]), Math.min(heights[1][0], heights[1][1]));
+		final int max = Math.max(Math.max(heights[0][0], heights[0][1]), Math.max(heights[1][0], heights[1][1]));
+		if (max - min > MAX_RELIEF)
+			return -1;
+		
+		return (heights[0][0] - min) + SIGNATURE_BASE * ((heights[0][1] - min)
+				+ SIGNATURE_BASE * ((heights[1][0] - min) + SIGNATURE_BASE * (heights[1][1] - min)));
+	}
+	
+	/**
+	 * @return {@code true} if the given height-signature is normalized (i.e., its
+	 *         lowest corner-height is 0)
+	 */
+	private static boolean setHeights(int signature, int baseAltitude, int[][] heights) {
+		
+		heights[0][0] = signature % SIGNATURE_BASE;
+		heights[0][1] = (signature / SIGNATURE_BASE) % SIGNATURE_BASE;
+		heights[1][0] = (signature / (SIGNATURE_BASE * SIGNATURE_BASE)) % SIGNATURE_BASE;
+		heights[1][1] = signature / (SIGNATURE_BASE * SIGNATURE_BASE * SIGNATURE_BASE);
+		
+		final boolean normalized = heights[0][0] == 0 || heights[0][1] == 0 || heights[1][0] == 0
+				|| heights[1][1] == 0;
+		
+		heights[0][0] += baseAltitude;
+		heights[0][1] += baseAltitude;
+		heights[1][0] += baseAltitude;
+		heights[1][1] += baseAltitude;
+		
+		return normalized;
+	}
+	
+	/**
+	 * Probe the given rule without any heights and with an empty {@code ext}.
+	 *
+	 * @return the single {@code ext} key the rule inspected, or {@code null} if
+	 *         it isn't a key-rule
+	 */
+	private static String probeKeyRule(TileRule<TileSupport> rule) {
+		
+		final RecordingExpando ext = new RecordingExpando(new Expando());
+		try {
+			rule.isAcceptable(null, ext);
+		} catch (RuntimeException e) {
+			return null;
+		}
+		
+		return (ext.keys.size() == 1) ? ext.keys.iterator().next() : null;
+	}
+	
+	/**
+	 * Probe the given rule with every normalized height-signature, at each of
+	 * {@link #PROBE_ALTITUDES}, and with an empty {@code ext}.
+	 *
+	 * @return the height-signatures the rule accepts, or {@code null} if it isn't
+	 *         a height-rule
+	 */
+	private static BitSet probeHeightRule(TileRule<TileSupport> rule, int[][] heights) {
+		
+		final BitSet accepted = new BitSet(SIGNATURES);
+		final RecordingExpando ext = new RecordingExpando(new Expando());
+		
+		try {
+			for (int s = 0; s < SIGNATURES; s++) {
+				if (!setHeights(s, PROBE_ALTITUDES[0], heights))
+					continue;
+				
+				final boolean acceptable = rule.isAcceptable(heights, ext);
+				
+				for (int a = 1; a < PROBE_ALTITUDES.length; a++) {
+					setHeights(s, PROBE_ALTITUDES[a], heights);
+					if (rule.isAcceptable(heights, ext) != acceptable)
+						return null;
+				}
+				
+				if (acceptable)
+					accepted.set(s);
+			}
+		} catch (RuntimeException e) {
+			return null;
+		}
+		
+		return ext.keys.isEmpty() ? accepted : null;
+	}
+	
+	/**
+	 * @param value
+	 * @return a copy of the given {@code ext} value, fit for use as a map-key, or
+	 *         {@code null} if the value cannot be so used
+	 */
+	static Object toMemoKey(Object value) {
+		
+		if (value == null)
+			return NULL;
+		if (isImmutable(value))
+			return value;
+		
+		if (value instanceof List || value instanceof Set) {
+			for (Object element : (Collection<?>) value)
+				if (element != null && !isImmutable(element))
+					return null;
+			
+			return (value instanceof List) ? new ArrayList<>((List<?>) value) : new HashSet<>((Set<?>) value);
+		}
+		
+		return null;
+	}
+	
+	private static boolean isImmutable(Object value) {
+		
+		return value instanceof String || value instanceof Boolean || value instanceof Character
+				|| value instanceof Enum || value instanceof Integer || value instanceof Long
+				|| value instanceof Short || value instanceof Byte || value instanceof Float
+				|| value instanceof Double;
+	}
+	
+	/**
+	 * A single tile's rules, as classified by this index.
+	 */
+	private static class IndexedTile {
+		
+		final List<TileRule<TileSupport>> heightRules = new ArrayList<>(), remainingRules = new ArrayList<>();
+		final List<IndexedRule> keyRules = new ArrayList<>();
+		
+		/**
+		 * Evaluate those rules that this tile's buckets didn't already account for.
+		 */
+		boolean isAcceptable(int[][] heights, Expando ext, boolean checkHeightRules) {
+			
+			if (checkHeightRules)
+				for (int i = 0; i < heightRules.size(); i++)
+					if (!heightRules.get(i).isAcceptable(heights, ext))
+						return false;
+			
+			for (int i = 0; i < keyRules.size(); i++) {
+				final IndexedRule rule = keyRules.get(i);
+				if (rule.demoted && !rule.rule.isAcceptable(heights, ext))
+					return false;
+			}
+			
+			for (int i = 0; i < remainingRules.size(); i++)
+				if (!remainingRules.get(i).isAcceptable(heights, ext))
+					return false;
+			
+			return true;
+		}
+	}
+	
+	/**
+	 * A key-rule belonging to a single tile.
+	 */
+	private class IndexedRule {
+		
+		final int tile;
+		final TileRule<TileSupport> rule;
+		final String key;
+		
+		volatile boolean demoted = false;
+		
+		IndexedRule(int tile, TileRule<TileSupport> rule, String key) {
+			
+			this.tile = tile;
+			this.rule = rule;
+			this.key = key;
+		}
+		
+		/**
+		 * Evaluate this rule, making sure it still inspects only its key. If not,
+		 * this rule is demoted, and is assumed to pass (for now).
+		 */
+		boolean evaluate(Expando ext) {
+			
+			if (demoted)
+				return true;
+			
+			final RecordingExpando recording = new RecordingExpando(ext);
+			try {
+				final boolean acceptable = rule.isAcceptable(null, recording);
+				if (recording.keys.size() == 1 && recording.keys.contains(key))
+					return acceptable;
+			} catch (RuntimeException e) {
+				//
+				// Presumably, this rule inspected the cell's heights after all.
+			}
+			
+			demoted = true;
+			hasRemainingRules = true;
+			return true;
+		}
+	}
+	
+	/**
+	 * Every key-rule inspecting a single {@code ext} key, and -- per value of that
+	 * key -- which tiles those rules accept.
+	 */
+	private class KeyBucket {
+		
+		final String key;
+		final List<IndexedRule> rules = new ArrayList<>();
+		final Map<Object, BitSet> accepted = new ConcurrentHashMap<>();
+		
+		KeyBucket(String key) {
+			
+			this.key = key;
+		}
+		
+		BitSet getAccepted(Expando ext) {
+			
+			final Object memoKey = toMemoKey(ext.getProperty(key));
+			
+			BitSet result = (memoKey == null) ? null : accepted.get(memoKey);
+			if (result != null)
+				return result;
+			
+			result = (BitSet) allTiles.clone();
+			for (int i = 0; i < rules.size(); i++) {
+				final IndexedRule rule = rules.get(i);
+				if (!rule.evaluate(ext))
+					result.clear(rule.tile);
+			}
+			
+			if (memoKey != null && accepted.size() < MAX_VALUES_PER_KEY)
+				accepted.putIfAbsent(memoKey, result);
+			
+			return result;
+		}
+	}
+	
+	/**
+	 * An {@link Expando} that remembers which of its properties were read.
+	 */
+	private static class RecordingExpando extends Expando {
+		
+		final Expando delegate;
+		final Set<String> keys = new LinkedHashSet<>();
+		
+		RecordingExpando(Expando delegate) {
+			
+			this.delegate = delegate;
+		}
+		
+		@Override
+		public Object getProperty(String property) {
+			
+			keys.add(property);
+			return delegate.getProperty(property);
+		}
+	}
+}
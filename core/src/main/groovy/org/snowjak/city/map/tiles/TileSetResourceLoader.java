@@ -72,6 +72,12 @@ public class TileSetResourceLoader extends ScriptedResourceLoader<TileSet, TileS
 				
 			}
 		
+		//
+		// Index the tile-set's tiles now, rather than on the first tile-fitting
+		// request.
+		//
+		if (!isDependencyMode)
+			resource.buildIndex();
 	}
 	
 	@Override
@@ -8,6 +8,8 @@ import java.util.function.Consumer
 import org.snowjak.city.CityGame
 import org.snowjak.city.GameState
 import org.snowjak.city.ecs.GatheringEntityListener
+import org.snowjak.city.ecs.systems.CellJobPipeline
+import org.snowjak.city.ecs.systems.CellJobSubmittingSystem
 import org.snowjak.city.map.renderer.MapMode
 import org.snowjak.city.map.renderer.hooks.AbstractRenderingHook
 import org.snowjak.city.map.renderer.hooks.DelegatingRenderingHook
@@ -554,6 +556,98 @@ class ''' + legalID + ''' extends org.snowjak.city.ecs.systems.BulkSystem {
 		systems << ["$id" : system]
 	}
 	
+	/**
+	 * Create a new {@link CellJobPipeline}, which runs per-cell jobs in batches (one batch per map-chunk) on
+	 * {@link CityGame#WORKERS}, and applies their results on the main thread.
+	 * <p>
+	 * Jobs are submitted via {@link CellJobPipeline#submit(int,int,Callable,Consumer) submit()}, which returns
+	 * {@code false} when the pipeline's backlog is full -- in which case you should try again on a later frame.
+	 * </p>
+	 * 
+	 * @param id
+	 * @param maxBacklog
+	 *            refuse new jobs while this many cells are waiting
+	 * @param applyBudget
+	 *            time to spend applying results every frame, in seconds
+	 * @return the new pipeline
+	 */
+	public CellJobPipeline cellJobPipeline(String id, int maxBacklog = CellJobPipeline.DEFAULT_MAX_BACKLOG,
+			float applyBudget = CellJobPipeline.DEFAULT_APPLY_BUDGET) {
+		
+		final Consumer<Throwable> exceptionReporter = { Throwable t ->
+			state.moduleExceptionRegistry.reportFailure(this, FailureDomain.ENTITY_SYSTEM, t)
+		} as Consumer
+		
+		if(isDependencyCheckingMode())
+			return new CellJobPipeline(maxBacklog, applyBudget, exceptionReporter)
+		
+		final legalID = legalizeID(id)
+		final systemClassDefinition = '''
+class ''' + legalID + ''' extends org.snowjak.city.ecs.systems.CellJobPipeline {
+	public ''' + legalID + '''(int maxBacklog, float applyBudget, java.util.function.Consumer<Throwable> exceptionReporter) {
+		super(maxBacklog, applyBudget, exceptionReporter);
+	}
+}'''
+		final systemClass = shell.classLoader.parseClass(systemClassDefinition)
+		final system = systemClass.newInstance(maxBacklog, applyBudget, exceptionReporter)
+		
+		systems << ["$id" : system]
+		
+		system
+	}
+	
+	/**
+	 * Create a new {@link CellJobSubmittingSystem}, which submits jobs to the given {@link CellJobPipeline}.
+	 * <p>
+	 * This works like {@link #iteratingSystem(String,Family,Closure) iteratingSystem}, except that it stops
+	 * processing Entities as soon as {@code pipeline} is saturated -- and processes none at all while it stays so.
+	 * </p>
+	 * <p>
+	 * {@code implementation} is expected to be of the form:
+	 * <pre>
+	 * { Entity entity, float deltaTime -> ... }
+	 * </pre>
+	 * </p>
+	 * 
+	 * @param id
+	 * @param pipeline
+	 * @param family
+	 * @param implementation
+	 */
+	public void cellJobSubmittingSystem(String id, CellJobPipeline pipeline, Family family, Closure implementation) {
+		
+		if(isDependencyCheckingMode())
+			return
+		
+		final legalID = legalizeID(id)
+		final systemClassDefinition = '''
+class ''' + legalID + ''' extends org.snowjak.city.ecs.systems.CellJobSubmittingSystem {
+	final Closure implementation, exceptionReporter
+	public ''' + legalID + '''(org.snowjak.city.ecs.systems.CellJobPipeline pipeline, Family family, Closure implementation, Closure exceptionReporter) {
+		super(pipeline, family);
+		this.implementation = implementation
+		this.exceptionReporter = exceptionReporter
+	}
+	
+	protected void processEntity(Entity entity, float deltaTime) {
+		try {
+			implementation(entity, deltaTime)
+		} catch(Throwable t) {
+			exceptionReporter(t)
+			processing = false
+		}
+	}
+}'''
+		final systemClass = shell.classLoader.parseClass(systemClassDefinition)
+		final system = systemClass.newInstance(pipeline, family, implementation, {t -> state.moduleExceptionRegistry.reportFailure(this, FailureDomain.ENTITY_SYSTEM, t) })
+		
+		implementation.owner = system
+		implementation.delegate = this
+		implementation.resolveStrategy = Closure.DELEGATE_FIRST
+		
+		systems << ["$id" : system]
+	}
+	
 	/**
 	 * Create a new {@link ListeningSystem}.
 	 * <p>
@@ -24,6 +24,8 @@ import org.snowjak.city.input.ScrollEvent;
 import org.snowjak.city.map.CityMap;
 import org.snowjak.city.map.renderer.MapMode;
 import org.snowjak.city.map.renderer.MapRenderer;
+import org.snowjak.city.map.renderer.ui.RenderingHookProfilerWindow;
+import org.snowjak.city.map.tiles.TileAtlasPacker;
 import org.snowjak.city.module.ModuleExceptionRegistry.FailureDomain;
 import org.snowjak.city.module.ui.ModuleWindow;
 import org.snowjak.city.screens.loadingtasks.CompositeLoadingTask;
@@ -78,7 +80,8 @@ public class GameScreen extends AbstractGameScreen {
 	private final I18NService i18nService;
 	
 	public GameScreen(GameService gameService, Console console, I18NService i18nService, SkinService skinService,
-			GameAssetService assetService, Stage stage, LoadingScreen loadingScreen, MainMenuScreen mainMenuScreen) {
+			GameAssetService assetService, Stage stage, LoadingScreen loadingScreen, MainMenuScreen mainMenuScreen,
+			TileAtlasPacker tileAtlasPacker) {
 		
 		super(gameService, console, i18nService, skinService, assetService, stage);
 		
@@ -87,10 +90,13 @@ public class GameScreen extends AbstractGameScreen {
 		this.mainMenuScreen = mainMenuScreen;
 		this.renderer = new MapRenderer(gameService.getState());
 		
+		tileAtlasPacker.addRepackListener(renderer::invalidateTerrain);
+		
 		this.setBackgroundColor(Color.BLACK);
 	}
 	
 	private Window exitConfirmWindow;
+	private RenderingHookProfilerWindow profilerWindow;
 	
 	private GameInputProcessor inputProcessor;
 	private final ScreenViewport viewport = new ScreenViewport();
@@ -176,6 +182,11 @@ public class GameScreen extends AbstractGameScreen {
 		
 		exitConfirmWindow.pack();
 		
+		//
+		// Set up the (debug) rendering-profiler window.
+		profilerWindow = new RenderingHookProfilerWindow(state.getRenderingHookProfiler(), i18nService,
+				getSkinService());
+		
 		//
 		//
 		//
@@ -278,6 +289,7 @@ public class GameScreen extends AbstractGameScreen {
 		state.setToolbar(buttonList);
 		state.setCamera(getCameraControl());
 		state.setInputProcessor(inputProcessor);
+		state.setEngineThread(Thread.currentThread());
 		
 		inputUnregistrations.add(inputProcessor.register(KeyTypedEvent.class, state.getHotkeys()));
 		
@@ -316,6 +328,8 @@ public class GameScreen extends AbstractGameScreen {
 					Gdx.app.postRunnable(() -> getGameService().getState().getActiveTool().deactivate());
 				else
 					exitConfirmWindow.setVisible(true);
+			if (e.getKeycode() == Input.Keys.F3)
+				profilerWindow.toggle();
 		}));
 		
 		state.getModules().forEach((id, module) -> {
@@ -358,6 +372,7 @@ public class GameScreen extends AbstractGameScreen {
 		getStage().addActor(buttonList);
 		getStage().addActor(mapModeSelectBox);
 		getStage().addActor(exitConfirmWindow);
+		getStage().addActor(profilerWindow);
 	}
 	
 	@Override
@@ -369,11 +384,16 @@ public class GameScreen extends AbstractGameScreen {
 		mapModeSelectBox.remove();
 		exitConfirmWindow.remove();
 		
+		if (profilerWindow.isVisible())
+			profilerWindow.toggle();
+		profilerWindow.remove();
+		
 		final GameState state = getGameService().getState();
 		
 		state.setCamera(null);
 		state.setInputProcessor(null);
 		state.setToolbar(null);
+		state.setEngineThread(null);
 		
 		inputUnregistrations.forEach(UnregistrationHandle::unregisterMe);
 		inputUnregistrations.clear();
@@ -6,6 +6,7 @@ package org.snowjak.city.screens.menupages;
 import java.util.stream.Collectors;
 
 import org.snowjak.city.map.generator.MapGenerator;
+import org.snowjak.city.map.generator.MapGeneratorPreview;
 import org.snowjak.city.module.Module;
 import org.snowjak.city.module.ui.VisualParameter;
 import org.snowjak.city.screens.MainMenuScreen;
@@ -16,7 +17,9 @@ import org.snowjak.city.service.MapGeneratorService;
 import org.snowjak.city.service.SkinService;
 import org.snowjak.city.util.ui.IntSpinnerField;
 
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.ui.Image;
 import com.badlogic.gdx.scenes.scene2d.ui.ScrollPane;
 import com.badlogic.gdx.scenes.scene2d.ui.SelectBox;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
@@ -24,7 +27,9 @@ import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.scenes.scene2d.ui.TextButton;
 import com.badlogic.gdx.scenes.scene2d.ui.TextField;
 import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
+import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Scaling;
 import com.github.czyzby.autumn.annotation.Component;
 import com.github.czyzby.autumn.annotation.Inject;
 
@@ -35,6 +40,11 @@ import com.github.czyzby.autumn.annotation.Inject;
 @Component
 public class GameSetupMenuPage implements MainMenuPage {
 	
+	/**
+	 * Maximum width/height of the map-preview, in pixels.
+	 */
+	private static final int PREVIEW_SIZE = 192;
+	
 	@Inject
 	private SkinService skinService;
 	
@@ -56,6 +66,16 @@ public class GameSetupMenuPage implements MainMenuPage {
 	
 	private TextField seedField;
 	
+	private Image preview;
+	private MapGeneratorPreview previewRenderer;
+	
+	/**
+	 * Used in place of a blank seed, so that the preview and the generated map
+	 * agree with each other. Chosen afresh every time this page is
+	 * {@link #show() shown}.
+	 */
+	private String randomSeed = Long.toString(System.currentTimeMillis());
+	
 	private TextButton startGameButton;
 	
 	private Runnable onGameStart;
@@ -79,11 +99,19 @@ public class GameSetupMenuPage implements MainMenuPage {
 			param.setGenerator(availableMapGenerators.first());
 			mapGeneratorSelection.setSelectedIndex(0);
 		}
+		
+		randomSeed = Long.toString(System.currentTimeMillis());
+		if (seedField.getText().isEmpty())
+			param.setSeed(randomSeed);
+		
+		updatePreview();
 	}
 	
 	@Override
 	public void hide() {
 		
+		previewRenderer.cancel();
+		preview.setDrawable(null);
 	}
 	
 	@Override
@@ -112,6 +140,7 @@ public class GameSetupMenuPage implements MainMenuPage {
 				final IntSpinnerField s = (IntSpinnerField) actor;
 				param.setMapWidth(s.getValue());
 				checkStartGameButton();
+				updatePreview();
 			}
 		});
 		
@@ -128,6 +157,7 @@ public class GameSetupMenuPage implements MainMenuPage {
 				final IntSpinnerField s = (IntSpinnerField) actor;
 				param.setMapHeight(s.getValue());
 				checkStartGameButton();
+				updatePreview();
 			}
 		});
 		
@@ -149,11 +179,14 @@ public class GameSetupMenuPage implements MainMenuPage {
 				param.setGenerator(((SelectBox<MapGenerator>) actor).getSelected());
 				
 				checkStartGameButton();
+				updatePreview();
 			}
 		});
 		
 		seedField = new TextField("", skin);
 		seedField.setText(param.getSeed());
+		if (param.getSeed() == null || param.getSeed().isEmpty())
+			param.setSeed(randomSeed);
 		seedField.setMessageText(i18nService.get("menu-gamesetup-seed-blank"));
 		seedField.addListener(new ChangeListener() {
 			
@@ -161,11 +194,17 @@ public class GameSetupMenuPage implements MainMenuPage {
 			public void changed(ChangeEvent event, Actor actor) {
 				
 				final TextField tf = (TextField) actor;
-				param.setSeed(tf.getText());
+				param.setSeed(tf.getText().isEmpty() ? randomSeed : tf.getText());
 				checkStartGameButton();
+				updatePreview();
 			}
 		});
 		
+		preview = new Image();
+		preview.setScaling(Scaling.fit);
+		previewRenderer = new MapGeneratorPreview(PREVIEW_SIZE,
+				(texture) -> preview.setDrawable(new TextureRegionDrawable(new TextureRegion(texture))));
+		
 		startGameButton = new TextButton(i18nService.get("menu-gamesetup-start"), skin);
 		startGameButton.addListener(new ChangeListener() {
 			
@@ -194,6 +233,10 @@ public class GameSetupMenuPage implements MainMenuPage {
 		formTable.add(i18nService.get("menu-gamesetup-seed"));
 		formTable.add(seedField).colspan(2).fillX();
 		
+		formTable.row().spaceBottom(15).spaceRight(5);
+		formTable.add(i18nService.get("menu-gamesetup-preview"));
+		formTable.add(preview).colspan(2).size(PREVIEW_SIZE);
+		
 		addVisualParameters(skin);
 		
 		formTable.row().spaceBottom(15).spaceRight(5);
@@ -239,6 +282,17 @@ public class GameSetupMenuPage implements MainMenuPage {
 		startGameButton.setDisabled(!isValid);
 	}
 	
+	/**
+	 * Begin rendering a new map-preview, reflecting the current parameters.
+	 */
+	private void updatePreview() {
+		
+		if (previewRenderer == null)
+			return;
+		
+		previewRenderer.update(param.getGenerator(), param.getSeed(), param.getMapWidth(), param.getMapHeight());
+	}
+	
 	/**
 	 * @return the {@link NewGameParameters} that this setup-screen will be
 	 *         configuring
@@ -6,6 +6,7 @@ package org.snowjak.city.service
 import java.beans.PropertyChangeEvent
 import java.beans.PropertyChangeListener
 import java.util.function.DoubleConsumer
+import java.util.function.LongConsumer
 
 import org.snowjak.city.CityGame
 import org.snowjak.city.GameState
@@ -13,6 +14,8 @@ import org.snowjak.city.configuration.InitPriority
 import org.snowjak.city.ecs.components.HasMapCellTiles
 import org.snowjak.city.ecs.components.IsMapCell
 import org.snowjak.city.ecs.components.IsMapVertex
+import org.snowjak.city.ecs.systems.ListeningSystem
+import org.snowjak.city.ecs.systems.impl.BareMapVertexReleasingSystem
 import org.snowjak.city.ecs.systems.impl.IsMapCellManagementSystem
 import org.snowjak.city.ecs.systems.impl.IsMapVertexManagementSystem
 import org.snowjak.city.ecs.systems.impl.MapCellBlockerRemovingSystem
@@ -20,6 +23,7 @@ import org.snowjak.city.ecs.systems.impl.RemoveMapCellRearrangedSystem
 import org.snowjak.city.ecs.systems.impl.RemoveMapVertexRearrangedSystem
 import org.snowjak.city.ecs.systems.impl.UnselectAllEventSystem
 import org.snowjak.city.map.CityMap
+import org.snowjak.city.map.VertexEntityFactory
 import org.snowjak.city.map.generator.MapGenerator
 import org.snowjak.city.map.renderer.hooks.DelegatingRenderingHook
 import org.snowjak.city.module.Module
@@ -32,7 +36,12 @@ import org.snowjak.city.service.loadingtasks.GameMapGenerationTask
 import org.snowjak.city.service.loadingtasks.GameModulesInitializationTask
 import org.snowjak.city.util.PrioritizationFailedException
 
+import com.badlogic.ashley.core.ComponentMapper
+import com.badlogic.ashley.core.Entity
 import com.badlogic.ashley.core.Family
+import com.badlogic.ashley.core.PooledEngine
+import com.badlogic.ashley.signals.Listener
+import com.badlogic.ashley.signals.Signal
 import com.badlogic.gdx.Gdx
 import com.badlogic.gdx.files.FileHandle
 import com.badlogic.gdx.scenes.scene2d.Stage
@@ -52,6 +61,33 @@ class GameService {
 	
 	private static final Logger LOG = LoggerService.forClass(GameService)
 	
+	/**
+	 * How many distinct progress-updates to report over the course of a single
+	 * bulk Entity-operation.
+	 */
+	private static final int PROGRESS_STEPS = 100
+	
+	/**
+	 * Bulk Entity-removal reports its progress once every
+	 * {@code PROGRESS_BATCH_MASK + 1} Entities.
+	 */
+	private static final int PROGRESS_BATCH_MASK = 1023
+	
+	/**
+	 * Entities (and components of each type) that the entity-processing
+	 * {@link Engine} pre-allocates, whatever the size of the map.
+	 */
+	private static final int ENGINE_POOL_INITIAL_SIZE = 64
+	
+	/**
+	 * Entities (and components of each type) that the entity-processing
+	 * {@link Engine} will keep pooled, beyond those needed for the map itself.
+	 */
+	private static final int ENGINE_POOL_MARGIN = 512
+	
+	private static final ComponentMapper<IsMapCell> IS_MAP_CELL = ComponentMapper.getFor(IsMapCell)
+	private static final ComponentMapper<IsMapVertex> IS_MAP_VERTEX = ComponentMapper.getFor(IsMapVertex)
+	
 	@Inject
 	private SkinService skinService
 	
@@ -62,6 +98,11 @@ class GameService {
 	private final I18NService i18nService
 	private final GameState state
 	
+	/**
+	 * The maximum size of the current entity-processing {@link Engine}'s pools.
+	 */
+	private int enginePoolSize = ENGINE_POOL_MARGIN
+	
 	public GameService(GameAssetService assetService, I18NService i18nService) {
 		this.assetService = assetService
 		this.i18nService = i18nService
@@ -99,6 +140,13 @@ class GameService {
 	
 	/**
 	 * Reset the entity-processing {@link Engine} to its base condition, without any Module's systems.
+	 * <p>
+	 * If the current Engine's pools can't hold one Entity (and one of each
+	 * component) for every cell and vertex of the current {@link CityMap}, it's
+	 * replaced by one whose pools can -- so that tearing down one map's
+	 * Entities leaves them pooled for the next, rather than for the
+	 * garbage-collector.
+	 * </p>
 	 */
 	public void initializeBaseEntityEngine(DoubleConsumer progressUpdater = { p -> }) {
 		
@@ -109,92 +157,222 @@ class GameService {
 			state.engine.removeSystem it
 		}
 		
+		final poolSize = getEnginePoolSize(state.map)
+		if(poolSize > enginePoolSize) {
+			state.engine = new PooledEngine(ENGINE_POOL_INITIAL_SIZE, poolSize, ENGINE_POOL_INITIAL_SIZE, poolSize)
+			enginePoolSize = poolSize
+		}
+		
 		state.engine.addSystem new IsMapCellManagementSystem(state)
 		state.engine.addSystem new IsMapVertexManagementSystem(state)
 		state.engine.addSystem new RemoveMapCellRearrangedSystem()
 		state.engine.addSystem new RemoveMapVertexRearrangedSystem()
 		state.engine.addSystem new MapCellBlockerRemovingSystem()
 		state.engine.addSystem new UnselectAllEventSystem()
+		state.engine.addSystem new BareMapVertexReleasingSystem(state)
 		
 		progressUpdater?.accept 1.0
 	}
 	
+	/**
+	 * @param map
+	 * @return how many Entities (and components of each type) the
+	 *         entity-processing {@link Engine} should be able to pool for the
+	 *         given map -- enough for each of its cells and vertices
+	 */
+	public static int getEnginePoolSize(CityMap map) {
+		
+		if(!map)
+			return ENGINE_POOL_MARGIN
+		
+		final long locations = (long) map.width * (long) map.height + (long) (map.width + 1) * (long) (map.height + 1)
+		(int) Math.min(Integer.MAX_VALUE - ENGINE_POOL_MARGIN, locations) + ENGINE_POOL_MARGIN
+	}
+	
 	/**
 	 * Remove all {@link IsMapCell}-bearing Entities from the entity-processing {@link Engine}.
+	 * <p>
+	 * Each Entity is removed from the Engine in one step (its components are
+	 * released when the Engine frees it), and progress is reported at most
+	 * {@link #PROGRESS_STEPS} times.
+	 * </p>
 	 * @param map
 	 */
 	public void removeCityMapLocationEntities(CityMap map, DoubleConsumer progressReporter = { p ->
 			}) {
 		
-		def entities = state.engine.getEntitiesFor(Family.one(IsMapCell, IsMapVertex).get())
+		final engine = state.engine
 		
-		final progressStep = 1.0 / (double) entities.size()
-		def progress = 0.0
+		//
+		// Stop materializing new vertex-Entities.
+		map?.vertexEntityFactory = null
 		
-		for(def entity : entities) {
-			final mapCell = (IsMapCell) entity.remove(IsMapCell)
-			if(mapCell && map)
-				map.setEntity( (int) mapCell.cellX, (int) mapCell.cellY, null )
-			
-			entity.remove HasMapCellTiles
-			
-			final mapVertex = (IsMapVertex) entity.remove(IsMapVertex)
-			if(mapVertex && map)
-				map.setVertexEntity( (int) mapVertex.vertexX, (int) mapVertex.vertexY, null )
-			
-			state.engine.removeEntity entity
-			
-			progress += progressStep
-			progressReporter?.accept progress
+		//
+		// Take a snapshot of these Entities first -- the Engine's own view of them
+		// shrinks as they're removed.
+		final List<Entity> entities = engine.getEntitiesFor(Family.one(IsMapCell, IsMapVertex).get()).collect()
+		final int count = entities.size()
+		
+		final progress = throttleProgress(progressReporter, count)
+		progress.accept 0
+		
+		withoutMapLocationListeners {
+			for(int i = 0; i < count; i++) {
+				final entity = entities[i]
+				
+				if(map) {
+					final mapCell = IS_MAP_CELL.get(entity)
+					if(mapCell)
+						map.setEntity( (int) mapCell.cellX, (int) mapCell.cellY, null )
+					
+					final mapVertex = IS_MAP_VERTEX.get(entity)
+					if(mapVertex)
+						map.releaseVertexEntity( (int) mapVertex.vertexX, (int) mapVertex.vertexY, entity )
+				}
+				
+				engine.removeEntity entity
+				
+				if((i & PROGRESS_BATCH_MASK) == 0)
+					progress.accept i
+			}
 		}
+		
+		progress.accept count
 	}
 	
 	/**
-	 * Create new {@link IsMapCell} and {@link IsMapVertex}-bearing Entities for every cell/vertex in the
-	 * given Map, add those Entities to the entity-processing {@link Engine},
-	 * and associate those Entities with the Map.
+	 * Create new {@link IsMapCell}-bearing Entities for every cell in the given
+	 * Map, add those Entities to the entity-processing {@link Engine}, and
+	 * associate those Entities with the Map.
+	 * <p>
+	 * Each Entity is fully assembled before it's added to the Engine, so the
+	 * Engine need only update its families once per Entity. Progress is reported
+	 * at most {@link #PROGRESS_STEPS} times.
+	 * </p>
+	 * <p>
+	 * {@link IsMapVertex}-bearing Entities are not created up-front. Instead,
+	 * the Map is given a {@link VertexEntityFactory} that creates each vertex's
+	 * Entity the first time it is {@link CityMap#getVertexEntity(int, int)
+	 * requested}. Any such Entity left with nothing but its {@link IsMapVertex}
+	 * -- whether its last other component was removed, or it was never given
+	 * one -- is released from the Map and removed from the Engine at the end of
+	 * the Engine's update.
+	 * </p>
+	 * <p>
+	 * That factory may only be used from the {@link GameState#getEngineThread()
+	 * Engine's thread} (or, while no game is being played, from a loading-task).
+	 * </p>
 	 * @param map
 	 */
 	public void addCityMapLocationEntities(CityMap map, DoubleConsumer progressReporter = { p -> }) {
 		if(map) {
 			
-			final progressStep = 2.0 / ((double) map.width * (double) map.height)
-			def progress = 0
+			final engine = state.engine
+			final int width = map.width, height = map.height
 			
-			for(def x=0; x<map.width; x++)
-				for(def y=0; y<map.height; y++) {
-					def isMapCell = state.engine.createComponent(IsMapCell)
-					isMapCell.cellX = x
-					isMapCell.cellY = y
-					
-					def entity = state.engine.createEntity()
-					entity.add isMapCell
-					map.setEntity x, y, entity
-					state.engine.addEntity entity
-					
-					entity.add state.engine.createComponent(HasMapCellTiles)
-					
-					progress += progressStep
-					progressReporter?.accept progress
-				}
+			final progress = throttleProgress(progressReporter, (long) width * (long) height)
+			long done = 0
+			progress.accept 0
 			
-			for(def x=0; x<map.width+1; x++)
-				for(def y=0; y<map.height+1; y++) {
-					def isMapVertex = state.engine.createComponent(IsMapVertex)
-					isMapVertex.vertexX = x
-					isMapVertex.vertexY = y
-					
-					def entity = state.engine.createEntity()
-					entity.add isMapVertex
-					map.setVertexEntity x, y, entity
-					state.engine.addEntity entity
+			withoutMapLocationListeners {
+				
+				for(int y = 0; y < height; y++) {
+					for(int x = 0; x < width; x++) {
+						final isMapCell = engine.createComponent(IsMapCell)
+						isMapCell.cellX = x
+						isMapCell.cellY = y
+						
+						final entity = engine.createEntity()
+						entity.add isMapCell
+						entity.add engine.createComponent(HasMapCellTiles)
+						map.setEntity x, y, entity
+						engine.addEntity entity
+					}
 					
-					progress += progressStep
-					progressReporter?.accept progress
+					done += width
+					progress.accept done
 				}
+			}
+			
+			//
+			// Release each vertex-Entity, at the end of the Engine's update, once nothing
+			// but its IsMapVertex is left -- i.e., when no module has any further use
+			// for it.
+			final releasingSystem = engine.getSystem(BareMapVertexReleasingSystem)
+			final Listener<Entity> releaseWhenBare = { Signal<Entity> signal, Entity entity ->
+				releasingSystem?.releaseWhenBare entity
+			} as Listener<Entity>
+			
+			map.vertexEntityFactory = { int vertexX, int vertexY ->
+				final engineThread = state.engineThread
+				if(engineThread != null && !engineThread.is(Thread.currentThread()))
+					throw new IllegalStateException("Vertex-Entities may only be materialized on the Engine's thread.")
+				
+				final isMapVertex = engine.createComponent(IsMapVertex)
+				isMapVertex.vertexX = vertexX
+				isMapVertex.vertexY = vertexY
+				
+				final entity = engine.createEntity()
+				entity.add isMapVertex
+				engine.addEntity entity
+				
+				//
+				// If whoever asked for this Entity doesn't attach anything to it,
+				// it's released at the end of this update.
+				entity.componentRemoved.add releaseWhenBare
+				releasingSystem?.releaseWhenBare entity
+				entity
+			} as VertexEntityFactory
 		}
 	}
 	
+	/**
+	 * Run the given bulk-operation while the map-location management-systems
+	 * (which would otherwise re-associate every new cell/vertex Entity with the
+	 * {@link CityMap}) are not {@link ListeningSystem#listening listening}. The
+	 * operation is responsible for keeping the CityMap up-to-date itself.
+	 *
+	 * @param operation
+	 */
+	private void withoutMapLocationListeners(Closure operation) {
+		
+		final systems = [
+			state.engine.getSystem(IsMapCellManagementSystem),
+			state.engine.getSystem(IsMapVertexManagementSystem)
+		].findAll()
+		
+		systems.each { it.listening = false }
+		try {
+			operation()
+		} finally {
+			systems.each { it.listening = true }
+		}
+	}
+	
+	/**
+	 * Wrap the given progress-reporter, so that -- of the progress-updates (in
+	 * [0, {@code total}]) reported to the wrapper -- at most
+	 * {@link #PROGRESS_STEPS} are passed along.
+	 *
+	 * @param progressReporter
+	 * @param total
+	 * @return
+	 */
+	private static LongConsumer throttleProgress(DoubleConsumer progressReporter, long total) {
+		
+		if(!progressReporter || total <= 0)
+			return { long done -> } as LongConsumer
+		
+		long lastStep = -1
+		return { long done ->
+			final long step = (done * PROGRESS_STEPS).intdiv(total)
+			if(step != lastStep) {
+				lastStep = step
+				progressReporter.accept((double) step / (double) PROGRESS_STEPS)
+			}
+		} as LongConsumer
+	}
+	
 	/**
 	 * Reloads all loaded {@link Module}s from their script-files.
 	 * Blocks until all Modules are uninitialized, reloaded, and re-initialized.
@@ -499,6 +677,7 @@ class GameService {
 		progressReporter?.accept 0
 		
 		state.mapModes.putAll module.mapModes
+		state.renderingHookRegistry.invalidate()
 		
 		if (!module.renderingHooks.isEmpty()) {
 			LOG.info "Adding rendering hooks ..."